@@ -0,0 +1,44 @@
+package com.mromanak.loadoutoptimizer.config;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class OptimizerConfig {
+
+    /**
+     * Runs optimization jobs off of the request threads. Once every thread is busy and the queue is full, new jobs are
+     * rejected rather than queued without bound.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor loadoutOptimizerExecutor(
+        @Value("${com.mromanak.optimizer.jobs.threads:2}") int threads,
+        @Value("${com.mromanak.optimizer.jobs.queueCapacity:16}") int queueCapacity)
+    {
+        return new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new ThreadFactoryBuilder().setNameFormat("loadout-optimizer-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Runs the parallel parts of every search. It is shared, so that concurrent requests and jobs split these threads
+     * between them rather than each starting a pool of its own.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ForkJoinPool loadoutSearchPool(@Value("${com.mromanak.optimizer.searchThreads:0}") int threads) {
+        return new ForkJoinPool((threads < 1) ? Runtime.getRuntime().availableProcessors() : threads);
+    }
+}
@@ -3,6 +3,7 @@ package com.mromanak.loadoutoptimizer.controller;
 import com.mromanak.loadoutoptimizer.model.dto.ArmorPieceDto;
 import com.mromanak.loadoutoptimizer.model.exception.EntityNotFoundException;
 import com.mromanak.loadoutoptimizer.repository.ArmorPieceRepository;
+import com.mromanak.loadoutoptimizer.service.CatalogVersion;
 import com.mromanak.loadoutoptimizer.service.DtoService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -20,10 +21,12 @@ public class ArmorPieceController {
 
     private final ArmorPieceRepository repository;
     private final DtoService dtoService;
+    private final CatalogVersion catalogVersion;
 
-    public ArmorPieceController(ArmorPieceRepository repository, DtoService dtoService) {
+    public ArmorPieceController(ArmorPieceRepository repository, DtoService dtoService, CatalogVersion catalogVersion) {
         this.repository = repository;
         this.dtoService = dtoService;
+        this.catalogVersion = catalogVersion;
     }
 
     @RequestMapping(method = RequestMethod.POST)
@@ -33,6 +36,7 @@ public class ArmorPieceController {
         @RequestParam(defaultValue = "false") boolean preserveRelationships
     ) {
         repository.save(dtoService.fromDto(armorPieceDto, preserveRelationships));
+        catalogVersion.incrementAfterCommit();
         return getArmorPiece(armorPieceDto.getId());
     }
 
@@ -63,6 +67,7 @@ public class ArmorPieceController {
         @PathVariable String armorPieceId
     ) {
         repository.deleteById(armorPieceId);
+        catalogVersion.incrementAfterCommit();
         return ResponseEntity.noContent().build();
     }
 }
@@ -7,6 +7,7 @@ import com.mromanak.loadoutoptimizer.model.exception.BadRepositoryApiRequestExce
 import com.mromanak.loadoutoptimizer.model.jpa.ArmorPiece;
 import com.mromanak.loadoutoptimizer.model.jpa.SetType;
 import com.mromanak.loadoutoptimizer.repository.ArmorPieceRepository;
+import com.mromanak.loadoutoptimizer.service.CatalogVersion;
 import com.mromanak.loadoutoptimizer.service.DtoService;
 import com.mromanak.loadoutoptimizer.utils.NameUtils;
 import org.springframework.http.ResponseEntity;
@@ -42,10 +43,12 @@ public class ArmorSetController {
 
     private final ArmorPieceRepository repository;
     private final DtoService dtoService;
+    private final CatalogVersion catalogVersion;
 
-    public ArmorSetController(ArmorPieceRepository repository, DtoService dtoService) {
+    public ArmorSetController(ArmorPieceRepository repository, DtoService dtoService, CatalogVersion catalogVersion) {
         this.repository = repository;
         this.dtoService = dtoService;
+        this.catalogVersion = catalogVersion;
     }
 
     @RequestMapping(method = RequestMethod.POST)
@@ -54,6 +57,7 @@ public class ArmorSetController {
         @RequestBody @Valid ArmorSetDto armorSetDto
     ) {
         repository.saveAll(dtoService.fromArmorSetDto(armorSetDto));
+        catalogVersion.incrementAfterCommit();
         return getArmorSet(armorSetDto.getSetName(), armorSetDto.getSetType());
     }
 
@@ -3,6 +3,7 @@ package com.mromanak.loadoutoptimizer.controller;
 import com.mromanak.loadoutoptimizer.model.dto.JewelDto;
 import com.mromanak.loadoutoptimizer.model.exception.EntityNotFoundException;
 import com.mromanak.loadoutoptimizer.repository.JewelRepository;
+import com.mromanak.loadoutoptimizer.service.CatalogVersion;
 import com.mromanak.loadoutoptimizer.service.DtoService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -20,10 +21,12 @@ public class JewelController {
 
     private final JewelRepository repository;
     private final DtoService dtoService;
+    private final CatalogVersion catalogVersion;
 
-    public JewelController(JewelRepository repository, DtoService dtoService) {
+    public JewelController(JewelRepository repository, DtoService dtoService, CatalogVersion catalogVersion) {
         this.repository = repository;
         this.dtoService = dtoService;
+        this.catalogVersion = catalogVersion;
     }
 
     @RequestMapping(method = RequestMethod.POST)
@@ -33,6 +36,7 @@ public class JewelController {
         @RequestParam(defaultValue = "false") boolean preserveRelationships
     ) {
         repository.save(dtoService.fromDto(jewelDto, preserveRelationships));
+        catalogVersion.incrementAfterCommit();
         return getJewel(jewelDto.getId());
     }
 
@@ -63,6 +67,7 @@ public class JewelController {
         @PathVariable String jewelId
     ) {
         repository.deleteById(jewelId);
+        catalogVersion.incrementAfterCommit();
         return ResponseEntity.noContent().build();
     }
 }
@@ -1,24 +1,44 @@
 package com.mromanak.loadoutoptimizer.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mromanak.loadoutoptimizer.impl.SearchBudget;
+import com.mromanak.loadoutoptimizer.impl.SearchStatistics;
 import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.OptimizationResult;
 import com.mromanak.loadoutoptimizer.model.api.ExLoadoutRequest;
+import com.mromanak.loadoutoptimizer.model.api.LoadoutBatchResponse;
+import com.mromanak.loadoutoptimizer.model.api.LoadoutJobStatus;
 import com.mromanak.loadoutoptimizer.model.api.LoadoutRequest;
 import com.mromanak.loadoutoptimizer.model.api.LoadoutResponse;
+import com.mromanak.loadoutoptimizer.model.api.SearchStatisticsResponse;
+import com.mromanak.loadoutoptimizer.model.exception.LoadoutJobNotFinishedException;
 import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import com.mromanak.loadoutoptimizer.scoring.LoadoutScoringFunction;
+import com.mromanak.loadoutoptimizer.service.LoadoutJob;
+import com.mromanak.loadoutoptimizer.service.LoadoutJobService;
 import com.mromanak.loadoutoptimizer.service.LoadoutOptimizerService;
+import com.mromanak.loadoutoptimizer.service.OptimizerMetrics;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.transaction.Transactional;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
@@ -29,10 +49,23 @@ import static java.util.stream.Collectors.toMap;
     produces = "application/json")
 public class LoadoutController {
 
+    private static final String SEARCH_COMPLETE_HEADER = "X-Search-Complete";
+    private static final String SEARCH_PROGRESS_HEADER = "X-Search-Progress";
+    private static final String SEARCH_STATISTICS_HEADER = "X-Search-Statistics";
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
     private final LoadoutOptimizerService loadoutOptimizerService;
+    private final LoadoutJobService loadoutJobService;
+    private final ObjectMapper objectMapper;
+    private final OptimizerMetrics metrics;
 
-    public LoadoutController(LoadoutOptimizerService loadoutOptimizerService) {
+    public LoadoutController(LoadoutOptimizerService loadoutOptimizerService, LoadoutJobService loadoutJobService,
+        ObjectMapper objectMapper, OptimizerMetrics metrics)
+    {
         this.loadoutOptimizerService = loadoutOptimizerService;
+        this.loadoutJobService = loadoutJobService;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
     }
 
     @RequestMapping(method = RequestMethod.GET, produces = "application/json")
@@ -40,31 +73,159 @@ public class LoadoutController {
         notes = "Returns a list of optimized loadouts that best match a pre-made request for loadouts that: have 5 " +
             "Earplugs, 3 Windproof, and 3 Tremor Resistance; have as many decoration slots as possible; and use as " +
             "few pieces of armor as possible.", produces = "application/json")
-    @Transactional
     public ResponseEntity<List<LoadoutResponse>> getSampleOptimizedLoadouts() {
         LoadoutRequest request = loadoutOptimizerService.getSampleRequest();
-        List<LoadoutResponse> loadouts = loadoutOptimizerService.optimize(request).
-            stream().
-            map((loadout -> toDisplayLoadout(loadout, request.getCompositeScoringFunction().keyFor(loadout)))).
-            collect(toList());
-        return ResponseEntity.ok(loadouts);
+        return toResponseEntity(request, loadoutOptimizerService.optimize(request));
     }
 
     @RequestMapping(method = RequestMethod.POST, produces = "application/json")
-    @ApiOperation(value = "Returns loadouts that best match the given criteria.", consumes = "application/json",
-        produces = "application/json")
-    @Transactional
+    @ApiOperation(value = "Returns loadouts that best match the given criteria.", notes = "If the search runs out of " +
+        "time, returns the best loadouts that it found, marked as not optimal. The " + SEARCH_COMPLETE_HEADER +
+        " and " + SEARCH_PROGRESS_HEADER + " headers report whether the search finished and what fraction of the " +
+        "search space it covered. If the request sets explain, the " + SEARCH_STATISTICS_HEADER + " header holds " +
+        "a JSON object that describes what the search was given and the work that it did.",
+        consumes = "application/json", produces = "application/json")
     public ResponseEntity<List<LoadoutResponse>> findOptimizedLoadouts(
         @ApiParam(value = "A set of criteria describing the desired loadouts") @RequestBody LoadoutRequest request)
     {
-        List<LoadoutResponse> loadouts = loadoutOptimizerService.optimize(request).
+        return toResponseEntity(request, loadoutOptimizerService.optimize(request));
+    }
+
+    @RequestMapping(path = "/stream", method = RequestMethod.POST, produces = NDJSON_MEDIA_TYPE)
+    @ApiOperation(value = "Streams loadouts that best match the given criteria as newline-delimited JSON.", notes =
+        "Each line holds one loadout, written as soon as it is built, so that large sets of tied loadouts never " +
+        "have to be held in memory. The " + SEARCH_COMPLETE_HEADER + ", " + SEARCH_PROGRESS_HEADER + " and " +
+        SEARCH_STATISTICS_HEADER + " headers are the same as for the non-streaming endpoint.", consumes = "application/json", produces = NDJSON_MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamOptimizedLoadouts(
+        @ApiParam(value = "A set of criteria describing the desired loadouts") @RequestBody LoadoutRequest request)
+    {
+        // The search runs here, so that the headers can report how it went. Only the loadouts are built while the
+        // response is written.
+        SearchBudget budget = loadoutOptimizerService.searchBudgetFor(request);
+        Stream<Loadout> loadouts = loadoutOptimizerService.streamOptimizedLoadouts(request, budget);
+        boolean complete = budget.isComplete();
+        double progress = complete ? 1.0 : budget.getProgress();
+
+        LoadoutScoringFunction scoringFunction = request.getCompositeScoringFunction();
+        StreamingResponseBody body = (OutputStream outputStream) -> {
+            Iterator<Loadout> iterator = loadouts.iterator();
+            while(iterator.hasNext()) {
+                Loadout loadout = iterator.next();
+                LoadoutResponse loadoutResponse = toDisplayLoadout(loadout, scoringFunction.keyFor(loadout), complete);
+                outputStream.write(objectMapper.writeValueAsBytes(loadoutResponse));
+                outputStream.write('\n');
+                outputStream.flush();
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().
+            header(SEARCH_COMPLETE_HEADER, String.valueOf(complete)).
+            header(SEARCH_PROGRESS_HEADER, String.valueOf(progress));
+        addSearchStatisticsHeader(response, request, budget.getStatistics());
+        return response.
+            contentType(MediaType.parseMediaType(NDJSON_MEDIA_TYPE)).
+            body(body);
+    }
+
+    @RequestMapping(path = "/batch", method = RequestMethod.POST, produces = "application/json")
+    @ApiOperation(value = "Returns loadouts that best match each of several sets of criteria.", notes = "Much " +
+        "cheaper than sending the requests one at a time: the armor pieces are fetched once for the whole batch, " +
+        "requests that differ only in maxParallelism or timeoutMillis are searched once, and the searches run in " +
+        "parallel. The results are in the same order as the requests.", consumes = "application/json",
+        produces = "application/json")
+    public ResponseEntity<List<LoadoutBatchResponse>> findOptimizedLoadoutsInBatch(
+        @ApiParam(value = "The sets of criteria describing the desired loadouts") @RequestBody
+            List<LoadoutRequest> requests)
+    {
+        List<OptimizationResult> results = loadoutOptimizerService.optimizeAll(requests);
+        List<LoadoutBatchResponse> batchResponses = new ArrayList<>(results.size());
+        for(int i = 0; i < results.size(); i++) {
+            OptimizationResult result = results.get(i);
+            LoadoutBatchResponse batchResponse = new LoadoutBatchResponse();
+            batchResponse.setLoadouts(toDisplayLoadouts(requests.get(i), result));
+            batchResponse.setComplete(result.isComplete());
+            batchResponse.setProgress(result.getProgress());
+            if(requests.get(i).isExplain()) {
+                batchResponse.setSearchStatistics(SearchStatisticsResponse.of(result.getStatistics()));
+            }
+            batchResponses.add(batchResponse);
+        }
+        return ResponseEntity.ok(batchResponses);
+    }
+
+    @RequestMapping(path = "/jobs", method = RequestMethod.POST, produces = "application/json")
+    @ApiOperation(value = "Starts a job that finds loadouts that best match the given criteria.", notes = "The job " +
+        "runs on a bounded pool of optimizer threads. If the pool's queue is full, responds with 503 Service " +
+        "Unavailable.", consumes = "application/json", produces = "application/json")
+    public ResponseEntity<LoadoutJobStatus> submitOptimizationJob(
+        @ApiParam(value = "A set of criteria describing the desired loadouts") @RequestBody LoadoutRequest request)
+    {
+        LoadoutJob job = loadoutJobService.submit(request);
+        return ResponseEntity.accepted().
+            location(URI.create("/loadout/jobs/" + job.getId())).
+            body(job.toStatus());
+    }
+
+    @RequestMapping(path = "/jobs/{jobId}", method = RequestMethod.GET, produces = "application/json")
+    @ApiOperation(value = "Returns the state and progress of an optimization job.", produces = "application/json")
+    public ResponseEntity<LoadoutJobStatus> getOptimizationJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(loadoutJobService.getJob(jobId).toStatus());
+    }
+
+    @RequestMapping(path = "/jobs/{jobId}/result", method = RequestMethod.GET, produces = "application/json")
+    @ApiOperation(value = "Returns the loadouts that an optimization job found.", notes = "A job that was " +
+        "cancelled while it was running returns the best loadouts that it had found, marked as not optimal. If the " +
+        "job has not finished, responds with 409 Conflict.", produces = "application/json")
+    public ResponseEntity<List<LoadoutResponse>> getOptimizationJobResult(@PathVariable String jobId) {
+        LoadoutJob job = loadoutJobService.getJob(jobId);
+        OptimizationResult result = job.getResult();
+        if(result == null) {
+            throw new LoadoutJobNotFinishedException("Loadout job " + jobId + " has no result. Its state is " +
+                job.getState().getName() + ".");
+        }
+        return toResponseEntity(job.getRequest(), result);
+    }
+
+    @RequestMapping(path = "/jobs/{jobId}", method = RequestMethod.DELETE, produces = "application/json")
+    @ApiOperation(value = "Cancels an optimization job.", notes = "A queued job never runs. A running job stops " +
+        "searching and keeps the best loadouts that it has found.", produces = "application/json")
+    public ResponseEntity<LoadoutJobStatus> cancelOptimizationJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(loadoutJobService.cancel(jobId).toStatus());
+    }
+
+    private ResponseEntity<List<LoadoutResponse>> toResponseEntity(LoadoutRequest request, OptimizationResult result) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().
+            header(SEARCH_COMPLETE_HEADER, String.valueOf(result.isComplete())).
+            header(SEARCH_PROGRESS_HEADER, String.valueOf(result.getProgress()));
+        addSearchStatisticsHeader(response, request, result.getStatistics());
+        return response.body(toDisplayLoadouts(request, result));
+    }
+
+    // The body of these endpoints is a bare list of loadouts, so the statistics go in a header like the other facts
+    // about the search
+    private void addSearchStatisticsHeader(ResponseEntity.BodyBuilder response, LoadoutRequest request,
+        SearchStatistics statistics)
+    {
+        if(!request.isExplain()) {
+            return;
+        }
+
+        try {
+            response.header(SEARCH_STATISTICS_HEADER,
+                objectMapper.writeValueAsString(SearchStatisticsResponse.of(statistics)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize search statistics", e);
+        }
+    }
+
+    private List<LoadoutResponse> toDisplayLoadouts(LoadoutRequest request, OptimizationResult result) {
+        LoadoutScoringFunction scoringFunction = request.getCompositeScoringFunction();
+        return metrics.timeMapping(() -> result.getLoadouts().
             stream().
-            map((loadout -> toDisplayLoadout(loadout, request.getCompositeScoringFunction().keyFor(loadout)))).
-            collect(toList());
-        return ResponseEntity.ok(loadouts);
+            map((loadout -> toDisplayLoadout(loadout, scoringFunction.keyFor(loadout), result.isComplete()))).
+            collect(toList()));
     }
 
-    private LoadoutResponse toDisplayLoadout(Loadout loadout, String key) {
+    private LoadoutResponse toDisplayLoadout(Loadout loadout, String key, boolean optimal) {
         LoadoutResponse loadoutResponse = new LoadoutResponse();
         Map<ArmorType, String> armor = new TreeMap<>(loadout.getArmorPieces().
             entrySet().
@@ -84,6 +245,7 @@ public class LoadoutController {
         loadoutResponse.setDragonResistance(loadout.getEffectiveDragonResistance());
         loadoutResponse.setKey(key);
         loadoutResponse.setScore(loadout.getScore());
+        loadoutResponse.setOptimal(optimal);
         return loadoutResponse;
     }
 }
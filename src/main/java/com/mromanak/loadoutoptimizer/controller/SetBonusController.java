@@ -3,6 +3,7 @@ package com.mromanak.loadoutoptimizer.controller;
 import com.mromanak.loadoutoptimizer.model.dto.SetBonusDto;
 import com.mromanak.loadoutoptimizer.model.exception.EntityNotFoundException;
 import com.mromanak.loadoutoptimizer.repository.SetBonusRepository;
+import com.mromanak.loadoutoptimizer.service.CatalogVersion;
 import com.mromanak.loadoutoptimizer.service.DtoService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -20,10 +21,12 @@ public class SetBonusController {
 
     private final SetBonusRepository repository;
     private final DtoService dtoService;
+    private final CatalogVersion catalogVersion;
 
-    public SetBonusController(SetBonusRepository repository, DtoService dtoService) {
+    public SetBonusController(SetBonusRepository repository, DtoService dtoService, CatalogVersion catalogVersion) {
         this.repository = repository;
         this.dtoService = dtoService;
+        this.catalogVersion = catalogVersion;
     }
 
     @RequestMapping(method = RequestMethod.POST)
@@ -32,6 +35,7 @@ public class SetBonusController {
         @RequestBody @Valid SetBonusDto setBonusDto
     ) {
         repository.save(dtoService.fromDto(setBonusDto));
+        catalogVersion.incrementAfterCommit();
         return getSetBonus(setBonusDto.getId());
     }
 
@@ -62,6 +66,7 @@ public class SetBonusController {
         @PathVariable String setBonusId
     ) {
         repository.deleteById(setBonusId);
+        catalogVersion.incrementAfterCommit();
         return ResponseEntity.noContent().build();
     }
 }
@@ -3,6 +3,7 @@ package com.mromanak.loadoutoptimizer.controller;
 import com.mromanak.loadoutoptimizer.model.dto.SkillDto;
 import com.mromanak.loadoutoptimizer.model.exception.EntityNotFoundException;
 import com.mromanak.loadoutoptimizer.repository.SkillRepository;
+import com.mromanak.loadoutoptimizer.service.CatalogVersion;
 import com.mromanak.loadoutoptimizer.service.DtoService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -20,10 +21,12 @@ public class SkillController {
 
     private final SkillRepository repository;
     private final DtoService dtoService;
+    private final CatalogVersion catalogVersion;
 
-    public SkillController(SkillRepository repository, DtoService dtoService) {
+    public SkillController(SkillRepository repository, DtoService dtoService, CatalogVersion catalogVersion) {
         this.repository = repository;
         this.dtoService = dtoService;
+        this.catalogVersion = catalogVersion;
     }
 
     @RequestMapping(method = RequestMethod.POST)
@@ -33,6 +36,7 @@ public class SkillController {
         @RequestParam(defaultValue = "false") boolean preserveRelationships
     ) {
         repository.save(dtoService.fromDto(skillDto, preserveRelationships));
+        catalogVersion.incrementAfterCommit();
         return getSkill(skillDto.getId());
     }
 
@@ -63,6 +67,7 @@ public class SkillController {
         @PathVariable String skillId
     ) {
         repository.deleteById(skillId);
+        catalogVersion.incrementAfterCommit();
         return ResponseEntity.noContent().build();
     }
 }
@@ -0,0 +1,85 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import com.mromanak.loadoutoptimizer.scoring.LoadoutScoringFunction;
+import lombok.Data;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.util.stream.Collectors.groupingBy;
+
+/**
+ * Removes candidate armor pieces that can never do better than another candidate of the same armor type. A piece is
+ * removed only if some other piece is at least as good for the scoring function while the reverse does not hold, so
+ * pieces that are interchangeable are all kept.
+ */
+public abstract class DominanceFilter {
+
+    public static Result filter(Collection<ThinArmorPiece> armorPieces, LoadoutScoringFunction scoringFunction,
+        Set<String> protectedArmorPieceIds)
+    {
+        return filter(armorPieces, scoringFunction, protectedArmorPieceIds, 1);
+    }
+
+    /**
+     * Like {@link #filter(Collection, LoadoutScoringFunction, Set)}, except that a piece is only removed if at least
+     * {@code minDominators} other pieces dominate it. A search for the K best loadouts needs K: any loadout with such
+     * a piece is then matched by K other loadouts that swap it for one of the pieces that are kept.
+     */
+    public static Result filter(Collection<ThinArmorPiece> armorPieces, LoadoutScoringFunction scoringFunction,
+        Set<String> protectedArmorPieceIds, int minDominators)
+    {
+        if(minDominators < 1) {
+            throw new IllegalArgumentException("minDominators must be at least 1");
+        }
+        Objects.requireNonNull(armorPieces, "armorPieces must be non-null");
+        Objects.requireNonNull(scoringFunction, "scoringFunction must be non-null");
+        Objects.requireNonNull(protectedArmorPieceIds, "protectedArmorPieceIds must be non-null");
+
+        Map<ArmorType, List<ThinArmorPiece>> armorPiecesMap = armorPieces.stream().
+            collect(groupingBy(ThinArmorPiece::getArmorType));
+
+        ImmutableSet.Builder<ThinArmorPiece> keptArmorPieces = ImmutableSet.builder();
+        int removedCount = 0;
+        for(List<ThinArmorPiece> candidates : armorPiecesMap.values()) {
+            for(ThinArmorPiece candidate : candidates) {
+                if(protectedArmorPieceIds.contains(candidate.getId()) ||
+                    !isDominated(candidate, candidates, scoringFunction, minDominators))
+                {
+                    keptArmorPieces.add(candidate);
+                } else {
+                    removedCount++;
+                }
+            }
+        }
+        return new Result(keptArmorPieces.build(), removedCount);
+    }
+
+    private static boolean isDominated(ThinArmorPiece candidate, List<ThinArmorPiece> candidates,
+        LoadoutScoringFunction scoringFunction, int minDominators)
+    {
+        int dominators = 0;
+        for(ThinArmorPiece other : candidates) {
+            if(other != candidate &&
+                scoringFunction.isAtLeastAsGoodAs(other, candidate) &&
+                !scoringFunction.isAtLeastAsGoodAs(candidate, other) &&
+                ++dominators == minDominators)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Data
+    public static class Result {
+        private final Set<ThinArmorPiece> armorPieces;
+        private final int removedCount;
+    }
+}
@@ -0,0 +1,35 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.mromanak.loadoutoptimizer.model.LoadoutStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The best score of any complete loadout that a search has evaluated so far. It can be shared between threads.
+ */
+class Incumbent {
+
+    private final AtomicLong scoreBits = new AtomicLong(Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY));
+
+    double get() {
+        return Double.longBitsToDouble(scoreBits.get());
+    }
+
+    void offer(LoadoutStats loadout, double score) {
+        long currentBits = scoreBits.get();
+        while (score > Double.longBitsToDouble(currentBits)) {
+            if (scoreBits.compareAndSet(currentBits, Double.doubleToRawLongBits(score))) {
+                return;
+            }
+            currentBits = scoreBits.get();
+        }
+    }
+
+    /**
+     * @return True if no loadout with the given upper bound can score at least as well as the incumbent. Loadouts
+     * that could tie the incumbent are kept so that every equally-good loadout is still returned.
+     */
+    boolean cannotBeReachedWith(double upperBound) {
+        return upperBound < get();
+    }
+}
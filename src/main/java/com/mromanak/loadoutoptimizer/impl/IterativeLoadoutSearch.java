@@ -0,0 +1,368 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.mromanak.loadoutoptimizer.model.LoadoutState;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import com.mromanak.loadoutoptimizer.scoring.LoadoutScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.RemainingArmorBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * A depth-first search over the same tree as {@link LoadoutOptimizer}'s recursive search, driven by an explicit stack
+ * of per-armor-type cursors instead of the call stack. Choices are recorded as indices into the candidate armor pieces
+ * and the loadout is kept in a single {@link LoadoutState}, so visiting a node allocates nothing. Armor pieces are only
+ * looked up again for the loadouts that are returned.
+ * <p>
+ * It keeps no memo, since building the keys and responses for one is most of what the recursive search allocates, and
+ * relies on branch-and-bound pruning alone. It always runs on the calling thread, though searches from different
+ * starting loadouts may run on different threads and share an {@link Incumbent}.
+ */
+class IterativeLoadoutSearch {
+
+    private static final ArmorType[] ARMOR_TYPES = ArmorType.values();
+    private static final int DEPTH = ARMOR_TYPES.length;
+    private static final int NO_ARMOR_PIECE = -1;
+
+    private final LoadoutScoringFunction scoringFunction;
+    private final LoadoutState state;
+    private final int maxResults;
+    private final SearchBudget budget;
+
+    // Indexed by armor type ordinal. Armor types that the starting loadout already fills have no candidates.
+    private final ThinArmorPiece[][] candidates = new ThinArmorPiece[DEPTH][];
+
+    // The bounds for the armor types from each depth on that the search may still fill
+    private final RemainingArmorBounds[] remainingArmorBounds = new RemainingArmorBounds[DEPTH];
+
+    // Null unless every loadout must grant some set bonus skills
+    private final SetBonusRequirements setBonusRequirements;
+
+    // Null unless searches from other starting loadouts run alongside this one. Every loadout found is offered to it, and
+    // branches that cannot reach it are pruned as well as those that cannot reach this search's own best loadouts.
+    private final Incumbent sharedIncumbent;
+
+    // Indexed like candidates. The set bonus ordinal of each candidate, or -1 if it belongs to no required set bonus.
+    private final int[][] candidateSetBonusOrdinals = new int[DEPTH][];
+
+    // Indexed by set bonus ordinal. The pieces of each required set bonus that the state holds.
+    private final int[] setBonusPieceCounts;
+
+    // Indexed by depth, then by set bonus ordinal. How many of the armor types from that depth on have a candidate
+    // piece of the set bonus.
+    private final int[][] availableSetBonusPieces = new int[DEPTH + 1][];
+
+    // The fraction of the whole search space below each node at each depth, where depth DEPTH holds single loadouts
+    private final double[] nodeProgress = new double[DEPTH + 1];
+
+    // The search stack. cursors[d] is the next choice to try at depth d, where candidates[d].length means adding no
+    // armor piece of that type, and choices[d] is the choice currently applied to the state.
+    private final int[] cursors = new int[DEPTH];
+    private final int[] choices = new int[DEPTH];
+
+    // Ties mode: the choices of every loadout that ties for the best score using the fewest armor pieces. The arrays
+    // past tiedCount are kept for reuse.
+    private final List<int[]> tiedChoices = new ArrayList<>();
+    private int tiedCount = 0;
+    private int tiedArmorPieceCount = Integer.MAX_VALUE;
+    private double bestScore = Double.NEGATIVE_INFINITY;
+
+    // Top-K mode: a binary min-heap of the best loadouts seen so far, with the worst one at the root
+    private final int[][] heapChoices;
+    private final double[] heapScores;
+    private final int[] heapArmorPieceCounts;
+    private int heapSize = 0;
+
+    /**
+     * @param scoringFunction A scoring function bound to the skill index of {@code startingState}
+     * @param remainingArmorBounds Bounds indexed by a bit mask of the ordinals of the armor types that have yet to be
+     * filled
+     * @param startingState The starting loadout. The search adds armor pieces to it and takes them away again, unless
+     * the budget runs out first.
+     * @param maxResults The number of best loadouts to find, or 0 for every loadout that ties for the best score
+     * @param setBonusRequirements The set bonus skills that every loadout must grant, or null if there are none
+     * @param sharedIncumbent The incumbent of the searches from every starting loadout, or null if this is the only one
+     * @param progressScale The fraction of the budget's progress that this search accounts for
+     */
+    IterativeLoadoutSearch(Map<ArmorType, List<ThinArmorPiece>> armorPieces, LoadoutScoringFunction scoringFunction,
+        RemainingArmorBounds[] remainingArmorBounds, LoadoutState startingState, int maxResults,
+        SetBonusRequirements setBonusRequirements, Incumbent sharedIncumbent, SearchBudget budget,
+        double progressScale)
+    {
+        this.scoringFunction = scoringFunction;
+        this.sharedIncumbent = sharedIncumbent;
+        this.state = startingState;
+        this.maxResults = maxResults;
+        this.budget = budget;
+
+        int mask = 0;
+        for(int depth = DEPTH - 1; depth >= 0; depth--) {
+            ArmorType armorType = ARMOR_TYPES[depth];
+            if(startingState.getArmorPiece(armorType) == null) {
+                candidates[depth] = armorPieces.getOrDefault(armorType, emptyList()).toArray(new ThinArmorPiece[0]);
+                mask |= 1 << depth;
+            } else {
+                candidates[depth] = new ThinArmorPiece[0];
+            }
+            this.remainingArmorBounds[depth] = remainingArmorBounds[mask];
+        }
+
+        nodeProgress[0] = progressScale;
+        for(int depth = 0; depth < DEPTH; depth++) {
+            nodeProgress[depth + 1] = nodeProgress[depth] / (candidates[depth].length + 1);
+        }
+
+        this.setBonusRequirements = setBonusRequirements;
+        int setBonusCount = (setBonusRequirements == null) ? 0 : setBonusRequirements.getSetBonusCount();
+        this.setBonusPieceCounts = new int[setBonusCount];
+        availableSetBonusPieces[DEPTH] = new int[setBonusCount];
+        for(int depth = DEPTH - 1; depth >= 0; depth--) {
+            availableSetBonusPieces[depth] = availableSetBonusPieces[depth + 1].clone();
+            candidateSetBonusOrdinals[depth] = new int[candidates[depth].length];
+            boolean[] setBonusesAtDepth = new boolean[setBonusCount];
+            for(int i = 0; i < candidates[depth].length; i++) {
+                int ordinal = (setBonusRequirements == null) ? -1 :
+                    setBonusRequirements.setBonusOrdinalOf(candidates[depth][i]);
+                candidateSetBonusOrdinals[depth][i] = ordinal;
+                if(ordinal >= 0 && !setBonusesAtDepth[ordinal]) {
+                    setBonusesAtDepth[ordinal] = true;
+                    availableSetBonusPieces[depth][ordinal]++;
+                }
+            }
+
+            ThinArmorPiece startingArmorPiece = startingState.getArmorPiece(ARMOR_TYPES[depth]);
+            int ordinal = (setBonusRequirements == null || startingArmorPiece == null) ? -1 :
+                setBonusRequirements.setBonusOrdinalOf(startingArmorPiece);
+            if(ordinal >= 0) {
+                setBonusPieceCounts[ordinal]++;
+            }
+        }
+
+        this.heapChoices = new int[maxResults][DEPTH];
+        this.heapScores = new double[maxResults];
+        this.heapArmorPieceCounts = new int[maxResults];
+    }
+
+    OptimizerResponse search() {
+        cursors[0] = 0;
+        choices[0] = NO_ARMOR_PIECE;
+        int depth = 0;
+        long nodesExpanded = 1;
+        long nodesPruned = 0;
+        while(depth >= 0 && !budget.isExhausted()) {
+            if(depth == DEPTH) {
+                // A top-K search never returns the empty loadout, so it must not take one of the places
+                if((setBonusRequirements == null || setBonusRequirements.areMetBy(setBonusPieceCounts)) &&
+                    (maxResults == 0 || state.getArmorPieceCount() > 0))
+                {
+                    double score = scoringFunction.scoreFor(state);
+                    offer(score);
+                    if(sharedIncumbent != null) {
+                        sharedIncumbent.offer(state, score);
+                    }
+                }
+                budget.addProgress(nodeProgress[DEPTH]);
+                depth--;
+                continue;
+            }
+
+            // Undo the previous choice at this depth before trying the next one
+            if(choices[depth] != NO_ARMOR_PIECE) {
+                state.remove(ARMOR_TYPES[depth]);
+                countSetBonusPiece(depth, choices[depth], -1);
+                choices[depth] = NO_ARMOR_PIECE;
+            }
+
+            ThinArmorPiece[] armorPieces = candidates[depth];
+            int cursor = cursors[depth]++;
+            if(cursor > armorPieces.length) {
+                depth--;
+                continue;
+            } else if(cursor < armorPieces.length) {
+                state.add(armorPieces[cursor]);
+                countSetBonusPiece(depth, cursor, 1);
+                choices[depth] = cursor;
+            }
+
+            depth++;
+            if(depth < DEPTH) {
+                if(cannotMeetSetBonusRequirements(depth) ||
+                    cannotBeReachedWith(scoringFunction.upperBound(state, remainingArmorBounds[depth])))
+                {
+                    budget.addProgress(nodeProgress[depth]);
+                    nodesPruned++;
+                    depth--;
+                    continue;
+                }
+                nodesExpanded++;
+                cursors[depth] = 0;
+                choices[depth] = NO_ARMOR_PIECE;
+            }
+        }
+        budget.getStatistics().addNodesExpanded(nodesExpanded);
+        budget.getStatistics().addNodesPruned(nodesPruned);
+        return (maxResults > 0) ? topKResponse() : tiesResponse();
+    }
+
+    private void countSetBonusPiece(int depth, int choice, int sign) {
+        int ordinal = candidateSetBonusOrdinals[depth][choice];
+        if(ordinal >= 0) {
+            setBonusPieceCounts[ordinal] += sign;
+        }
+    }
+
+    private boolean cannotMeetSetBonusRequirements(int depth) {
+        return setBonusRequirements != null &&
+            !setBonusRequirements.canBeMetWith(setBonusPieceCounts, availableSetBonusPieces[depth]);
+    }
+
+    // Like the recursive search, prune only branches that cannot tie the loadouts found so far, so that ties are still
+    // broken by armor piece count
+    private boolean cannotBeReachedWith(double upperBound) {
+        if(sharedIncumbent != null && sharedIncumbent.cannotBeReachedWith(upperBound)) {
+            return true;
+        } else if(maxResults > 0) {
+            return heapSize == maxResults && upperBound < heapScores[0];
+        }
+        return upperBound < bestScore;
+    }
+
+    private void offer(double score) {
+        int armorPieceCount = 0;
+        for(int choice : choices) {
+            if(choice != NO_ARMOR_PIECE) {
+                armorPieceCount++;
+            }
+        }
+
+        if(maxResults > 0) {
+            offerTopK(score, armorPieceCount);
+        } else {
+            offerTie(score, armorPieceCount);
+        }
+    }
+
+    // As with OptimizerResponse.merger(), adding no armor pieces only wins if it scores strictly better than anything
+    // else, in which case no loadouts are returned
+    private void offerTie(double score, int armorPieceCount) {
+        if(score < bestScore) {
+            return;
+        } else if(score > bestScore) {
+            bestScore = score;
+            tiedCount = 0;
+            tiedArmorPieceCount = Integer.MAX_VALUE;
+        }
+
+        if(armorPieceCount == 0 || armorPieceCount > tiedArmorPieceCount) {
+            return;
+        } else if(armorPieceCount < tiedArmorPieceCount) {
+            tiedCount = 0;
+            tiedArmorPieceCount = armorPieceCount;
+        }
+
+        if(tiedCount == tiedChoices.size()) {
+            tiedChoices.add(new int[DEPTH]);
+        }
+        System.arraycopy(choices, 0, tiedChoices.get(tiedCount++), 0, DEPTH);
+    }
+
+    private void offerTopK(double score, int armorPieceCount) {
+        if(heapSize < maxResults) {
+            System.arraycopy(choices, 0, heapChoices[heapSize], 0, DEPTH);
+            heapScores[heapSize] = score;
+            heapArmorPieceCounts[heapSize] = armorPieceCount;
+            siftUp(heapSize++);
+        } else if(isWorse(heapScores[0], heapArmorPieceCounts[0], score, armorPieceCount)) {
+            System.arraycopy(choices, 0, heapChoices[0], 0, DEPTH);
+            heapScores[0] = score;
+            heapArmorPieceCounts[0] = armorPieceCount;
+            siftDown(0);
+        }
+    }
+
+    // Given loadouts with the same score, prefer ones that use the fewest armor pieces
+    private static boolean isWorse(double score, int armorPieceCount, double otherScore, int otherArmorPieceCount) {
+        return score < otherScore || (score == otherScore && armorPieceCount > otherArmorPieceCount);
+    }
+
+    private boolean isWorse(int i, int j) {
+        return isWorse(heapScores[i], heapArmorPieceCounts[i], heapScores[j], heapArmorPieceCounts[j]);
+    }
+
+    private void siftUp(int i) {
+        while(i > 0) {
+            int parent = (i - 1) / 2;
+            if(!isWorse(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while(true) {
+            int worst = i;
+            for(int child = 2 * i + 1; child <= 2 * i + 2 && child < heapSize; child++) {
+                if(isWorse(child, worst)) {
+                    worst = child;
+                }
+            }
+            if(worst == i) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int[] choicesTmp = heapChoices[i];
+        heapChoices[i] = heapChoices[j];
+        heapChoices[j] = choicesTmp;
+        double scoreTmp = heapScores[i];
+        heapScores[i] = heapScores[j];
+        heapScores[j] = scoreTmp;
+        int armorPieceCountTmp = heapArmorPieceCounts[i];
+        heapArmorPieceCounts[i] = heapArmorPieceCounts[j];
+        heapArmorPieceCounts[j] = armorPieceCountTmp;
+    }
+
+    private OptimizerResponse tiesResponse() {
+        List<List<ThinArmorPiece>> armorPiecesToAdd = new ArrayList<>(tiedCount);
+        for(int i = 0; i < tiedCount; i++) {
+            armorPiecesToAdd.add(armorPiecesFor(tiedChoices.get(i)));
+        }
+        return OptimizerResponse.of(armorPiecesToAdd, bestScore);
+    }
+
+    // Top-K responses list every loadout that they keep, including the one that adds no armor pieces to a non-empty
+    // starting loadout, sorted from best to worst
+    private OptimizerResponse topKResponse() {
+        List<List<ThinArmorPiece>> armorPiecesToAdd = new ArrayList<>(heapSize);
+        List<Double> scores = new ArrayList<>(heapSize);
+        while(heapSize > 0) {
+            armorPiecesToAdd.add(armorPiecesFor(heapChoices[0]));
+            scores.add(heapScores[0]);
+            swap(0, --heapSize);
+            siftDown(0);
+        }
+        return OptimizerResponse.of(Lists.reverse(armorPiecesToAdd), Lists.reverse(scores));
+    }
+
+    private List<ThinArmorPiece> armorPiecesFor(int[] choices) {
+        ImmutableList.Builder<ThinArmorPiece> armorPieces = ImmutableList.builder();
+        for(int depth = 0; depth < DEPTH; depth++) {
+            if(choices[depth] != NO_ARMOR_PIECE) {
+                armorPieces.add(candidates[depth][choices[depth]]);
+            }
+        }
+        return armorPieces.build();
+    }
+}
@@ -1,153 +1,741 @@
 package com.mromanak.loadoutoptimizer.impl;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutState;
+import com.mromanak.loadoutoptimizer.model.LoadoutStats;
+import com.mromanak.loadoutoptimizer.model.SkillIndex;
 import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
 import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
 import com.mromanak.loadoutoptimizer.scoring.LoadoutScoringFunction;
-import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
+import com.mromanak.loadoutoptimizer.scoring.RemainingArmorBounds;
 import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static com.mromanak.loadoutoptimizer.model.jpa.ArmorType.hasNextArmorType;
 import static com.mromanak.loadoutoptimizer.model.jpa.ArmorType.nextArmorType;
 import static java.util.Collections.emptyList;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Stream.concat;
 
 @Data
-@AllArgsConstructor(access = AccessLevel.PRIVATE)
 public class LoadoutOptimizer {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadoutOptimizer.class);
+
+    // The parallel search fans out over every combination of pieces for these armor types, then searches the
+    // remaining armor types of each combination sequentially
+    private static final ArmorType LAST_PARALLEL_ARMOR_TYPE = ArmorType.BODY;
+
     private final Map<ArmorType, List<ThinArmorPiece>> armorPieces;
     private final LoadoutScoringFunction scoringFunction;
-    private final Map<OptimizerRequest, OptimizerResponse> solutionCache = new HashMap<>();
+    private final SolutionCache solutionCache;
+
+    // Whether searches from more than one starting loadout share this optimizer's solution cache and incumbent, in
+    // which case the armor types that a state has yet to fill are part of its key
+    private final boolean sharedAcrossStartingLoadouts;
+    private final boolean topK;
+    private final BinaryOperator<OptimizerResponse> merger;
+    private final Incumbent incumbent;
+    private final SearchBudget budget;
+    private final SearchStatistics statistics;
+
+    // Every skill on the candidate armor pieces and the starting loadouts, so that a LoadoutState can track all of them
+    private final SkillIndex skillIndex;
+
+    // Null unless every loadout must grant some set bonus skills
+    private final SetBonusRequirements setBonusRequirements;
+
+    // The set bonus ordinal of each candidate armor piece that belongs to a required set bonus
+    private final Map<ThinArmorPiece, Integer> setBonusOrdinals;
+
+    // Indexed by a bit mask of the ordinals of the armor types that have yet to be filled, then by set bonus ordinal.
+    // How many of those armor types have a candidate piece of the set bonus.
+    private final int[][] availableSetBonusPieces;
+
+    // Indexed by a bit mask of the ordinals of the armor types that have yet to be filled
+    private final RemainingArmorBounds[] remainingArmorBounds;
+
+    // Indexed by armor type ordinal. The fraction of the whole search space below each request for that armor type,
+    // which is added to the budget's progress when the request is answered without searching below it. Each starting
+    // loadout has its own, so this is only set by forStartingLoadout.
+    private final double[] requestProgress;
+
+    /**
+     * Precomputes everything that the searches from the given starting loadouts share. Each search runs on the
+     * optimizer that {@link #forStartingLoadout(Loadout, double)} returns for its starting loadout.
+     */
+    private LoadoutOptimizer(Map<ArmorType, List<ThinArmorPiece>> armorPieces, LoadoutScoringFunction scoringFunction,
+        OptimizerOptions options, List<Loadout> startingLoadouts, SetBonusRequirements setBonusRequirements,
+        SearchBudget budget)
+    {
+        this.armorPieces = armorPieces;
+        this.skillIndex = SkillIndex.of(concat(
+            armorPieces.values().stream().flatMap(List::stream),
+            startingLoadouts.stream().flatMap(startingLoadout -> startingLoadout.getArmorPieces().values().stream())
+        ).
+            collect(toList()));
+        this.scoringFunction = scoringFunction.bind(skillIndex);
+        this.solutionCache = new SolutionCache(options.getSolutionCacheMaxEntries());
+        this.sharedAcrossStartingLoadouts = startingLoadouts.size() > 1;
+        this.topK = options.isTopK();
+        this.merger = topK ? OptimizerResponse.topKMerger(options.getMaxResults()) : OptimizerResponse.merger();
+        this.incumbent = topK ? new TopKIncumbent(options.getMaxResults()) : new Incumbent();
+        this.budget = budget;
+        this.statistics = budget.getStatistics();
+
+        ArmorType[] armorTypes = ArmorType.values();
+        this.remainingArmorBounds = new RemainingArmorBounds[1 << armorTypes.length];
+        for(int mask = 0; mask < remainingArmorBounds.length; mask++) {
+            List<List<ThinArmorPiece>> remainingArmorPieces = new ArrayList<>();
+            for(ArmorType armorType : armorTypes) {
+                if((mask & (1 << armorType.ordinal())) != 0) {
+                    remainingArmorPieces.add(armorPieces.getOrDefault(armorType, emptyList()));
+                }
+            }
+            remainingArmorBounds[mask] = RemainingArmorBounds.of(remainingArmorPieces);
+        }
+
+        this.setBonusRequirements = setBonusRequirements;
+        this.setBonusOrdinals = new IdentityHashMap<>();
+        this.availableSetBonusPieces = new int[1 << armorTypes.length][];
+        if(setBonusRequirements != null) {
+            concat(
+                armorPieces.values().stream().flatMap(List::stream),
+                startingLoadouts.stream().flatMap(startingLoadout -> startingLoadout.getArmorPieces().values().stream())
+            ).forEach(armorPiece -> {
+                int ordinal = setBonusRequirements.setBonusOrdinalOf(armorPiece);
+                if(ordinal >= 0) {
+                    setBonusOrdinals.put(armorPiece, ordinal);
+                }
+            });
+            for(int mask = 0; mask < availableSetBonusPieces.length; mask++) {
+                int[] availablePieces = new int[setBonusRequirements.getSetBonusCount()];
+                for(ArmorType armorType : armorTypes) {
+                    if((mask & (1 << armorType.ordinal())) != 0) {
+                        armorPieces.getOrDefault(armorType, emptyList()).stream().
+                            map(setBonusOrdinals::get).
+                            filter(Objects::nonNull).
+                            distinct().
+                            forEach(ordinal -> availablePieces[ordinal]++);
+                    }
+                }
+                availableSetBonusPieces[mask] = availablePieces;
+            }
+        }
+
+        this.requestProgress = null;
+    }
+
+    /**
+     * @param progressScale The fraction of the budget's progress that the search from {@code startingLoadout}
+     * accounts for
+     */
+    private LoadoutOptimizer(LoadoutOptimizer shared, Loadout startingLoadout, double progressScale) {
+        this.armorPieces = shared.armorPieces;
+        this.scoringFunction = shared.scoringFunction;
+        this.solutionCache = shared.solutionCache;
+        this.sharedAcrossStartingLoadouts = shared.sharedAcrossStartingLoadouts;
+        this.topK = shared.topK;
+        this.merger = shared.merger;
+        this.incumbent = shared.incumbent;
+        this.budget = shared.budget;
+        this.statistics = shared.statistics;
+        this.skillIndex = shared.skillIndex;
+        this.setBonusRequirements = shared.setBonusRequirements;
+        this.setBonusOrdinals = shared.setBonusOrdinals;
+        this.availableSetBonusPieces = shared.availableSetBonusPieces;
+        this.remainingArmorBounds = shared.remainingArmorBounds;
+
+        this.requestProgress = new double[ArmorType.values().length];
+        double progress = progressScale;
+        for(ArmorType armorType : ArmorType.values()) {
+            requestProgress[armorType.ordinal()] = progress;
+            progress /= branchingFactorOf(armorType, startingLoadout);
+        }
+    }
+
+    private LoadoutOptimizer forStartingLoadout(Loadout startingLoadout, double progressScale) {
+        return new LoadoutOptimizer(this, startingLoadout, progressScale);
+    }
 
     public static List<Loadout> findBestLoadouts(Collection<ThinArmorPiece> armorPieces,
         LoadoutScoringFunction scoringFunction)
     {
-        return findBestLoadoutsGiven(Loadout.empty(), armorPieces, scoringFunction);
+        return findBestLoadouts(armorPieces, scoringFunction, OptimizerOptions.defaults());
     }
 
-    private static List<Loadout> findBestLoadoutsGiven(Loadout startingLoadout, Collection<ThinArmorPiece> armorPieces,
-        LoadoutScoringFunction scoringFunction)
+    public static List<Loadout> findBestLoadouts(Collection<ThinArmorPiece> armorPieces,
+        LoadoutScoringFunction scoringFunction, OptimizerOptions options)
+    {
+        return findBestLoadouts(armorPieces, scoringFunction, options, SearchBudget.unlimited());
+    }
+
+    /**
+     * @param budget Limits how long the search may run. If it runs out, the search returns the best loadouts that it
+     * has found so far, which {@link SearchBudget#isComplete()} reports.
+     */
+    public static List<Loadout> findBestLoadouts(Collection<ThinArmorPiece> armorPieces,
+        LoadoutScoringFunction scoringFunction, OptimizerOptions options, SearchBudget budget)
+    {
+        return streamBestLoadouts(armorPieces, scoringFunction, options, budget).collect(toList());
+    }
+
+    /**
+     * Like {@link #findBestLoadouts(Collection, LoadoutScoringFunction, OptimizerOptions, SearchBudget)}, except that
+     * each loadout is only built when the stream reaches it. The search itself finishes before this method returns.
+     */
+    public static Stream<Loadout> streamBestLoadouts(Collection<ThinArmorPiece> armorPieces,
+        LoadoutScoringFunction scoringFunction, OptimizerOptions options, SearchBudget budget)
+    {
+        return streamBestLoadoutsGiven(Loadout.empty(), armorPieces, scoringFunction, options, null, budget, 1.0);
+    }
+
+    /**
+     * Like {@link #streamBestLoadouts(Collection, LoadoutScoringFunction, OptimizerOptions, SearchBudget)}, except
+     * that every loadout must meet {@code setBonusRequirements}. This takes the place of a search from each starting
+     * loadout that grants the set bonus skills, so {@code armorPieces} must include the pieces of the required set
+     * bonuses.
+     */
+    public static Stream<Loadout> streamBestLoadoutsWithSetBonuses(Collection<ThinArmorPiece> armorPieces,
+        SetBonusRequirements setBonusRequirements, LoadoutScoringFunction scoringFunction, OptimizerOptions options,
+        SearchBudget budget)
+    {
+        Objects.requireNonNull(setBonusRequirements, "setBonusRequirements must be non-null");
+        return streamBestLoadoutsGiven(Loadout.empty(), armorPieces, scoringFunction, options, setBonusRequirements,
+            budget, 1.0);
+    }
+
+    private static Stream<Loadout> streamBestLoadoutsGiven(Loadout startingLoadout,
+        Collection<ThinArmorPiece> armorPieces, LoadoutScoringFunction scoringFunction, OptimizerOptions options,
+        SetBonusRequirements setBonusRequirements, SearchBudget budget, double progressScale)
+    {
+        OptimizerResponse response = searchGiven(startingLoadout, armorPieces, scoringFunction, options,
+            setBonusRequirements, budget, progressScale);
+        return response.getArmorPiecesToAdd().
+            stream().
+            map(newArmorPieces -> loadoutOf(startingLoadout, newArmorPieces, scoringFunction));
+    }
+
+    private static OptimizerResponse searchGiven(Loadout startingLoadout, Collection<ThinArmorPiece> armorPieces,
+        LoadoutScoringFunction scoringFunction, OptimizerOptions options, SetBonusRequirements setBonusRequirements,
+        SearchBudget budget, double progressScale)
     {
+        Objects.requireNonNull(budget, "budget must be non-null");
         if(armorPieces == null || armorPieces.isEmpty()) {
-            return ImmutableList.of();
+            return OptimizerResponse.empty();
         }
 
-        Map<ArmorType, List<ThinArmorPiece>> armorPiecesMap = armorPieces.stream().
+        LoadoutOptimizer optimizer = new LoadoutOptimizer(armorPiecesMapOf(armorPieces), scoringFunction, options,
+            ImmutableList.of(startingLoadout), setBonusRequirements, budget);
+        OptimizerResponse response = optimizer.searchFrom(startingLoadout, options, progressScale);
+        optimizer.recordMemo(options);
+        return response;
+    }
+
+    /**
+     * Runs the search from {@code startingLoadout} on an optimizer that may be shared with other starting loadouts
+     *
+     * @return The armor pieces that each of the best loadouts adds to {@code startingLoadout}
+     */
+    private OptimizerResponse searchFrom(Loadout startingLoadout, OptimizerOptions options, double progressScale) {
+        // Like a pruned request, a starting loadout that cannot beat the incumbent is skipped and counted as progress
+        if(sharedAcrossStartingLoadouts && incumbent.cannotBeReachedWith(upperBoundOf(startingLoadout))) {
+            statistics.addNodesPruned(1);
+            budget.addProgress(progressScale);
+            return OptimizerResponse.empty();
+        }
+
+        LoadoutOptimizer optimizer = forStartingLoadout(startingLoadout, progressScale);
+        if(options.getEngine() == OptimizerEngine.ITERATIVE) {
+            IterativeLoadoutSearch search = new IterativeLoadoutSearch(armorPieces, scoringFunction,
+                remainingArmorBounds, stateOf(startingLoadout), options.getMaxResults(), setBonusRequirements,
+                sharedAcrossStartingLoadouts ? incumbent : null, budget, progressScale);
+            return search.search();
+        } else if(options.isParallel()) {
+            return optimizer.findBestLoadoutsInParallel(startingLoadout, options);
+        } else {
+            return optimizer.findBestLoadoutsGiven(stateOf(startingLoadout), nextArmorType(null));
+        }
+    }
+
+    /**
+     * @param scoringFunction The scoring function that the search was given, before it was bound to a skill index
+     */
+    private static Loadout loadoutOf(Loadout startingLoadout, List<ThinArmorPiece> newArmorPieces,
+        LoadoutScoringFunction scoringFunction)
+    {
+        Loadout tmp = Loadout.builder(startingLoadout).withArmorPieces(newArmorPieces).build();
+        return Loadout.builder(tmp).withScore(scoringFunction.scoreFor(tmp)).build();
+    }
+
+    /**
+     * @return A response with every armor piece of each of the loadouts that {@code response} adds to
+     * {@code startingLoadout}, in armor type order, so that equal loadouts have equal lists of armor pieces
+     */
+    private static OptimizerResponse withStartingLoadout(Loadout startingLoadout, OptimizerResponse response) {
+        List<List<ThinArmorPiece>> armorPieces = response.getArmorPiecesToAdd().
+            stream().
+            map((List<ThinArmorPiece> newArmorPieces) -> {
+                Map<ArmorType, ThinArmorPiece> armorPiecesByType = new EnumMap<>(ArmorType.class);
+                armorPiecesByType.putAll(startingLoadout.getArmorPieces());
+                for(ThinArmorPiece armorPiece : newArmorPieces) {
+                    armorPiecesByType.put(armorPiece.getArmorType(), armorPiece);
+                }
+                return ImmutableList.copyOf(armorPiecesByType.values());
+            }).
+            collect(toList());
+        return OptimizerResponse.of(armorPieces, response.getScores());
+    }
+
+    private void recordMemo(OptimizerOptions options) {
+        if(options.getEngine() == OptimizerEngine.RECURSIVE) {
+            statistics.addMemo(solutionCache);
+            LOGGER.debug("Solution cache finished with {} entries, {} hits, {} misses and {} evictions",
+                solutionCache.size(), solutionCache.getHitCount(), solutionCache.getMissCount(),
+                solutionCache.getEvictionCount());
+        }
+    }
+
+    private static Map<ArmorType, List<ThinArmorPiece>> armorPiecesMapOf(Collection<ThinArmorPiece> armorPieces) {
+        return armorPieces.stream().
             collect(toMap(
                 ThinArmorPiece::getArmorType,
                 ImmutableList::of,
                 (l1, l2) -> ImmutableList.<ThinArmorPiece>builder().addAll(l1).addAll(l2).build()
             ));
-        LoadoutOptimizer optimizer = new LoadoutOptimizer(armorPiecesMap, scoringFunction);
-        OptimizerResponse response = optimizer.findBestLoadoutsGiven(startingLoadout, nextArmorType(null));
-        return response.getArmorPiecesToAdd().
-            stream().
-            map((List<ThinArmorPiece> newArmorPieces) -> {
-                Loadout tmp = Loadout.builder(startingLoadout).withArmorPieces(newArmorPieces).build();
-                return Loadout.builder(tmp).withScore(scoringFunction.scoreFor(tmp)).build();
-            }).
-            collect(toList());
     }
 
     public static List<Loadout> findBestLoadoutsGiven(List<Loadout> startingLoadouts,
         Collection<ThinArmorPiece> otherArmorPieces, LoadoutScoringFunction scoringFunction)
     {
-        return startingLoadouts.stream().
-            map(startingLoadout -> findBestLoadoutsGiven(startingLoadout, otherArmorPieces, scoringFunction)).
-            map((List<Loadout> loadouts) -> {
-                if(loadouts.isEmpty()) {
-                    return OptimizerResponse.empty();
+        return findBestLoadoutsGiven(startingLoadouts, otherArmorPieces, scoringFunction, OptimizerOptions.defaults());
+    }
+
+    public static List<Loadout> findBestLoadoutsGiven(List<Loadout> startingLoadouts,
+        Collection<ThinArmorPiece> otherArmorPieces, LoadoutScoringFunction scoringFunction, OptimizerOptions options)
+    {
+        return findBestLoadoutsGiven(startingLoadouts, otherArmorPieces, scoringFunction, options,
+            SearchBudget.unlimited());
+    }
+
+    /**
+     * @param budget Limits how long the searches from all of the starting loadouts may run, together
+     */
+    public static List<Loadout> findBestLoadoutsGiven(List<Loadout> startingLoadouts,
+        Collection<ThinArmorPiece> otherArmorPieces, LoadoutScoringFunction scoringFunction, OptimizerOptions options,
+        SearchBudget budget)
+    {
+        return streamBestLoadoutsGiven(startingLoadouts, otherArmorPieces, scoringFunction, options, budget).
+            collect(toList());
+    }
+
+    /**
+     * Like {@link #findBestLoadoutsGiven(List, Collection, LoadoutScoringFunction, OptimizerOptions, SearchBudget)},
+     * except that each loadout is only built when the stream reaches it. Until then, the results from each starting
+     * loadout are kept as armor pieces. The searches themselves finish before this method returns.
+     */
+    public static Stream<Loadout> streamBestLoadoutsGiven(List<Loadout> startingLoadouts,
+        Collection<ThinArmorPiece> otherArmorPieces, LoadoutScoringFunction scoringFunction, OptimizerOptions options,
+        SearchBudget budget)
+    {
+        Objects.requireNonNull(budget, "budget must be non-null");
+        double progressScale = 1.0 / startingLoadouts.size();
+
+        // Searches from different starting loadouts meet the same states below the armor types that the starting
+        // loadouts fill, so sharing one optimizer lets each of them reuse what the others have already solved. It also
+        // shares the incumbent, so that each search prunes against the best loadouts found from any starting loadout.
+        List<OptimizerResponse> responses;
+        if(options.isSharedSolutionCache() && otherArmorPieces != null && !otherArmorPieces.isEmpty()) {
+            LoadoutOptimizer optimizer = new LoadoutOptimizer(armorPiecesMapOf(otherArmorPieces), scoringFunction,
+                options, startingLoadouts, null, budget);
+            responses = optimizer.searchFromEach(startingLoadouts, options, progressScale);
+            optimizer.recordMemo(options);
+        } else {
+            responses = startingLoadouts.stream().
+                map(startingLoadout -> withStartingLoadout(startingLoadout, searchGiven(startingLoadout,
+                    otherArmorPieces, scoringFunction, options, null, budget, progressScale))).
+                collect(toList());
+        }
+
+        if(options.isTopK()) {
+            // Different starting loadouts can lead to the same loadout, so the results are merged by loadout rather
+            // than by the armor pieces that each search added
+            Map<List<ThinArmorPiece>, Double> scoresByLoadout = new LinkedHashMap<>();
+            for(OptimizerResponse response : responses) {
+                for(int i = 0; i < response.getArmorPiecesToAdd().size(); i++) {
+                    scoresByLoadout.putIfAbsent(response.getArmorPiecesToAdd().get(i), response.getScores().get(i));
                 }
+            }
+            return scoresByLoadout.entrySet().
+                stream().
+                sorted(Map.Entry.<List<ThinArmorPiece>, Double>comparingByValue().reversed()).
+                limit(options.getMaxResults()).
+                map(entry -> loadoutOf(Loadout.empty(), entry.getKey(), scoringFunction));
+        }
 
-                return OptimizerResponse.ofLoadouts(loadouts, scoringFunction.scoreFor(loadouts.get(0)));
-            }).
-            reduce(OptimizerResponse.empty(), OptimizerResponse.merger()).
-            getArmorPiecesToAdd().
+        OptimizerResponse response = responses.stream().
+            reduce(OptimizerResponse.empty(), OptimizerResponse.merger());
+
+        // The armor pieces of each loadout are in armor type order, so equal loadouts have equal lists of armor pieces
+        return response.getArmorPiecesToAdd().
             stream().
-            map((List<ThinArmorPiece> armorPieces) -> {
-                Loadout tmp = Loadout.builder().withArmorPieces(armorPieces).build();
-                return Loadout.builder(tmp).withScore(scoringFunction.scoreFor(tmp)).build();
-            }).
             distinct().
-            collect(toList());
+            map(armorPieces -> loadoutOf(Loadout.empty(), armorPieces, scoringFunction));
+    }
+
+    /**
+     * Searches from each of the starting loadouts on this shared optimizer, those with the highest upper bounds first,
+     * so that the incumbent rises early and the rest can be skipped or pruned against it. A parallel search runs as
+     * many starting loadouts at once as its parallelism, each of them on a single thread, and still starts them in
+     * that order.
+     *
+     * @return The best loadouts from each starting loadout, with all of their armor pieces, in no particular order
+     */
+    private List<OptimizerResponse> searchFromEach(List<Loadout> startingLoadouts, OptimizerOptions options,
+        double progressScale)
+    {
+        Map<Loadout, Double> upperBounds = new IdentityHashMap<>();
+        for(Loadout startingLoadout : startingLoadouts) {
+            upperBounds.put(startingLoadout, upperBoundOf(startingLoadout));
+        }
+        List<Loadout> orderedStartingLoadouts = new ArrayList<>(startingLoadouts);
+        orderedStartingLoadouts.sort(Comparator.<Loadout>comparingDouble(upperBounds::get).reversed());
+
+        if(!options.isParallel()) {
+            return orderedStartingLoadouts.stream().
+                map(startingLoadout -> withStartingLoadout(startingLoadout, searchFrom(startingLoadout, options,
+                    progressScale))).
+                collect(toList());
+        }
+
+        OptimizerOptions startingLoadoutOptions = OptimizerOptions.builder(options).
+            withParallelism(1).
+            build();
+        return searchEachInParallel(orderedStartingLoadouts, options, (Loadout startingLoadout) ->
+            withStartingLoadout(startingLoadout, searchFrom(startingLoadout, startingLoadoutOptions, progressScale)));
+    }
+
+    private OptimizerResponse findBestLoadoutsInParallel(Loadout startingLoadout, OptimizerOptions options) {
+        List<List<ThinArmorPiece>> prefixes = ImmutableList.of(ImmutableList.of());
+        ArmorType armorType = nextArmorType(null);
+        while(true) {
+            prefixes = extendPrefixes(prefixes, startingLoadout, armorType);
+            if(armorType == LAST_PARALLEL_ARMOR_TYPE) {
+                break;
+            }
+            armorType = nextArmorType(armorType);
+        }
+
+        ArmorType firstSequentialArmorType = nextArmorType(armorType);
+        return searchEachInParallel(prefixes, options, (List<ThinArmorPiece> prefix) -> {
+            LoadoutState state = stateOf(startingLoadout);
+            for(ThinArmorPiece armorPiece : prefix) {
+                state.add(armorPiece);
+            }
+            OptimizerResponse nextResponse = findBestLoadoutsGiven(state, firstSequentialArmorType);
+            return prepend(prefix, state, nextResponse);
+        }).
+            stream().
+            reduce(OptimizerResponse.empty(), merger);
+    }
+
+    /**
+     * Runs {@code search} on each of the items on the options' pool. The pool is shared with other searches, so only as
+     * many workers as the options' parallelism take part, each taking the next item that none of the others has taken.
+     *
+     * @return The result of the search on each item, in the order of the items
+     */
+    private <T, R> List<R> searchEachInParallel(List<T> items, OptimizerOptions options, Function<T, R> search) {
+        AtomicInteger nextItem = new AtomicInteger();
+        AtomicReferenceArray<R> results = new AtomicReferenceArray<>(items.size());
+        List<ForkJoinTask<?>> workers = new ArrayList<>();
+        for(int i = 0; i < Math.min(options.getParallelism(), items.size()); i++) {
+            workers.add(ForkJoinTask.adapt(() -> {
+                for(int item = nextItem.getAndIncrement(); item < items.size(); item = nextItem.getAndIncrement()) {
+                    results.set(item, search.apply(items.get(item)));
+                }
+            }));
+        }
+
+        try {
+            options.getPool().submit(() -> ForkJoinTask.invokeAll(workers)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            budget.cancel();
+            throw new IllegalStateException("Interrupted while searching in parallel", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("A parallel search failed", e.getCause());
+        }
+
+        List<R> resultList = new ArrayList<>(items.size());
+        for(int item = 0; item < items.size(); item++) {
+            resultList.add(results.get(item));
+        }
+        return resultList;
+    }
+
+    private List<List<ThinArmorPiece>> extendPrefixes(List<List<ThinArmorPiece>> prefixes, Loadout startingLoadout,
+        ArmorType armorType)
+    {
+        List<ThinArmorPiece> currentArmorPieces = armorPieces.getOrDefault(armorType, emptyList());
+        if(startingLoadout.getArmorPieces().containsKey(armorType) || currentArmorPieces.isEmpty()) {
+            return prefixes;
+        }
+
+        List<List<ThinArmorPiece>> extendedPrefixes = new ArrayList<>(prefixes.size() * (currentArmorPieces.size() + 1));
+        for(List<ThinArmorPiece> prefix : prefixes) {
+            extendedPrefixes.add(prefix);
+            for(ThinArmorPiece armorPiece : currentArmorPieces) {
+                extendedPrefixes.add(ImmutableList.<ThinArmorPiece>builder().addAll(prefix).add(armorPiece).build());
+            }
+        }
+        return extendedPrefixes;
     }
 
-    private OptimizerResponse findBestLoadoutsGiven(Loadout currentLoadout, ArmorType armorType) {
-        if(currentLoadout.getArmorPieces().containsKey(armorType)) {
+    private OptimizerResponse findBestLoadoutsGiven(LoadoutState state, ArmorType armorType) {
+        // Like a pruned response, this leaves out everything below this request, so it is neither cached nor counted
+        // as progress
+        if(budget.isExhausted()) {
+            return OptimizerResponse.empty();
+        }
+
+        if(state.getArmorPiece(armorType) != null) {
             if(hasNextArmorType(armorType)) {
-                return findBestLoadoutsGiven(currentLoadout, nextArmorType(armorType));
+                return findBestLoadoutsGiven(state, nextArmorType(armorType));
             } else {
-                return OptimizerResponse.of(emptyList(), scoringFunction.scoreFor(currentLoadout));
+                addProgress(armorType);
+                return addNothing(state);
             }
         }
 
+        // Like a pruned response, this is neither cached nor an answer
+        if(!canMeetSetBonusRequirements(state, armorType)) {
+            statistics.addNodesPruned(1);
+            addProgress(armorType);
+            return OptimizerResponse.empty();
+        }
+
         OptimizerRequest request = new OptimizerRequest(
                 armorType,
-                scoringFunction.keyFor(currentLoadout)
+                stateKeyFor(state, armorType)
         );
-        if(solutionCache.containsKey(request)) {
-            return solutionCache.get(request);
-        } else if(hasNextArmorType(armorType)) {
-            List<ThinArmorPiece> currentArmorPieces = armorPieces.getOrDefault(armorType, emptyList());
+        OptimizerResponse cachedResponse = solutionCache.get(request);
+        if(cachedResponse != null) {
+            addProgress(armorType);
+            return cachedResponse;
+        }
+
+        double upperBound = scoringFunction.upperBound(state, remainingArmorBoundsFor(state, armorType));
+        if(incumbent.cannotBeReachedWith(upperBound)) {
+            statistics.addNodesPruned(1);
+            addProgress(armorType);
+            return OptimizerResponse.empty();
+        }
+        statistics.addNodesExpanded(1);
+
+        List<ThinArmorPiece> currentArmorPieces = armorPieces.getOrDefault(armorType, emptyList());
+        if(hasNextArmorType(armorType)) {
             if(currentArmorPieces.isEmpty()) {
-                OptimizerResponse response = findBestLoadoutsGiven(currentLoadout, nextArmorType(armorType));
-                solutionCache.put(request, response);
-                return response;
+                OptimizerResponse response = findBestLoadoutsGiven(state, nextArmorType(armorType));
+                return cache(request, response);
             }
 
-            OptimizerResponse responseWithType = currentArmorPieces.stream().
-                map(armorPiece -> optimizeNonTerminal(currentLoadout, armorType, armorPiece)).
-                reduce(OptimizerResponse.empty(), OptimizerResponse.merger());
-            OptimizerResponse responseWithoutType = findBestLoadoutsGiven(currentLoadout, nextArmorType(armorType));
-            OptimizerResponse response = OptimizerResponse.merger().apply(responseWithType, responseWithoutType);
-            solutionCache.put(request, response);
-            return response;
+            OptimizerResponse responseWithType = OptimizerResponse.empty();
+            for(ThinArmorPiece armorPiece : currentArmorPieces) {
+                responseWithType = merger.apply(responseWithType, optimizeNonTerminal(state, armorType, armorPiece));
+            }
+            OptimizerResponse responseWithoutType = findBestLoadoutsGiven(state, nextArmorType(armorType));
+            OptimizerResponse response = merger.apply(responseWithType, responseWithoutType);
+            return cache(request, response);
         } else {
-            OptimizerResponse responseWithType = armorPieces.getOrDefault(armorType, emptyList()).
-                stream().
-                map(armorPiece-> optimizeTerminal(currentLoadout, armorPiece)).
-                reduce(OptimizerResponse.empty(), OptimizerResponse.merger());
-            OptimizerResponse responseWithoutType = OptimizerResponse.of(emptyList(), scoringFunction.scoreFor(currentLoadout));
-            OptimizerResponse response = OptimizerResponse.merger().apply(responseWithType, responseWithoutType);
+            OptimizerResponse responseWithType = OptimizerResponse.empty();
+            for(ThinArmorPiece armorPiece : currentArmorPieces) {
+                responseWithType = merger.apply(responseWithType, optimizeTerminal(state, armorPiece));
+            }
+            OptimizerResponse responseWithoutType = addNothing(state);
+            OptimizerResponse response = merger.apply(responseWithType, responseWithoutType);
+            addProgress(armorType);
+            return cache(request, response);
+        }
+    }
+
+    // Each of the following methods leaves the state as it found it
+
+    private OptimizerResponse optimizeNonTerminal(LoadoutState state, ArmorType armorType, ThinArmorPiece armorPiece) {
+        state.add(armorPiece);
+        OptimizerResponse nextResponse = findBestLoadoutsGiven(state, nextArmorType(armorType));
+        OptimizerResponse response = prepend(ImmutableList.of(armorPiece), state, nextResponse);
+        state.remove(armorType);
+        return response;
+    }
+
+    private OptimizerResponse optimizeTerminal(LoadoutState state, ThinArmorPiece armorPiece) {
+        List<ThinArmorPiece> armorPiecesToAdd = ImmutableList.of(armorPiece);
+        state.add(armorPiece);
+        if(!meetsSetBonusRequirements(state)) {
+            state.remove(armorPiece.getArmorType());
+            return OptimizerResponse.empty();
+        }
+        double score = score(state);
+        state.remove(armorPiece.getArmorType());
+        return OptimizerResponse.of(ImmutableList.of(armorPiecesToAdd), score);
+    }
+
+    /**
+     * @param state The state that {@code nextResponse} was found for, which already includes {@code prefix}
+     */
+    private OptimizerResponse prepend(List<ThinArmorPiece> prefix, LoadoutState state, OptimizerResponse nextResponse) {
+        if(nextResponse.isEmpty()) {
+            return nextResponse;
+        } else if(nextResponse.getArmorPiecesToAdd().isEmpty()) {
+            double score = score(state);
+            List<List<ThinArmorPiece>> armorPiecesToAdd = prefix.isEmpty() ? emptyList() : ImmutableList.of(prefix);
+            return OptimizerResponse.of(armorPiecesToAdd, score);
+        }
+
+        OptimizerResponse response = OptimizerResponse.empty();
+        for(List<ThinArmorPiece> ps : nextResponse.getArmorPiecesToAdd()) {
+            List<ThinArmorPiece> nextPiecesToAdd = ImmutableList.<ThinArmorPiece> builder().addAll(prefix).addAll(ps).build();
+            for(ThinArmorPiece armorPiece : ps) {
+                state.add(armorPiece);
+            }
+            double score = score(state);
+            for(ThinArmorPiece armorPiece : ps) {
+                state.remove(armorPiece.getArmorType());
+            }
+            response = merger.apply(response, OptimizerResponse.of(ImmutableList.of(nextPiecesToAdd), score));
+        }
+        return response;
+    }
+
+    // Top-K responses list every loadout that they keep, including the one that adds no armor pieces. The empty loadout
+    // is never a result though, so it must not take one of the places.
+    private OptimizerResponse addNothing(LoadoutState state) {
+        if(!meetsSetBonusRequirements(state) || (topK && state.getArmorPieceCount() == 0)) {
+            return OptimizerResponse.empty();
+        }
+        List<List<ThinArmorPiece>> armorPiecesToAdd = topK ? ImmutableList.of(ImmutableList.of()) : emptyList();
+        return OptimizerResponse.of(armorPiecesToAdd, score(state));
+    }
+
+    // Pruned responses are not cached, since a later request with the same key may be compared to a different
+    // incumbent
+    private OptimizerResponse cache(OptimizerRequest request, OptimizerResponse response) {
+        if(!response.isEmpty()) {
             solutionCache.put(request, response);
-            return response;
         }
+        return response;
     }
 
-    private OptimizerResponse optimizeNonTerminal(Loadout currentLoadout, ArmorType armorType, ThinArmorPiece armorPiece) {
-        Loadout nextLoadout = Loadout.builder(currentLoadout).withArmorPiece(armorPiece).build();
-        OptimizerResponse nextResponse = findBestLoadoutsGiven(nextLoadout, nextArmorType(armorType));
+    // Only requests that are answered without searching any further count as progress, so that no part of the search
+    // space is counted twice
+    private void addProgress(ArmorType armorType) {
+        budget.addProgress(requestProgress[armorType.ordinal()]);
+    }
 
-        if(nextResponse.getArmorPiecesToAdd().isEmpty()) {
-            double score = scoringFunction.scoreFor(nextLoadout);
-            return OptimizerResponse.of(ImmutableList.of(ImmutableList.of(armorPiece)), score);
+    // The set bonus pieces that a state holds decide which of its completions are allowed, so they are part of its key.
+    // Counts past the most that any requirement needs are all the same. So do the armor types that it has yet to fill,
+    // once different starting loadouts can fill different ones.
+    private int[] stateKeyFor(LoadoutStats state, ArmorType armorType) {
+        int[] key = scoringFunction.stateKeyFor(state);
+        if(sharedAcrossStartingLoadouts) {
+            key = Arrays.copyOf(key, key.length + 1);
+            key[key.length - 1] = remainingArmorTypesFor(state, armorType);
+        }
+        if(setBonusRequirements == null) {
+            return key;
         }
 
-        return findBestLoadoutsGiven(nextLoadout, nextArmorType(armorType)).
-            getArmorPiecesToAdd().
-            stream().
-            map((List<ThinArmorPiece> ps) -> {
-                List<ThinArmorPiece> nextPiecesToAdd = ImmutableList.<ThinArmorPiece> builder().add(armorPiece).addAll(ps).build();
-                Loadout loadout = Loadout.builder(nextLoadout).withArmorPieces(nextPiecesToAdd).build();
-                double score = scoringFunction.scoreFor(loadout);
-                return OptimizerResponse.of(ImmutableList.of(nextPiecesToAdd), score);
-            }).
-            reduce(OptimizerResponse.empty(), OptimizerResponse.merger());
+        int[] pieceCounts = setBonusPieceCountsOf(state);
+        int[] keyWithSetBonuses = Arrays.copyOf(key, key.length + pieceCounts.length);
+        for(int ordinal = 0; ordinal < pieceCounts.length; ordinal++) {
+            keyWithSetBonuses[key.length + ordinal] =
+                Math.min(pieceCounts[ordinal], setBonusRequirements.getMaxRequiredPieces(ordinal));
+        }
+        return keyWithSetBonuses;
     }
 
-    private OptimizerResponse optimizeTerminal(Loadout currentLoadout, ThinArmorPiece armorPiece) {
-        List<ThinArmorPiece> armorPiecesToAdd = ImmutableList.of(armorPiece);
-        Loadout resultingLoadout = Loadout.builder(currentLoadout).withArmorPiece(armorPiece).build();
-        double score = scoringFunction.scoreFor(resultingLoadout);
-        return OptimizerResponse.of(ImmutableList.of(armorPiecesToAdd), score);
+    private boolean meetsSetBonusRequirements(LoadoutStats state) {
+        return setBonusRequirements == null || setBonusRequirements.areMetBy(setBonusPieceCountsOf(state));
+    }
+
+    private boolean canMeetSetBonusRequirements(LoadoutStats state, ArmorType armorType) {
+        return setBonusRequirements == null || setBonusRequirements.canBeMetWith(setBonusPieceCountsOf(state),
+            availableSetBonusPieces[remainingArmorTypesFor(state, armorType)]);
+    }
+
+    private int[] setBonusPieceCountsOf(LoadoutStats state) {
+        int[] pieceCounts = new int[setBonusRequirements.getSetBonusCount()];
+        for(ArmorType armorType : ArmorType.values()) {
+            ThinArmorPiece armorPiece = state.getArmorPiece(armorType);
+            Integer ordinal = (armorPiece == null) ? null : setBonusOrdinals.get(armorPiece);
+            if(ordinal != null) {
+                pieceCounts[ordinal]++;
+            }
+        }
+        return pieceCounts;
+    }
+
+    private double score(LoadoutStats loadout) {
+        double score = scoringFunction.scoreFor(loadout);
+        incumbent.offer(loadout, score);
+        return score;
+    }
+
+    private LoadoutState stateOf(Loadout loadout) {
+        return LoadoutState.of(loadout, skillIndex);
+    }
+
+    // The best score that any search from the starting loadout could find
+    private double upperBoundOf(Loadout startingLoadout) {
+        LoadoutState state = stateOf(startingLoadout);
+        return scoringFunction.upperBound(state, remainingArmorBoundsFor(state, nextArmorType(null)));
+    }
+
+    // The number of choices that the search has for the given armor type, including adding no piece of that type
+    private int branchingFactorOf(ArmorType armorType, Loadout startingLoadout) {
+        if(startingLoadout.getArmorPieces().containsKey(armorType)) {
+            return 1;
+        }
+        return armorPieces.getOrDefault(armorType, emptyList()).size() + 1;
+    }
+
+    private RemainingArmorBounds remainingArmorBoundsFor(LoadoutStats loadout, ArmorType armorType) {
+        return remainingArmorBounds[remainingArmorTypesFor(loadout, armorType)];
+    }
+
+    // A bit mask of the ordinals of the armor types from armorType on that the loadout has yet to fill
+    private int remainingArmorTypesFor(LoadoutStats loadout, ArmorType armorType) {
+        ArmorType[] armorTypes = ArmorType.values();
+        int mask = 0;
+        for(int i = armorType.ordinal(); i < armorTypes.length; i++) {
+            if(loadout.getArmorPiece(armorTypes[i]) == null) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
     }
 }
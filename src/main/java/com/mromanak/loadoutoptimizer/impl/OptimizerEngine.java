@@ -0,0 +1,49 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+
+public enum OptimizerEngine {
+
+    // A memoized recursive search that can run in parallel
+    RECURSIVE("Recursive"),
+
+    // A single-threaded, unmemoized depth-first search that allocates nothing per node
+    ITERATIVE("Iterative");
+
+    private static final Map<String, OptimizerEngine> nameToValueMap;
+
+    static {
+        ImmutableMap.Builder<String, OptimizerEngine> nameToValueBuilder = ImmutableMap.builder();
+        for(OptimizerEngine engine : values()) {
+            nameToValueBuilder.put(engine.getName(), engine);
+        }
+        nameToValueMap = nameToValueBuilder.build();
+    }
+
+    private final String name;
+
+    OptimizerEngine(String name) {
+        this.name = name;
+    }
+
+    @JsonValue
+    public String getName() {
+        return name;
+    }
+
+    @JsonCreator
+    public static OptimizerEngine forName(String name) {
+        OptimizerEngine engine = nameToValueMap.get(name);
+        if(engine == null) {
+            throw new IllegalArgumentException(
+                    name + " is not a recognized optimizer engine. Recognized optimizer engines are: " + asList(values()));
+        }
+        return engine;
+    }
+}
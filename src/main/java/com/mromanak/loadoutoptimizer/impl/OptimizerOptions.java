@@ -0,0 +1,124 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import lombok.Data;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+@Data
+public class OptimizerOptions {
+
+    public static final int DEFAULT_SOLUTION_CACHE_MAX_ENTRIES = 250_000;
+
+    private static final OptimizerOptions DEFAULTS = builder().build();
+
+    // The most threads of the pool that a search may use at once
+    private final int parallelism;
+
+    // The pool that a parallel search runs on. Searches share it rather than each starting threads of their own, so
+    // its size bounds the threads used by every search at once.
+    private final ForkJoinPool pool;
+
+    // The number of best loadouts to return. 0 means every loadout that ties for the best score.
+    private final int maxResults;
+
+    private final OptimizerEngine engine;
+
+    // The most responses that the recursive engine may memoize per search
+    private final int solutionCacheMaxEntries;
+
+    // Whether the searches from a request's starting loadouts share one solution cache and incumbent, rather than
+    // each starting from scratch
+    private final boolean sharedSolutionCache;
+
+    private OptimizerOptions(Builder builder) {
+        parallelism = builder.parallelism;
+        pool = builder.pool;
+        maxResults = builder.maxResults;
+        engine = builder.engine;
+        solutionCacheMaxEntries = builder.solutionCacheMaxEntries;
+        sharedSolutionCache = builder.sharedSolutionCache;
+    }
+
+    public static OptimizerOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static Builder builder(OptimizerOptions copy) {
+        Builder builder = new Builder();
+        builder.parallelism = copy.parallelism;
+        builder.pool = copy.pool;
+        builder.maxResults = copy.maxResults;
+        builder.engine = copy.engine;
+        builder.solutionCacheMaxEntries = copy.solutionCacheMaxEntries;
+        builder.sharedSolutionCache = copy.sharedSolutionCache;
+        return builder;
+    }
+
+    public boolean isParallel() {
+        return parallelism > 1;
+    }
+
+    public boolean isTopK() {
+        return maxResults > 0;
+    }
+
+    public static final class Builder {
+        private int parallelism = 1;
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+        private int maxResults = 0;
+        private OptimizerEngine engine = OptimizerEngine.RECURSIVE;
+        private int solutionCacheMaxEntries = DEFAULT_SOLUTION_CACHE_MAX_ENTRIES;
+        private boolean sharedSolutionCache = true;
+
+        private Builder() {
+        }
+
+        public Builder withParallelism(int val) {
+            if (val < 1) {
+                throw new IllegalArgumentException("parallelism must be at least 1");
+            }
+            parallelism = val;
+            return this;
+        }
+
+        public Builder withPool(ForkJoinPool val) {
+            pool = Objects.requireNonNull(val, "pool must be non-null");
+            return this;
+        }
+
+        public Builder withMaxResults(int val) {
+            if (val < 0) {
+                throw new IllegalArgumentException("maxResults must be non-negative");
+            }
+            maxResults = val;
+            return this;
+        }
+
+        public Builder withEngine(OptimizerEngine val) {
+            engine = Objects.requireNonNull(val, "engine must be non-null");
+            return this;
+        }
+
+        public Builder withSolutionCacheMaxEntries(int val) {
+            if (val < 0) {
+                throw new IllegalArgumentException("solutionCacheMaxEntries must be non-negative");
+            }
+            solutionCacheMaxEntries = val;
+            return this;
+        }
+
+        public Builder withSharedSolutionCache(boolean val) {
+            sharedSolutionCache = val;
+            return this;
+        }
+
+        public OptimizerOptions build() {
+            return new OptimizerOptions(this);
+        }
+    }
+}
@@ -8,8 +8,10 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.function.BinaryOperator;
 
 import static java.util.stream.Collectors.toList;
@@ -19,7 +21,9 @@ import static java.util.stream.Stream.concat;
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 class OptimizerResponse {
 
-    private static final OptimizerResponse EMPTY_RESPONSE = new OptimizerResponse(ImmutableList.of(), 0.0);
+    // Loses to every other response, so it is the identity for MERGER. It is also the result of a pruned search.
+    private static final OptimizerResponse EMPTY_RESPONSE =
+        new OptimizerResponse(ImmutableList.of(), ImmutableList.of(), Double.NEGATIVE_INFINITY);
     private static final BinaryOperator<OptimizerResponse> MERGER = (OptimizerResponse r1, OptimizerResponse r2) -> {
         if(r1.score > r2.score) {
             return r1;
@@ -36,15 +40,31 @@ class OptimizerResponse {
             filter(l -> l.size() == minumumLength).
             collect(toList());
 
-        return new OptimizerResponse(armorPiecesToAdd, r1.score);
+        return of(armorPiecesToAdd, r1.score);
     };
 
     private final List<List<ThinArmorPiece>> armorPiecesToAdd;
+
+    // The score of each element of armorPiecesToAdd, in the same order
+    private final List<Double> scores;
+
+    // The best score in the response
     private final double score;
 
     public static OptimizerResponse of(List<List<ThinArmorPiece>> armorPiecesToAdd, double score) {
         armorPiecesToAdd = (armorPiecesToAdd == null) ? ImmutableList.of() : ImmutableList.copyOf(armorPiecesToAdd);
-        return new OptimizerResponse(armorPiecesToAdd, score);
+        return new OptimizerResponse(armorPiecesToAdd, Collections.nCopies(armorPiecesToAdd.size(), score), score);
+    }
+
+    /**
+     * @param scores The score of each element of {@code armorPiecesToAdd}, in the same order
+     */
+    public static OptimizerResponse of(List<List<ThinArmorPiece>> armorPiecesToAdd, List<Double> scores) {
+        if(armorPiecesToAdd.size() != scores.size()) {
+            throw new IllegalArgumentException("armorPiecesToAdd and scores must be the same size");
+        }
+        double score = scores.stream().mapToDouble(Double::doubleValue).max().orElse(Double.NEGATIVE_INFINITY);
+        return new OptimizerResponse(ImmutableList.copyOf(armorPiecesToAdd), ImmutableList.copyOf(scores), score);
     }
 
     public static OptimizerResponse ofLoadouts(List<Loadout> loadouts, double score) {
@@ -62,7 +82,56 @@ class OptimizerResponse {
         return EMPTY_RESPONSE;
     }
 
+    public boolean isEmpty() {
+        return score == Double.NEGATIVE_INFINITY;
+    }
+
     public static BinaryOperator<OptimizerResponse> merger() {
         return MERGER;
     }
+
+    /**
+     * @return A merger that keeps the {@code maxResults} best-scoring elements of both responses, sorted from best to
+     * worst. Unlike {@link #merger()}, it does not treat an empty {@code armorPiecesToAdd} as a response that adds
+     * nothing, so a response that adds nothing must contain an empty list of armor pieces.
+     */
+    public static BinaryOperator<OptimizerResponse> topKMerger(int maxResults) {
+        if (maxResults < 1) {
+            throw new IllegalArgumentException("maxResults must be at least 1");
+        }
+
+        return (OptimizerResponse r1, OptimizerResponse r2) -> {
+            if (r2.isEmpty()) {
+                return r1;
+            } else if (r1.isEmpty()) {
+                return r2;
+            }
+
+            // A min-heap of the indices of the best elements seen so far, where indices past the end of r1 refer to r2.
+            // Given elements with the same score, prefer ones that use the fewest armor pieces.
+            int r1Size = r1.armorPiecesToAdd.size();
+            Comparator<Integer> byScore = Comparator.
+                <Integer>comparingDouble(i -> (i < r1Size) ? r1.scores.get(i) : r2.scores.get(i - r1Size)).
+                thenComparingInt(i -> -((i < r1Size) ? r1.armorPiecesToAdd.get(i) : r2.armorPiecesToAdd.get(i - r1Size)).size());
+            PriorityQueue<Integer> bestIndices = new PriorityQueue<>(maxResults + 1, byScore);
+            for (int i = 0; i < r1Size + r2.armorPiecesToAdd.size(); i++) {
+                bestIndices.add(i);
+                if (bestIndices.size() > maxResults) {
+                    bestIndices.poll();
+                }
+            }
+
+            List<Integer> sortedIndices = new ArrayList<>(bestIndices);
+            sortedIndices.sort(byScore.reversed());
+            ImmutableList.Builder<List<ThinArmorPiece>> armorPiecesToAdd = ImmutableList.builder();
+            ImmutableList.Builder<Double> scores = ImmutableList.builder();
+            for (int i : sortedIndices) {
+                OptimizerResponse response = (i < r1Size) ? r1 : r2;
+                int index = (i < r1Size) ? i : i - r1Size;
+                armorPiecesToAdd.add(response.armorPiecesToAdd.get(index));
+                scores.add(response.scores.get(index));
+            }
+            return new OptimizerResponse(armorPiecesToAdd.build(), scores.build(), Math.max(r1.score, r2.score));
+        };
+    }
 }
@@ -0,0 +1,103 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Limits how long a search may run and lets another thread cancel it. Searches check their budget every few nodes,
+ * and once it is exhausted they stop exploring and return the best loadouts that they have found so far. A budget
+ * also tracks how much of the search space the searches that use it have covered, so it should not be reused between
+ * unrelated searches.
+ */
+public class SearchBudget {
+
+    // Reading the clock on every node would cost more than many of the nodes themselves
+    private static final int CHECK_INTERVAL_MASK = (1 << 10) - 1;
+
+    private final long deadlineNanos;
+    private final boolean hasDeadline;
+    private final DoubleAdder progress = new DoubleAdder();
+    private final SearchStatistics statistics = new SearchStatistics();
+    private volatile boolean cancelled = false;
+    private volatile boolean exhausted = false;
+
+    // Shared between threads without synchronization, since an occasional lost update only delays a check
+    private int checkCount = 0;
+
+    private SearchBudget(long timeoutNanos, boolean hasDeadline) {
+        this.deadlineNanos = System.nanoTime() + timeoutNanos;
+        this.hasDeadline = hasDeadline;
+    }
+
+    public static SearchBudget unlimited() {
+        return new SearchBudget(0, false);
+    }
+
+    /**
+     * @param timeoutMillis How long searches may run, starting now
+     */
+    public static SearchBudget withTimeout(long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("timeoutMillis must be non-negative");
+        }
+        return new SearchBudget(TimeUnit.MILLISECONDS.toNanos(timeoutMillis), true);
+    }
+
+    /**
+     * Asks any search that uses this budget to stop as soon as it next checks it.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return How long searches may still run, in milliseconds, or {@link Long#MAX_VALUE} if there is no time limit
+     */
+    public long getRemainingMillis() {
+        if(!hasDeadline) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()), 0);
+    }
+
+    /**
+     * @return True if no search that used this budget has been stopped early, so the results of the ones that have
+     * finished are optimal
+     */
+    public boolean isComplete() {
+        return !exhausted;
+    }
+
+    /**
+     * @return The fraction of the search space, from 0 to 1, that the searches that used this budget have either
+     * explored or ruled out so far. Because of rounding, a finished search may report slightly less than 1.
+     */
+    public double getProgress() {
+        return Math.min(progress.sum(), 1.0);
+    }
+
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+
+    boolean isExhausted() {
+        if (exhausted) {
+            return true;
+        } else if ((++checkCount & CHECK_INTERVAL_MASK) != 0) {
+            return false;
+        }
+
+        if (cancelled || (hasDeadline && System.nanoTime() - deadlineNanos >= 0)) {
+            exhausted = true;
+        }
+        return exhausted;
+    }
+
+    void addProgress(double fraction) {
+        progress.add(fraction);
+    }
+}
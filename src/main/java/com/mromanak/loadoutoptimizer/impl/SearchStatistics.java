@@ -0,0 +1,169 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the work done by the searches that share a {@link SearchBudget}. Searches from different starting loadouts
+ * and different threads add to the same counts. The code that prepares a search records what it was given and how
+ * long each phase took, so that a slow request can be explained from one place.
+ */
+public class SearchStatistics {
+
+    private static final ArmorType[] ARMOR_TYPES = ArmorType.values();
+
+    private final LongAdder nodesExpanded = new LongAdder();
+    private final LongAdder nodesPruned = new LongAdder();
+    private final LongAdder memoHits = new LongAdder();
+    private final LongAdder memoMisses = new LongAdder();
+    private final LongAdder memoEvictions = new LongAdder();
+
+    // Indexed by armor type ordinal
+    private final AtomicLongArray memoEntries = new AtomicLongArray(ARMOR_TYPES.length);
+    private final AtomicLongArray candidates = new AtomicLongArray(ARMOR_TYPES.length);
+    private final AtomicLongArray searchedCandidates = new AtomicLongArray(ARMOR_TYPES.length);
+
+    // Indexed by phase ordinal
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+
+    private volatile int startingLoadoutCount = -1;
+
+    SearchStatistics() {
+    }
+
+    /**
+     * @return How many nodes the searches have branched on, trying each armor piece for the node's armor type
+     */
+    public long getNodesExpanded() {
+        return nodesExpanded.sum();
+    }
+
+    /**
+     * @return How many nodes the searches have skipped because their upper bound could not beat the best loadouts
+     * found so far
+     */
+    public long getNodesPruned() {
+        return nodesPruned.sum();
+    }
+
+    public long getMemoHits() {
+        return memoHits.sum();
+    }
+
+    public long getMemoMisses() {
+        return memoMisses.sum();
+    }
+
+    public long getMemoEvictions() {
+        return memoEvictions.sum();
+    }
+
+    /**
+     * @return The total number of entries that the searches' solution caches held when they finished
+     */
+    public long getMemoEntries() {
+        long total = 0;
+        for(int i = 0; i < memoEntries.length(); i++) {
+            total += memoEntries.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of distinct states that the searches' solution caches held for each armor type when they
+     * finished
+     */
+    public Map<ArmorType, Long> getMemoEntriesByArmorType() {
+        return toMap(memoEntries);
+    }
+
+    /**
+     * @return The candidate armor pieces of each type that the request's selectors allowed
+     */
+    public Map<ArmorType, Long> getCandidatesByArmorType() {
+        return toMap(candidates);
+    }
+
+    /**
+     * @return The candidate armor pieces of each type that were left to search once dominated ones were removed
+     */
+    public Map<ArmorType, Long> getSearchedCandidatesByArmorType() {
+        return toMap(searchedCandidates);
+    }
+
+    /**
+     * @return The number of starting loadouts that were searched from, or -1 if the search started from no armor
+     */
+    public int getStartingLoadoutCount() {
+        return startingLoadoutCount;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos.get(phase.ordinal());
+    }
+
+    public void recordCandidates(Collection<ThinArmorPiece> candidateArmorPieces,
+        Collection<ThinArmorPiece> searchedArmorPieces)
+    {
+        count(candidateArmorPieces, candidates);
+        count(searchedArmorPieces, searchedCandidates);
+    }
+
+    public void recordStartingLoadoutCount(int count) {
+        startingLoadoutCount = count;
+    }
+
+    public void addPhaseNanos(Phase phase, long nanos) {
+        phaseNanos.addAndGet(phase.ordinal(), nanos);
+    }
+
+    void addNodesExpanded(long count) {
+        nodesExpanded.add(count);
+    }
+
+    void addNodesPruned(long count) {
+        nodesPruned.add(count);
+    }
+
+    void addMemo(SolutionCache cache) {
+        memoHits.add(cache.getHitCount());
+        memoMisses.add(cache.getMissCount());
+        memoEvictions.add(cache.getEvictionCount());
+        for(ArmorType armorType : ARMOR_TYPES) {
+            memoEntries.addAndGet(armorType.ordinal(), cache.sizeOf(armorType));
+        }
+    }
+
+    private static void count(Collection<ThinArmorPiece> armorPieces, AtomicLongArray counts) {
+        for(ThinArmorPiece armorPiece : armorPieces) {
+            counts.incrementAndGet(armorPiece.getArmorType().ordinal());
+        }
+    }
+
+    private static Map<ArmorType, Long> toMap(AtomicLongArray counts) {
+        Map<ArmorType, Long> map = new EnumMap<>(ArmorType.class);
+        for(ArmorType armorType : ARMOR_TYPES) {
+            map.put(armorType, counts.get(armorType.ordinal()));
+        }
+        return map;
+    }
+
+    /**
+     * The parts of a request that are timed separately
+     */
+    public enum Phase {
+        // Reading the candidate armor pieces from the armor catalog
+        FETCH,
+
+        // Generating the starting loadouts that grant the requested set bonuses
+        STARTING_LOADOUTS,
+
+        SEARCH
+    }
+}
@@ -0,0 +1,147 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinSetBonusSkill;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The set bonus skills that every loadout of a search must grant. Each requirement is met if the loadout holds at
+ * least the required number of pieces of any one of the set bonuses that grant the skill. Set bonuses are numbered by
+ * ordinal, so that a search can keep its piece counts in an {@code int[]}.
+ */
+public class SetBonusRequirements {
+
+    // Indexed by requirement, then by alternative
+    private final int[][] setBonusOrdinals;
+    private final int[][] requiredPieces;
+
+    // Indexed by set bonus ordinal. The most pieces of the set bonus that any requirement needs.
+    private final int[] maxRequiredPieces;
+
+    private final Map<String, Integer> setBonusOrdinalsByArmorPieceId;
+
+    private SetBonusRequirements(Builder builder) {
+        int requirementCount = builder.requirements.size();
+        setBonusOrdinals = new int[requirementCount][];
+        requiredPieces = new int[requirementCount][];
+        maxRequiredPieces = new int[builder.setBonusOrdinalsById.size()];
+        for(int i = 0; i < requirementCount; i++) {
+            List<ThinSetBonusSkill> alternatives = builder.requirements.get(i);
+            setBonusOrdinals[i] = new int[alternatives.size()];
+            requiredPieces[i] = new int[alternatives.size()];
+            for(int j = 0; j < alternatives.size(); j++) {
+                int ordinal = builder.setBonusOrdinalsById.get(alternatives.get(j).getSetBonus().getId());
+                int pieces = alternatives.get(j).getRequiredPieces();
+                setBonusOrdinals[i][j] = ordinal;
+                requiredPieces[i][j] = pieces;
+                maxRequiredPieces[ordinal] = Math.max(maxRequiredPieces[ordinal], pieces);
+            }
+        }
+        setBonusOrdinalsByArmorPieceId = ImmutableMap.copyOf(builder.setBonusOrdinalsByArmorPieceId);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getSetBonusCount() {
+        return maxRequiredPieces.length;
+    }
+
+    /**
+     * @return The ordinal of the set bonus that {@code armorPiece} belongs to, or -1 if it belongs to none of the set
+     * bonuses that the requirements name
+     */
+    public int setBonusOrdinalOf(ThinArmorPiece armorPiece) {
+        Integer ordinal = setBonusOrdinalsByArmorPieceId.get(armorPiece.getId());
+        return (ordinal == null) ? -1 : ordinal;
+    }
+
+    /**
+     * @return The most pieces of the set bonus with the given ordinal that any requirement needs. Holding any more
+     * pieces of it than this meets no more requirements.
+     */
+    public int getMaxRequiredPieces(int setBonusOrdinal) {
+        return maxRequiredPieces[setBonusOrdinal];
+    }
+
+    /**
+     * @param pieceCounts Indexed by set bonus ordinal. The pieces of each set bonus that a loadout holds.
+     */
+    public boolean areMetBy(int[] pieceCounts) {
+        for(int i = 0; i < setBonusOrdinals.length; i++) {
+            if(!canBeMet(i, pieceCounts, null)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Each requirement is checked on its own, so this may return true for pieces that could only meet each
+     * requirement by filling the same armor type twice.
+     *
+     * @param pieceCounts Indexed by set bonus ordinal. The pieces of each set bonus that a loadout holds.
+     * @param availablePieces Indexed by set bonus ordinal. The most pieces of each set bonus that could still be added
+     * to the loadout.
+     */
+    public boolean canBeMetWith(int[] pieceCounts, int[] availablePieces) {
+        for(int i = 0; i < setBonusOrdinals.length; i++) {
+            if(!canBeMet(i, pieceCounts, availablePieces)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean canBeMet(int requirement, int[] pieceCounts, int[] availablePieces) {
+        int[] ordinals = setBonusOrdinals[requirement];
+        for(int j = 0; j < ordinals.length; j++) {
+            int pieces = pieceCounts[ordinals[j]] + ((availablePieces == null) ? 0 : availablePieces[ordinals[j]]);
+            if(pieces >= requiredPieces[requirement][j]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static final class Builder {
+        private final List<List<ThinSetBonusSkill>> requirements = new ArrayList<>();
+        private final Map<String, Integer> setBonusOrdinalsById = new HashMap<>();
+        private final Map<String, Integer> setBonusOrdinalsByArmorPieceId = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a requirement that is met by enough pieces of any one of the given set bonuses
+         */
+        public Builder withRequirement(Collection<ThinSetBonusSkill> alternatives) {
+            Objects.requireNonNull(alternatives, "alternatives must be non-null");
+
+            for(ThinSetBonusSkill alternative : alternatives) {
+                String setBonusId = alternative.getSetBonus().getId();
+                if(!setBonusOrdinalsById.containsKey(setBonusId)) {
+                    int ordinal = setBonusOrdinalsById.size();
+                    setBonusOrdinalsById.put(setBonusId, ordinal);
+                    for(ThinArmorPiece armorPiece : alternative.getSetBonus().getArmorPieces()) {
+                        setBonusOrdinalsByArmorPieceId.put(armorPiece.getId(), ordinal);
+                    }
+                }
+            }
+            requirements.add(new ArrayList<>(alternatives));
+            return this;
+        }
+
+        public SetBonusRequirements build() {
+            return new SetBonusRequirements(this);
+        }
+    }
+}
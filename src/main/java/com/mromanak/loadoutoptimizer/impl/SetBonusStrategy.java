@@ -0,0 +1,52 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+
+public enum SetBonusStrategy {
+
+    // Enumerates every combination of set bonus pieces that grants the requested set bonus skills, then searches once
+    // from each of them
+    STARTING_LOADOUTS("Starting Loadouts"),
+
+    // Searches once, counting the pieces of each set bonus as it goes and abandoning branches that can no longer grant
+    // the requested set bonus skills
+    SEARCH_STATE("Search State");
+
+    private static final Map<String, SetBonusStrategy> nameToValueMap;
+
+    static {
+        ImmutableMap.Builder<String, SetBonusStrategy> nameToValueBuilder = ImmutableMap.builder();
+        for(SetBonusStrategy strategy : values()) {
+            nameToValueBuilder.put(strategy.getName(), strategy);
+        }
+        nameToValueMap = nameToValueBuilder.build();
+    }
+
+    private final String name;
+
+    SetBonusStrategy(String name) {
+        this.name = name;
+    }
+
+    @JsonValue
+    public String getName() {
+        return name;
+    }
+
+    @JsonCreator
+    public static SetBonusStrategy forName(String name) {
+        SetBonusStrategy strategy = nameToValueMap.get(name);
+        if(strategy == null) {
+            throw new IllegalArgumentException(
+                    name + " is not a recognized set bonus strategy. Recognized set bonus strategies are: " +
+                    asList(values()));
+        }
+        return strategy;
+    }
+}
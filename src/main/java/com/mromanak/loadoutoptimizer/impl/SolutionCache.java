@@ -0,0 +1,104 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The memo of a {@link LoadoutOptimizer} search, bounded by a number of entries. Entries for armor types that come
+ * earlier in the search cover more of it, so when the cache is full it evicts entries from the latest armor type that
+ * has any. It can be shared between threads, in which case it may briefly hold a few more entries than its budget.
+ */
+class SolutionCache {
+
+    private static final ArmorType[] ARMOR_TYPES = ArmorType.values();
+
+    private final int maxEntries;
+
+    // Indexed by armor type ordinal
+    private final Map<OptimizerRequest, OptimizerResponse>[] layers;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    SolutionCache(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must be non-negative");
+        }
+        this.maxEntries = maxEntries;
+        this.layers = new Map[ARMOR_TYPES.length];
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * @return The cached response, or null if there is none
+     */
+    OptimizerResponse get(OptimizerRequest request) {
+        OptimizerResponse response = layers[request.getArmorType().ordinal()].get(request);
+        if (response == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return response;
+    }
+
+    void put(OptimizerRequest request, OptimizerResponse response) {
+        if (maxEntries == 0) {
+            return;
+        }
+
+        int layer = request.getArmorType().ordinal();
+        if (size.get() >= maxEntries && !evictFromLayersAtOrAfter(layer)) {
+            // Every entry is from an earlier armor type than this one, so it is the least valuable
+            return;
+        }
+        if (layers[layer].put(request, response) == null) {
+            size.incrementAndGet();
+        }
+    }
+
+    private boolean evictFromLayersAtOrAfter(int minimumLayer) {
+        for (int layer = layers.length - 1; layer >= minimumLayer; layer--) {
+            Iterator<OptimizerRequest> iterator = layers[layer].keySet().iterator();
+            while (iterator.hasNext()) {
+                // Another thread may evict the same entry first
+                if (layers[layer].remove(iterator.next()) != null) {
+                    size.decrementAndGet();
+                    evictionCount.increment();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    int sizeOf(ArmorType armorType) {
+        return layers[armorType.ordinal()].size();
+    }
+
+    long getHitCount() {
+        return hitCount.sum();
+    }
+
+    long getMissCount() {
+        return missCount.sum();
+    }
+
+    long getEvictionCount() {
+        return evictionCount.sum();
+    }
+}
@@ -0,0 +1,79 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.mromanak.loadoutoptimizer.model.LoadoutStats;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import lombok.Data;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The lowest of the {@code maxResults} best scores of any complete loadouts that a search has evaluated so far. A
+ * search scores the same loadout many times, so loadouts are told apart by the ids of their armor pieces. It can be
+ * shared between threads.
+ */
+class TopKIncumbent extends Incumbent {
+
+    private final int maxResults;
+    private final PriorityQueue<ScoredLoadout> bestLoadouts;
+    private final Set<String> bestLoadoutIds = new HashSet<>();
+    private volatile double lowestBestScore = Double.NEGATIVE_INFINITY;
+
+    TopKIncumbent(int maxResults) {
+        if (maxResults < 1) {
+            throw new IllegalArgumentException("maxResults must be at least 1");
+        }
+        this.maxResults = maxResults;
+        this.bestLoadouts = new PriorityQueue<>(maxResults + 1, Comparator.comparingDouble(ScoredLoadout::getScore));
+    }
+
+    @Override
+    double get() {
+        return lowestBestScore;
+    }
+
+    @Override
+    void offer(LoadoutStats loadout, double score) {
+        // A loadout that scores no better than the worst of a full set of best loadouts cannot raise the threshold, and
+        // the empty loadout is never one of the best loadouts
+        if (score <= lowestBestScore || loadout.getArmorPieceCount() == 0) {
+            return;
+        }
+
+        String loadoutId = idOf(loadout);
+        synchronized (this) {
+            if (!bestLoadoutIds.add(loadoutId)) {
+                return;
+            }
+
+            bestLoadouts.add(new ScoredLoadout(loadoutId, score));
+            if (bestLoadouts.size() > maxResults) {
+                bestLoadoutIds.remove(bestLoadouts.poll().getLoadoutId());
+            }
+            if (bestLoadouts.size() == maxResults) {
+                lowestBestScore = bestLoadouts.peek().getScore();
+            }
+        }
+    }
+
+    private static String idOf(LoadoutStats loadout) {
+        StringBuilder sb = new StringBuilder();
+        for (ArmorType armorType : ArmorType.values()) {
+            ThinArmorPiece armorPiece = loadout.getArmorPiece(armorType);
+            if (armorPiece != null) {
+                sb.append(armorPiece.getId());
+            }
+            sb.append('|');
+        }
+        return sb.toString();
+    }
+
+    @Data
+    private static class ScoredLoadout {
+        private final String loadoutId;
+        private final double score;
+    }
+}
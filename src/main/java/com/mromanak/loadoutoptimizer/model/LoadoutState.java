@@ -0,0 +1,249 @@
+package com.mromanak.loadoutoptimizer.model;
+
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.SkillIndex.ArmorPieceSkills;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import com.mromanak.loadoutoptimizer.utils.DefenseUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static com.mromanak.loadoutoptimizer.model.SkillIndex.*;
+
+/**
+ * A mutable, array-backed alternative to {@link Loadout} for code that adds and removes one armor piece at a time.
+ * Adding or removing a piece only touches the totals that the piece contributes to. Skill levels are kept by their
+ * ordinals in a {@link SkillIndex}; levels of skills that are not in the index are ignored and read as 0.
+ */
+public class LoadoutState implements LoadoutStats {
+
+    private static final int LEVEL_1_SLOTS = 0;
+    private static final int LEVEL_2_SLOTS = 1;
+    private static final int LEVEL_3_SLOTS = 2;
+    private static final int LEVEL_4_SLOTS = 3;
+    private static final int DEFENSE = 4;
+    private static final int FIRE_RESISTANCE = 5;
+    private static final int WATER_RESISTANCE = 6;
+    private static final int THUNDER_RESISTANCE = 7;
+    private static final int ICE_RESISTANCE = 8;
+    private static final int DRAGON_RESISTANCE = 9;
+    private static final int STAT_COUNT = 10;
+
+    private final SkillIndex skillIndex;
+    private final ThinArmorPiece[] armorPieces;
+    private final int[] skillLevels;
+    private final int[] stats;
+    private int armorPieceCount;
+
+    private LoadoutState(SkillIndex skillIndex) {
+        this.skillIndex = skillIndex;
+        this.armorPieces = new ThinArmorPiece[ArmorType.values().length];
+        this.skillLevels = new int[skillIndex.size()];
+        this.stats = new int[STAT_COUNT];
+    }
+
+    private LoadoutState(LoadoutState copy) {
+        this.skillIndex = copy.skillIndex;
+        this.armorPieces = copy.armorPieces.clone();
+        this.skillLevels = copy.skillLevels.clone();
+        this.stats = copy.stats.clone();
+        this.armorPieceCount = copy.armorPieceCount;
+    }
+
+    public static LoadoutState empty(SkillIndex skillIndex) {
+        Objects.requireNonNull(skillIndex, "skillIndex must be non-null");
+        return new LoadoutState(skillIndex);
+    }
+
+    /**
+     * @return A state that holds the armor pieces of {@code loadout}
+     */
+    public static LoadoutState of(Loadout loadout, SkillIndex skillIndex) {
+        Objects.requireNonNull(loadout, "loadout must be non-null");
+
+        LoadoutState state = empty(skillIndex);
+        for (ThinArmorPiece armorPiece : loadout.getArmorPieces().values()) {
+            state.add(armorPiece);
+        }
+        return state;
+    }
+
+    public LoadoutState copy() {
+        return new LoadoutState(this);
+    }
+
+    /**
+     * Puts {@code armorPiece} into the slot for its armor type, replacing any piece that is already there.
+     */
+    public void add(ThinArmorPiece armorPiece) {
+        Objects.requireNonNull(armorPiece, "armorPiece must be non-null");
+
+        int index = armorPiece.getArmorType().ordinal();
+        if (armorPieces[index] != null) {
+            apply(armorPieces[index], -1);
+        } else {
+            armorPieceCount++;
+        }
+        armorPieces[index] = armorPiece;
+        apply(armorPiece, 1);
+    }
+
+    /**
+     * Empties the slot for {@code armorType}, if it holds a piece.
+     */
+    public void remove(ArmorType armorType) {
+        Objects.requireNonNull(armorType, "armorType must be non-null");
+
+        int index = armorType.ordinal();
+        if (armorPieces[index] != null) {
+            apply(armorPieces[index], -1);
+            armorPieces[index] = null;
+            armorPieceCount--;
+        }
+    }
+
+    public Loadout toLoadout() {
+        List<ThinArmorPiece> armorPiecesList = new ArrayList<>(armorPieceCount);
+        for (ThinArmorPiece armorPiece : armorPieces) {
+            if (armorPiece != null) {
+                armorPiecesList.add(armorPiece);
+            }
+        }
+        return Loadout.builder().withArmorPieces(armorPiecesList).build();
+    }
+
+    private void apply(ThinArmorPiece armorPiece, int sign) {
+        ArmorPieceSkills skills = skillIndex.skillsOf(armorPiece);
+        int[] ordinals = skills.getOrdinals();
+        int[] levels = skills.getLevels();
+        for (int i = 0; i < ordinals.length; i++) {
+            skillLevels[ordinals[i]] += sign * levels[i];
+        }
+        stats[LEVEL_1_SLOTS] += sign * armorPiece.getLevel1Slots();
+        stats[LEVEL_2_SLOTS] += sign * armorPiece.getLevel2Slots();
+        stats[LEVEL_3_SLOTS] += sign * armorPiece.getLevel3Slots();
+        stats[LEVEL_4_SLOTS] += sign * armorPiece.getLevel4Slots();
+        stats[DEFENSE] += sign * armorPiece.getDefense();
+        stats[FIRE_RESISTANCE] += sign * armorPiece.getFireResistance();
+        stats[WATER_RESISTANCE] += sign * armorPiece.getWaterResistance();
+        stats[THUNDER_RESISTANCE] += sign * armorPiece.getThunderResistance();
+        stats[ICE_RESISTANCE] += sign * armorPiece.getIceResistance();
+        stats[DRAGON_RESISTANCE] += sign * armorPiece.getDragonResistance();
+    }
+
+    @Override
+    public ThinArmorPiece getArmorPiece(ArmorType armorType) {
+        return armorPieces[armorType.ordinal()];
+    }
+
+    @Override
+    public int getArmorPieceCount() {
+        return armorPieceCount;
+    }
+
+    public SkillIndex getSkillIndex() {
+        return skillIndex;
+    }
+
+    @Override
+    public int getSkillLevel(String skillName) {
+        int ordinal = skillIndex.ordinalOf(skillName);
+        return (ordinal < 0) ? 0 : skillLevels[ordinal];
+    }
+
+    /**
+     * @param ordinal The ordinal of a skill in this state's {@link SkillIndex}
+     */
+    public int getSkillLevel(int ordinal) {
+        return skillLevels[ordinal];
+    }
+
+    @Override
+    public int getLevel1Slots() {
+        return stats[LEVEL_1_SLOTS];
+    }
+
+    @Override
+    public int getLevel2Slots() {
+        return stats[LEVEL_2_SLOTS];
+    }
+
+    @Override
+    public int getLevel3Slots() {
+        return stats[LEVEL_3_SLOTS];
+    }
+
+    @Override
+    public int getLevel4Slots() {
+        return stats[LEVEL_4_SLOTS];
+    }
+
+    @Override
+    public int getDefense() {
+        return stats[DEFENSE];
+    }
+
+    @Override
+    public int getFireResistance() {
+        return stats[FIRE_RESISTANCE];
+    }
+
+    @Override
+    public int getWaterResistance() {
+        return stats[WATER_RESISTANCE];
+    }
+
+    @Override
+    public int getThunderResistance() {
+        return stats[THUNDER_RESISTANCE];
+    }
+
+    @Override
+    public int getIceResistance() {
+        return stats[ICE_RESISTANCE];
+    }
+
+    @Override
+    public int getDragonResistance() {
+        return stats[DRAGON_RESISTANCE];
+    }
+
+    @Override
+    public int getEffectiveDefense() {
+        int defenseTotal = DefenseUtils.effectiveDefense(stats[DEFENSE], skillLevels[DEFENSE_BOOST_ORDINAL]);
+        for (int ordinal = FIRE_RESISTANCE_ORDINAL; ordinal <= DRAGON_RESISTANCE_ORDINAL; ordinal++) {
+            defenseTotal += DefenseUtils.resistanceSkillDefenseBonusAdd(skillLevels[ordinal]);
+        }
+        return defenseTotal;
+    }
+
+    @Override
+    public int getEffectiveFireResistance() {
+        return stats[FIRE_RESISTANCE] + resistanceBonusAdd(FIRE_RESISTANCE_ORDINAL);
+    }
+
+    @Override
+    public int getEffectiveWaterResistance() {
+        return stats[WATER_RESISTANCE] + resistanceBonusAdd(WATER_RESISTANCE_ORDINAL);
+    }
+
+    @Override
+    public int getEffectiveThunderResistance() {
+        return stats[THUNDER_RESISTANCE] + resistanceBonusAdd(THUNDER_RESISTANCE_ORDINAL);
+    }
+
+    @Override
+    public int getEffectiveIceResistance() {
+        return stats[ICE_RESISTANCE] + resistanceBonusAdd(ICE_RESISTANCE_ORDINAL);
+    }
+
+    @Override
+    public int getEffectiveDragonResistance() {
+        return stats[DRAGON_RESISTANCE] + resistanceBonusAdd(DRAGON_RESISTANCE_ORDINAL);
+    }
+
+    private int resistanceBonusAdd(int resistanceSkillOrdinal) {
+        return DefenseUtils.resistanceBonusAdd(skillLevels[DEFENSE_BOOST_ORDINAL], skillLevels[resistanceSkillOrdinal]);
+    }
+}
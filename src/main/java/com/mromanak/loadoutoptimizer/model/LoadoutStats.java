@@ -0,0 +1,73 @@
+package com.mromanak.loadoutoptimizer.model;
+
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import com.mromanak.loadoutoptimizer.utils.DefenseUtils;
+
+import static com.mromanak.loadoutoptimizer.utils.DefenseUtils.*;
+
+/**
+ * The totals of a set of armor pieces that scoring functions need, whether they come from an immutable {@link Loadout}
+ * or from the {@link LoadoutState} that the optimizer changes one piece at a time.
+ */
+public interface LoadoutStats {
+
+    /**
+     * @return The armor piece of the given type, or null if there is none
+     */
+    ThinArmorPiece getArmorPiece(ArmorType armorType);
+
+    int getArmorPieceCount();
+
+    int getSkillLevel(String skillName);
+
+    int getLevel1Slots();
+
+    int getLevel2Slots();
+
+    int getLevel3Slots();
+
+    int getLevel4Slots();
+
+    int getDefense();
+
+    int getFireResistance();
+
+    int getWaterResistance();
+
+    int getThunderResistance();
+
+    int getIceResistance();
+
+    int getDragonResistance();
+
+    default int getEffectiveDefense() {
+        int defenseTotal = DefenseUtils.effectiveDefense(getDefense(), getSkillLevel(DEFENSE_BOOST));
+        for (String resistanceSkill : ELEMENTAL_RESISTANCE_SKILLS) {
+            defenseTotal += DefenseUtils.resistanceSkillDefenseBonusAdd(getSkillLevel(resistanceSkill));
+        }
+        return defenseTotal;
+    }
+
+    default int getEffectiveFireResistance() {
+        return getFireResistance() + resistanceBonusAdd(getSkillLevel(DEFENSE_BOOST), getSkillLevel(FIRE_RESISTANCE));
+    }
+
+    default int getEffectiveWaterResistance() {
+        return getWaterResistance() + resistanceBonusAdd(getSkillLevel(DEFENSE_BOOST), getSkillLevel(WATER_RESISTANCE));
+    }
+
+    default int getEffectiveThunderResistance() {
+        return getThunderResistance() +
+            resistanceBonusAdd(getSkillLevel(DEFENSE_BOOST), getSkillLevel(THUNDER_RESISTANCE));
+    }
+
+    default int getEffectiveIceResistance() {
+        return getIceResistance() + resistanceBonusAdd(getSkillLevel(DEFENSE_BOOST), getSkillLevel(ICE_RESISTANCE));
+    }
+
+    default int getEffectiveDragonResistance() {
+        return getDragonResistance() +
+            resistanceBonusAdd(getSkillLevel(DEFENSE_BOOST), getSkillLevel(DRAGON_RESISTANCE));
+    }
+}
@@ -0,0 +1,22 @@
+package com.mromanak.loadoutoptimizer.model;
+
+import com.mromanak.loadoutoptimizer.impl.SearchStatistics;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class OptimizationResult {
+
+    private final List<Loadout> loadouts;
+
+    // False if the search ran out of time, in which case the loadouts are the best that it found
+    private final boolean complete;
+
+    // The fraction of the search space, from 0 to 1, that the search explored or ruled out
+    private final double progress;
+
+    // What the search was given and the work that it did. A cached result keeps the statistics of the search that
+    // found it.
+    private final SearchStatistics statistics;
+}
@@ -0,0 +1,124 @@
+package com.mromanak.loadoutoptimizer.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPieceSkill;
+import lombok.Data;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.mromanak.loadoutoptimizer.utils.DefenseUtils.*;
+
+/**
+ * Dense ordinals for the skills on a set of armor pieces, so that skill levels can be kept in an {@code int[]} rather
+ * than a map keyed by skill name. The skills that feed the effective defense and resistances always have the ordinals
+ * below, whether or not any of the armor pieces have them.
+ */
+public class SkillIndex {
+
+    public static final int DEFENSE_BOOST_ORDINAL = 0;
+    public static final int FIRE_RESISTANCE_ORDINAL = 1;
+    public static final int WATER_RESISTANCE_ORDINAL = 2;
+    public static final int THUNDER_RESISTANCE_ORDINAL = 3;
+    public static final int ICE_RESISTANCE_ORDINAL = 4;
+    public static final int DRAGON_RESISTANCE_ORDINAL = 5;
+
+    private static final List<String> FIXED_SKILLS = ImmutableList.of(
+            DEFENSE_BOOST,
+            FIRE_RESISTANCE,
+            WATER_RESISTANCE,
+            THUNDER_RESISTANCE,
+            ICE_RESISTANCE,
+            DRAGON_RESISTANCE
+    );
+
+    private final Map<String, Integer> ordinals;
+    private final List<String> skillNames;
+    private final Map<ThinArmorPiece, ArmorPieceSkills> armorPieceSkills;
+
+    private SkillIndex(Collection<ThinArmorPiece> armorPieces) {
+        Map<String, Integer> ordinalsTmp = new LinkedHashMap<>();
+        for (String skillName : FIXED_SKILLS) {
+            ordinalsTmp.put(skillName, ordinalsTmp.size());
+        }
+        for (ThinArmorPiece armorPiece : armorPieces) {
+            for (ThinArmorPieceSkill skill : armorPiece.getSkills()) {
+                ordinalsTmp.putIfAbsent(skill.getSkill().getName(), ordinalsTmp.size());
+            }
+        }
+        ordinals = ImmutableMap.copyOf(ordinalsTmp);
+        skillNames = ImmutableList.copyOf(ordinalsTmp.keySet());
+
+        // Armor pieces compare by value, which is much slower than by identity, and the same instances are looked up
+        // over and over again during a search
+        armorPieceSkills = new IdentityHashMap<>();
+        for (ThinArmorPiece armorPiece : armorPieces) {
+            armorPieceSkills.computeIfAbsent(armorPiece, this::computeSkillsOf);
+        }
+    }
+
+    /**
+     * @return An index of every skill on the given armor pieces
+     */
+    public static SkillIndex of(Collection<ThinArmorPiece> armorPieces) {
+        Objects.requireNonNull(armorPieces, "armorPieces must be non-null");
+        return new SkillIndex(armorPieces);
+    }
+
+    public int size() {
+        return skillNames.size();
+    }
+
+    /**
+     * @return The ordinal of the given skill, or -1 if it is not in the index
+     */
+    public int ordinalOf(String skillName) {
+        Integer ordinal = ordinals.get(skillName);
+        return (ordinal == null) ? -1 : ordinal;
+    }
+
+    public String skillNameOf(int ordinal) {
+        return skillNames.get(ordinal);
+    }
+
+    /**
+     * @return The ordinals and levels of the indexed skills on {@code armorPiece}. Skills that are not in the index are
+     * left out.
+     */
+    public ArmorPieceSkills skillsOf(ThinArmorPiece armorPiece) {
+        ArmorPieceSkills skills = armorPieceSkills.get(armorPiece);
+        return (skills == null) ? computeSkillsOf(armorPiece) : skills;
+    }
+
+    private ArmorPieceSkills computeSkillsOf(ThinArmorPiece armorPiece) {
+        int[] skillOrdinals = new int[armorPiece.getSkills().size()];
+        int[] skillLevels = new int[armorPiece.getSkills().size()];
+        int count = 0;
+        for (ThinArmorPieceSkill skill : armorPiece.getSkills()) {
+            int ordinal = ordinalOf(skill.getSkill().getName());
+            if (ordinal >= 0) {
+                skillOrdinals[count] = ordinal;
+                skillLevels[count] = skill.getSkillLevel();
+                count++;
+            }
+        }
+        if (count < skillOrdinals.length) {
+            skillOrdinals = Arrays.copyOf(skillOrdinals, count);
+            skillLevels = Arrays.copyOf(skillLevels, count);
+        }
+        return new ArmorPieceSkills(skillOrdinals, skillLevels);
+    }
+
+    @Data
+    public static class ArmorPieceSkills {
+        private final int[] ordinals;
+        private final int[] levels;
+    }
+}
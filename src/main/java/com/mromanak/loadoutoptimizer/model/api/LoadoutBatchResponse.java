@@ -0,0 +1,27 @@
+package com.mromanak.loadoutoptimizer.model.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@ApiModel(description = "The loadouts found for one request in a batch")
+public class LoadoutBatchResponse {
+
+    @ApiModelProperty(notes = "The loadouts that best match the request")
+    private List<LoadoutResponse> loadouts;
+
+    @ApiModelProperty(notes = "Whether the request's search finished, so that its loadouts are optimal")
+    private boolean complete;
+
+    @ApiModelProperty(notes = "The fraction of the search space, from 0 to 1, that the request's search covered")
+    private double progress;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @ApiModelProperty(notes = "What the request's search was given and the work that it did, if the request set " +
+        "explain")
+    private SearchStatisticsResponse searchStatistics;
+}
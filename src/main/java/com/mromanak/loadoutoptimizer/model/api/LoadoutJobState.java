@@ -0,0 +1,53 @@
+package com.mromanak.loadoutoptimizer.model.api;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+
+public enum LoadoutJobState {
+
+    QUEUED("Queued"),
+    RUNNING("Running"),
+    SUCCEEDED("Succeeded"),
+    FAILED("Failed"),
+    CANCELLED("Cancelled");
+
+    private static final Map<String, LoadoutJobState> nameToValueMap;
+
+    static {
+        ImmutableMap.Builder<String, LoadoutJobState> nameToValueBuilder = ImmutableMap.builder();
+        for(LoadoutJobState state : values()) {
+            nameToValueBuilder.put(state.getName(), state);
+        }
+        nameToValueMap = nameToValueBuilder.build();
+    }
+
+    private final String name;
+
+    LoadoutJobState(String name) {
+        this.name = name;
+    }
+
+    @JsonValue
+    public String getName() {
+        return name;
+    }
+
+    @JsonCreator
+    public static LoadoutJobState forName(String name) {
+        LoadoutJobState state = nameToValueMap.get(name);
+        if(state == null) {
+            throw new IllegalArgumentException(
+                    name + " is not a recognized loadout job state. Recognized loadout job states are: " + asList(values()));
+        }
+        return state;
+    }
+
+    public boolean isFinished() {
+        return this != QUEUED && this != RUNNING;
+    }
+}
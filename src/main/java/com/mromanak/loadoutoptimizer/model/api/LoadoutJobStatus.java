@@ -0,0 +1,32 @@
+package com.mromanak.loadoutoptimizer.model.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+@Data
+@ApiModel(description = "The status of an asynchronous loadout optimization job")
+public class LoadoutJobStatus {
+
+    @ApiModelProperty(notes = "The ID of the job, used to poll it, fetch its result or cancel it")
+    private String id;
+
+    @ApiModelProperty(notes = "Whether the job is queued, running or finished, and how it finished")
+    private LoadoutJobState state;
+
+    @ApiModelProperty(notes = "The fraction of the search space, from 0 to 1, that the job's search has covered")
+    private double progress;
+
+    @ApiModelProperty(notes = "Whether the job's search finished, so that its loadouts are optimal. False if it ran " +
+        "out of time or was cancelled first.")
+    private boolean complete;
+
+    @ApiModelProperty(notes = "Why the job failed, if it did")
+    private String error;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @ApiModelProperty(notes = "What the job's search was given and the work that it did, once the job has finished, " +
+        "if its request set explain")
+    private SearchStatisticsResponse searchStatistics;
+}
@@ -3,6 +3,8 @@ package com.mromanak.loadoutoptimizer.model.api;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.google.common.collect.ImmutableList;
+import com.mromanak.loadoutoptimizer.impl.OptimizerEngine;
+import com.mromanak.loadoutoptimizer.impl.SetBonusStrategy;
 import com.mromanak.loadoutoptimizer.model.jpa.Rank;
 import com.mromanak.loadoutoptimizer.scoring.*;
 import com.mromanak.loadoutoptimizer.selection.*;
@@ -21,6 +23,10 @@ public class LoadoutRequest {
     private final Rank rank;
     private final List<String> setBonuses;
 
+    // How the search makes every loadout grant the set bonus skills. Every strategy finds loadouts with the same best
+    // score.
+    private final SetBonusStrategy setBonusStrategy;
+
     private final ArmorTypeSelector armorTypeSelector;
     private final ArmorSetSelector armorSetSelector;
     private final ArmorNameSelector armorNameSelector;
@@ -37,11 +43,32 @@ public class LoadoutRequest {
     @JsonProperty("sizeScoring")
     private final SizeScoringFunction sizeScoringFunction;
 
+    // The most threads of the optimizer's shared search pool that the search may use at once. Values less than 2 mean
+    // that the search runs on a single thread.
+    private final int maxParallelism;
+
+    // The number of best loadouts to return, from best to worst. Values less than 1 mean every loadout that ties for the
+    // best score.
+    private final int maxResults;
+
+    // The search algorithm to use. Every engine finds loadouts with the same best score.
+    private final OptimizerEngine engine;
+
+    // How long the search may run, in milliseconds, before it returns the best loadouts that it has found so far.
+    // Values less than 1 mean the longest that the server allows.
+    private final long timeoutMillis;
+
+    // Whether to report how the search went: how many candidates and starting loadouts it had, how much of the search
+    // space it explored, pruned or memoized, and how long each phase took. Explained requests are always searched,
+    // rather than served from the result cache or another request's search.
+    private final boolean explain;
+
     private LoadoutRequest(Builder builder) {
         Objects.requireNonNull(builder.skillScoringFunction, "skillScoringFunction must be non-null");
 
         rank = builder.rank;
         setBonuses = ImmutableList.copyOf(builder.setBonuses);
+        setBonusStrategy = builder.setBonusStrategy;
         armorTypeSelector = builder.armorTypeSelector;
         armorSetSelector = builder.armorSetSelector;
         armorNameSelector = builder.armorNameSelector;
@@ -49,6 +76,11 @@ public class LoadoutRequest {
         defenseScoringFunction = builder.defenseScoringFunction;
         decorationSlotScoringFunction = builder.decorationSlotScoringFunction;
         sizeScoringFunction = builder.sizeScoringFunction;
+        maxParallelism = builder.maxParallelism;
+        maxResults = builder.maxResults;
+        engine = builder.engine;
+        timeoutMillis = builder.timeoutMillis;
+        explain = builder.explain;
     }
 
     public ArmorSelector getCompositeSelector() {
@@ -85,6 +117,7 @@ public class LoadoutRequest {
     public static final class Builder {
         private Rank rank = Rank.LOW_RANK;
         private List<String> setBonuses = new ArrayList<>();
+        private SetBonusStrategy setBonusStrategy = SetBonusStrategy.STARTING_LOADOUTS;
         private ArmorTypeSelector armorTypeSelector;
         private ArmorSetSelector armorSetSelector;
         private ArmorNameSelector armorNameSelector;
@@ -92,6 +125,11 @@ public class LoadoutRequest {
         private DefenseScoringFunction defenseScoringFunction;
         private DecorationSlotScoringFunction decorationSlotScoringFunction;
         private SizeScoringFunction sizeScoringFunction;
+        private int maxParallelism = 0;
+        private int maxResults = 0;
+        private OptimizerEngine engine = OptimizerEngine.RECURSIVE;
+        private long timeoutMillis = 0;
+        private boolean explain = false;
 
         private Builder() {
         }
@@ -106,6 +144,11 @@ public class LoadoutRequest {
             return this;
         }
 
+        public Builder withSetBonusStrategy(SetBonusStrategy val) {
+            setBonusStrategy = (val == null) ? SetBonusStrategy.STARTING_LOADOUTS : val;
+            return this;
+        }
+
         public Builder withArmorTypeSelector(ArmorTypeSelector val) {
             armorTypeSelector = val;
             return this;
@@ -145,6 +188,31 @@ public class LoadoutRequest {
             return this;
         }
 
+        public Builder withMaxParallelism(int val) {
+            maxParallelism = val;
+            return this;
+        }
+
+        public Builder withMaxResults(int val) {
+            maxResults = val;
+            return this;
+        }
+
+        public Builder withEngine(OptimizerEngine val) {
+            engine = (val == null) ? OptimizerEngine.RECURSIVE : val;
+            return this;
+        }
+
+        public Builder withTimeoutMillis(long val) {
+            timeoutMillis = val;
+            return this;
+        }
+
+        public Builder withExplain(boolean val) {
+            explain = val;
+            return this;
+        }
+
         public LoadoutRequest build() {
             return new LoadoutRequest(this);
         }
@@ -52,4 +52,8 @@ public class LoadoutResponse {
 
     @ApiModelProperty(notes = "The score of the loadout as determined by the scoring function described in the request")
     private double score;
+
+    @ApiModelProperty(notes = "Whether the search finished, so that no loadout scores better than this one. False if " +
+        "the search ran out of time first.")
+    private boolean optimal;
 }
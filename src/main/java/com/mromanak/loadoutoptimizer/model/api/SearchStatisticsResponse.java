@@ -0,0 +1,85 @@
+package com.mromanak.loadoutoptimizer.model.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mromanak.loadoutoptimizer.impl.SearchStatistics;
+import com.mromanak.loadoutoptimizer.impl.SearchStatistics.Phase;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@ApiModel(description = "What a search was given and the work that it did, returned for requests that set explain")
+public class SearchStatisticsResponse {
+
+    @ApiModelProperty(notes = "The candidate armor pieces of each type that the request's selectors allowed")
+    private Map<ArmorType, Long> candidates;
+
+    @ApiModelProperty(notes = "The candidate armor pieces of each type that were searched, once pieces that could " +
+        "never beat another candidate were removed")
+    private Map<ArmorType, Long> searchedCandidates;
+
+    @ApiModelProperty(notes = "The number of starting loadouts that grant the requested set bonuses. Absent if the " +
+        "request asked for no set bonuses.")
+    private Integer startingLoadouts;
+
+    @ApiModelProperty(notes = "How many nodes the search branched on")
+    private long nodesExpanded;
+
+    @ApiModelProperty(notes = "How many nodes the search skipped because they could not beat the best loadouts found")
+    private long nodesPruned;
+
+    @ApiModelProperty(notes = "The number of distinct states memoized for each armor type. A coarser scoring " +
+        "performance mode or bucket size means fewer states and more hits.")
+    private Map<ArmorType, Long> memoEntries;
+
+    private long memoHits;
+    private long memoMisses;
+    private long memoEvictions;
+
+    @ApiModelProperty(notes = "The fraction of memo lookups that hit. Absent if the search memoized nothing.")
+    private Double memoHitRatio;
+
+    @ApiModelProperty(notes = "Time spent reading the candidate armor pieces, in milliseconds")
+    private double fetchMillis;
+
+    @ApiModelProperty(notes = "Time spent generating the starting loadouts, in milliseconds")
+    private double startingLoadoutsMillis;
+
+    @ApiModelProperty(notes = "Time spent searching, in milliseconds")
+    private double searchMillis;
+
+    public static SearchStatisticsResponse of(SearchStatistics statistics) {
+        Objects.requireNonNull(statistics, "statistics must be non-null");
+
+        SearchStatisticsResponse response = new SearchStatisticsResponse();
+        response.setCandidates(statistics.getCandidatesByArmorType());
+        response.setSearchedCandidates(statistics.getSearchedCandidatesByArmorType());
+        if(statistics.getStartingLoadoutCount() >= 0) {
+            response.setStartingLoadouts(statistics.getStartingLoadoutCount());
+        }
+        response.setNodesExpanded(statistics.getNodesExpanded());
+        response.setNodesPruned(statistics.getNodesPruned());
+        response.setMemoEntries(statistics.getMemoEntriesByArmorType());
+        response.setMemoHits(statistics.getMemoHits());
+        response.setMemoMisses(statistics.getMemoMisses());
+        response.setMemoEvictions(statistics.getMemoEvictions());
+        long memoLookups = statistics.getMemoHits() + statistics.getMemoMisses();
+        if(memoLookups > 0) {
+            response.setMemoHitRatio((double) statistics.getMemoHits() / memoLookups);
+        }
+        response.setFetchMillis(millisOf(statistics.getPhaseNanos(Phase.FETCH)));
+        response.setStartingLoadoutsMillis(millisOf(statistics.getPhaseNanos(Phase.STARTING_LOADOUTS)));
+        response.setSearchMillis(millisOf(statistics.getPhaseNanos(Phase.SEARCH)));
+        return response;
+    }
+
+    private static double millisOf(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
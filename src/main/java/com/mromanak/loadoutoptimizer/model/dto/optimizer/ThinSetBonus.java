@@ -1,9 +1,15 @@
 package com.mromanak.loadoutoptimizer.model.dto.optimizer;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
 import com.mromanak.loadoutoptimizer.model.jpa.SetBonus;
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.stream.Collectors.toList;
 
@@ -14,11 +20,41 @@ public class ThinSetBonus {
     private final String name;
     private final List<ThinArmorPiece> armorPieces;
 
+    // The same armor pieces, grouped once so that requests never have to
+    private final Map<ArmorType, List<ThinArmorPiece>> armorPiecesByArmorType;
+
     public ThinSetBonus(SetBonus setBonus) {
         this.id = setBonus.getId();
         this.name = setBonus.getName();
         this.armorPieces = setBonus.getArmorPieces().stream().
             map(ThinArmorPiece::new).
             collect(toList());
+        this.armorPiecesByArmorType = groupByArmorType(armorPieces);
+    }
+
+    /**
+     * @param armorPieces The armor pieces to use in place of the set bonus's own, so that callers can share instances
+     * or leave some out
+     */
+    public ThinSetBonus(SetBonus setBonus, List<ThinArmorPiece> armorPieces) {
+        this.id = setBonus.getId();
+        this.name = setBonus.getName();
+        this.armorPieces = ImmutableList.copyOf(armorPieces);
+        this.armorPiecesByArmorType = groupByArmorType(this.armorPieces);
+    }
+
+    /**
+     * @return The set bonus's armor pieces of the given type, which may be none
+     */
+    public List<ThinArmorPiece> getArmorPieces(ArmorType armorType) {
+        return armorPiecesByArmorType.getOrDefault(armorType, ImmutableList.of());
+    }
+
+    private static Map<ArmorType, List<ThinArmorPiece>> groupByArmorType(List<ThinArmorPiece> armorPieces) {
+        Map<ArmorType, List<ThinArmorPiece>> grouped = new EnumMap<>(ArmorType.class);
+        for(ThinArmorPiece armorPiece : armorPieces) {
+            grouped.computeIfAbsent(armorPiece.getArmorType(), armorType -> new ArrayList<>()).add(armorPiece);
+        }
+        return Maps.immutableEnumMap(Maps.transformValues(grouped, ImmutableList::copyOf));
     }
 }
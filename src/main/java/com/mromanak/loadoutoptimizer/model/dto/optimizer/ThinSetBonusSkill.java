@@ -15,4 +15,10 @@ public class ThinSetBonusSkill {
         this.skill = new ThinSkill(setBonusSkill.getSkill());
         this.requiredPieces = setBonusSkill.getRequiredPieces();
     }
+
+    public ThinSetBonusSkill(SetBonusSkill setBonusSkill, ThinSetBonus setBonus) {
+        this.setBonus = setBonus;
+        this.skill = new ThinSkill(setBonusSkill.getSkill());
+        this.requiredPieces = setBonusSkill.getRequiredPieces();
+    }
 }
@@ -0,0 +1,23 @@
+package com.mromanak.loadoutoptimizer.model.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class LoadoutJobNotFinishedException extends LoadoutOptimizerException {
+    public LoadoutJobNotFinishedException() {
+        super();
+    }
+
+    public LoadoutJobNotFinishedException(String message) {
+        super(message);
+    }
+
+    public LoadoutJobNotFinishedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public LoadoutJobNotFinishedException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,23 @@
+package com.mromanak.loadoutoptimizer.model.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class OptimizerBusyException extends LoadoutOptimizerException {
+    public OptimizerBusyException() {
+        super();
+    }
+
+    public OptimizerBusyException(String message) {
+        super(message);
+    }
+
+    public OptimizerBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public OptimizerBusyException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -24,4 +24,7 @@ public interface ArmorPieceRepository extends PagingAndSortingRepository<ArmorPi
         "SELECT ap FROM ArmorPiece ap JOIN FETCH ap.skills aps JOIN FETCH aps.skill sk JOIN ap.skills aps_prime JOIN " +
             "aps_prime.skill sk_prime WHERE sk_prime.name IN (:skillNames)")
     Set<ArmorPiece> eagerFindBySkillNameIn(@Param("skillNames") Set<String> skillNames);
+
+    @Query("SELECT DISTINCT ap FROM ArmorPiece ap LEFT JOIN FETCH ap.skills aps LEFT JOIN FETCH aps.skill sk LEFT JOIN FETCH ap.setBonus sb")
+    Set<ArmorPiece> eagerFindAll();
 }
@@ -1,7 +1,9 @@
 package com.mromanak.loadoutoptimizer.scoring;
 
 import com.google.common.collect.ImmutableList;
-import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutStats;
+import com.mromanak.loadoutoptimizer.model.SkillIndex;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -30,7 +32,7 @@ public class CompositeScoringFunction implements LoadoutScoringFunction {
     }
 
     @Override
-    public String keyFor(Loadout loadout) {
+    public String keyFor(LoadoutStats loadout) {
         Objects.requireNonNull(loadout, "loadout must be non-null");
         return scoringFunctions.stream().
                 map(fn -> fn.keyFor(loadout)).
@@ -38,13 +40,61 @@ public class CompositeScoringFunction implements LoadoutScoringFunction {
     }
 
     @Override
-    public double scoreFor(Loadout loadout) {
+    public int keySize() {
+        int keySize = 0;
+        for (LoadoutScoringFunction scoringFunction : scoringFunctions) {
+            keySize += scoringFunction.keySize();
+        }
+        return keySize;
+    }
+
+    @Override
+    public void writeKey(LoadoutStats loadout, int[] key, int offset) {
+        Objects.requireNonNull(loadout, "loadout must be non-null");
+        for (LoadoutScoringFunction scoringFunction : scoringFunctions) {
+            scoringFunction.writeKey(loadout, key, offset);
+            offset += scoringFunction.keySize();
+        }
+    }
+
+    @Override
+    public double scoreFor(LoadoutStats loadout) {
         Objects.requireNonNull(loadout, "loadout must be non-null");
         return scoringFunctions.stream().
                 mapToDouble(fn -> fn.scoreFor(loadout)).
                 sum();
     }
 
+    @Override
+    public double upperBound(LoadoutStats loadout, RemainingArmorBounds remaining) {
+        Objects.requireNonNull(loadout, "loadout must be non-null");
+        double bound = 0;
+        for (LoadoutScoringFunction scoringFunction : scoringFunctions) {
+            bound += scoringFunction.upperBound(loadout, remaining);
+        }
+        return bound;
+    }
+
+    @Override
+    public boolean isAtLeastAsGoodAs(ThinArmorPiece armorPiece, ThinArmorPiece other) {
+        Objects.requireNonNull(armorPiece, "armorPiece must be non-null");
+        Objects.requireNonNull(other, "other must be non-null");
+        for (LoadoutScoringFunction scoringFunction : scoringFunctions) {
+            if (!scoringFunction.isAtLeastAsGoodAs(armorPiece, other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public LoadoutScoringFunction bind(SkillIndex skillIndex) {
+        Objects.requireNonNull(skillIndex, "skillIndex must be non-null");
+        return new CompositeScoringFunction(ImmutableList.copyOf(scoringFunctions.stream().
+                map(fn -> fn.bind(skillIndex)).
+                collect(Collectors.toList())));
+    }
+
     public static final class Builder {
         private final List<LoadoutScoringFunction> scoringFunctions = new ArrayList<>();
 
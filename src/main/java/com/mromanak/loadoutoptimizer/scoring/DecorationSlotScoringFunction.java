@@ -3,7 +3,8 @@ package com.mromanak.loadoutoptimizer.scoring;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
 import com.google.common.base.Joiner;
-import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutStats;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -12,6 +13,8 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 
+import static com.mromanak.loadoutoptimizer.scoring.DominanceUtils.isAtLeastAsGood;
+
 @Data
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @JsonDeserialize(builder = DecorationSlotScoringFunction.Builder.class)
@@ -38,7 +41,7 @@ public class DecorationSlotScoringFunction implements LoadoutScoringFunction {
     }
 
     @Override
-    public String keyFor(Loadout loadout) {
+    public String keyFor(LoadoutStats loadout) {
         Objects.requireNonNull(loadout, "loadout must be non-null");
 
         Map<String, Integer> keyElements = new LinkedHashMap<>();
@@ -66,7 +69,50 @@ public class DecorationSlotScoringFunction implements LoadoutScoringFunction {
     }
 
     @Override
-    public double scoreFor(Loadout loadout) {
+    public int keySize() {
+        if (performanceMode == ScoringPerformanceMode.SPEED) {
+            return 0;
+        }
+
+        int keySize = 0;
+        if (level1SlotWeight != 0.0) {
+            keySize++;
+        }
+        if (level2SlotWeight != 0.0) {
+            keySize++;
+        }
+        if (level3SlotWeight != 0.0) {
+            keySize++;
+        }
+        if (level4SlotWeight != 0.0) {
+            keySize++;
+        }
+        return keySize;
+    }
+
+    @Override
+    public void writeKey(LoadoutStats loadout, int[] key, int offset) {
+        Objects.requireNonNull(loadout, "loadout must be non-null");
+
+        if (performanceMode == ScoringPerformanceMode.SPEED) {
+            return;
+        }
+        if (level1SlotWeight != 0.0) {
+            key[offset++] = loadout.getLevel1Slots();
+        }
+        if (level2SlotWeight != 0.0) {
+            key[offset++] = loadout.getLevel2Slots();
+        }
+        if (level3SlotWeight != 0.0) {
+            key[offset++] = loadout.getLevel3Slots();
+        }
+        if (level4SlotWeight != 0.0) {
+            key[offset] = loadout.getLevel4Slots();
+        }
+    }
+
+    @Override
+    public double scoreFor(LoadoutStats loadout) {
         Objects.requireNonNull(loadout, "loadout must be non-null");
 
         double score = 0;
@@ -90,6 +136,31 @@ public class DecorationSlotScoringFunction implements LoadoutScoringFunction {
         return score;
     }
 
+    @Override
+    public double upperBound(LoadoutStats loadout, RemainingArmorBounds remaining) {
+        Objects.requireNonNull(loadout, "loadout must be non-null");
+
+        return boundFor(loadout.getLevel1Slots(), remaining.getMaxLevel1Slots(), level1SlotWeight) +
+                boundFor(loadout.getLevel2Slots(), remaining.getMaxLevel2Slots(), level2SlotWeight) +
+                boundFor(loadout.getLevel3Slots(), remaining.getMaxLevel3Slots(), level3SlotWeight) +
+                boundFor(loadout.getLevel4Slots(), remaining.getMaxLevel4Slots(), level4SlotWeight);
+    }
+
+    @Override
+    public boolean isAtLeastAsGoodAs(ThinArmorPiece armorPiece, ThinArmorPiece other) {
+        Objects.requireNonNull(armorPiece, "armorPiece must be non-null");
+        Objects.requireNonNull(other, "other must be non-null");
+
+        return isAtLeastAsGood(armorPiece.getLevel1Slots(), other.getLevel1Slots(), level1SlotWeight) &&
+                isAtLeastAsGood(armorPiece.getLevel2Slots(), other.getLevel2Slots(), level2SlotWeight) &&
+                isAtLeastAsGood(armorPiece.getLevel3Slots(), other.getLevel3Slots(), level3SlotWeight) &&
+                isAtLeastAsGood(armorPiece.getLevel4Slots(), other.getLevel4Slots(), level4SlotWeight);
+    }
+
+    private double boundFor(int slots, int maxRemainingSlots, double weight) {
+        return Math.max(weight * slots, weight * (slots + maxRemainingSlots));
+    }
+
     @JsonPOJOBuilder
     public static final class Builder {
         private double level1SlotWeight;
@@ -3,7 +3,9 @@ package com.mromanak.loadoutoptimizer.scoring;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
 import com.google.common.base.Joiner;
-import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutStats;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.utils.DefenseUtils;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -12,6 +14,10 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 
+import static com.mromanak.loadoutoptimizer.scoring.DominanceUtils.isAtLeastAsGood;
+import static com.mromanak.loadoutoptimizer.scoring.DominanceUtils.skillLevel;
+import static com.mromanak.loadoutoptimizer.utils.DefenseUtils.*;
+
 @Data
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @JsonDeserialize(builder = DefenseScoringFunction.Builder.class)
@@ -48,7 +54,7 @@ public class DefenseScoringFunction implements LoadoutScoringFunction {
     }
 
     @Override
-    public String keyFor(Loadout loadout) {
+    public String keyFor(LoadoutStats loadout) {
         Objects.requireNonNull(loadout, "loadout must be non-null");
 
         Map<String, Integer> keyElements = new LinkedHashMap<>();
@@ -84,7 +90,62 @@ public class DefenseScoringFunction implements LoadoutScoringFunction {
     }
 
     @Override
-    public double scoreFor(Loadout loadout) {
+    public int keySize() {
+        if (performanceMode == ScoringPerformanceMode.SPEED) {
+            return 0;
+        }
+
+        int keySize = 0;
+        if (defenseWeight != 0.0) {
+            keySize++;
+        }
+        if (fireResistanceWeight != 0.0) {
+            keySize++;
+        }
+        if (waterResistanceWeight != 0.0) {
+            keySize++;
+        }
+        if (thunderResistanceWeight != 0.0) {
+            keySize++;
+        }
+        if (iceResistanceWeight != 0.0) {
+            keySize++;
+        }
+        if (dragonResistanceWeight != 0.0) {
+            keySize++;
+        }
+        return keySize;
+    }
+
+    @Override
+    public void writeKey(LoadoutStats loadout, int[] key, int offset) {
+        Objects.requireNonNull(loadout, "loadout must be non-null");
+
+        if (performanceMode == ScoringPerformanceMode.SPEED) {
+            return;
+        }
+        if (defenseWeight != 0.0) {
+            key[offset++] = bucketFor(loadout.getEffectiveDefense(), defenseBucketSize);
+        }
+        if (fireResistanceWeight != 0.0) {
+            key[offset++] = bucketFor(loadout.getEffectiveFireResistance(), resistanceBucketSize);
+        }
+        if (waterResistanceWeight != 0.0) {
+            key[offset++] = bucketFor(loadout.getEffectiveWaterResistance(), resistanceBucketSize);
+        }
+        if (thunderResistanceWeight != 0.0) {
+            key[offset++] = bucketFor(loadout.getEffectiveThunderResistance(), resistanceBucketSize);
+        }
+        if (iceResistanceWeight != 0.0) {
+            key[offset++] = bucketFor(loadout.getEffectiveIceResistance(), resistanceBucketSize);
+        }
+        if (dragonResistanceWeight != 0.0) {
+            key[offset] = bucketFor(loadout.getEffectiveDragonResistance(), resistanceBucketSize);
+        }
+    }
+
+    @Override
+    public double scoreFor(LoadoutStats loadout) {
         Objects.requireNonNull(loadout, "loadout must be non-null");
 
         double score = 0.0;
@@ -116,6 +177,125 @@ public class DefenseScoringFunction implements LoadoutScoringFunction {
         return score;
     }
 
+    @Override
+    public double upperBound(LoadoutStats loadout, RemainingArmorBounds remaining) {
+        Objects.requireNonNull(loadout, "loadout must be non-null");
+
+        // Skills can only be gained, and every skill bonus is non-decreasing in the skill's level, so the effective
+        // values lie between what the current skills give and what the maximum reachable skill levels give
+        int defenseBoostLevel = loadout.getSkillLevel(DEFENSE_BOOST);
+        int maxDefenseBoostLevel = defenseBoostLevel + remaining.getMaxSkillLevel(DEFENSE_BOOST);
+
+        double bound = 0.0;
+        if (defenseWeight != 0.0) {
+            int maxDefense = DefenseUtils.effectiveDefense(loadout.getDefense() + remaining.getMaxDefense(),
+                    maxDefenseBoostLevel);
+            for (String resistanceSkill : ELEMENTAL_RESISTANCE_SKILLS) {
+                int maxResistanceSkillLevel = maxSkillLevel(loadout, remaining, resistanceSkill);
+                maxDefense += DefenseUtils.resistanceSkillDefenseBonusAdd(maxResistanceSkillLevel);
+            }
+            bound += Math.max(
+                    scoreDefense(bucketFor(loadout.getEffectiveDefense(), defenseBucketSize)),
+                    scoreDefense(bucketFor(maxDefense, defenseBucketSize))
+            );
+        }
+        if (fireResistanceWeight != 0.0) {
+            bound += resistanceBoundFor(loadout.getFireResistance(), remaining.getMinFireResistance(),
+                    remaining.getMaxFireResistance(), FIRE_RESISTANCE, fireResistanceWeight, loadout, remaining,
+                    defenseBoostLevel, maxDefenseBoostLevel);
+        }
+        if (waterResistanceWeight != 0.0) {
+            bound += resistanceBoundFor(loadout.getWaterResistance(), remaining.getMinWaterResistance(),
+                    remaining.getMaxWaterResistance(), WATER_RESISTANCE, waterResistanceWeight, loadout, remaining,
+                    defenseBoostLevel, maxDefenseBoostLevel);
+        }
+        if (thunderResistanceWeight != 0.0) {
+            bound += resistanceBoundFor(loadout.getThunderResistance(), remaining.getMinThunderResistance(),
+                    remaining.getMaxThunderResistance(), THUNDER_RESISTANCE, thunderResistanceWeight, loadout,
+                    remaining, defenseBoostLevel, maxDefenseBoostLevel);
+        }
+        if (iceResistanceWeight != 0.0) {
+            bound += resistanceBoundFor(loadout.getIceResistance(), remaining.getMinIceResistance(),
+                    remaining.getMaxIceResistance(), ICE_RESISTANCE, iceResistanceWeight, loadout, remaining,
+                    defenseBoostLevel, maxDefenseBoostLevel);
+        }
+        if (dragonResistanceWeight != 0.0) {
+            bound += resistanceBoundFor(loadout.getDragonResistance(), remaining.getMinDragonResistance(),
+                    remaining.getMaxDragonResistance(), DRAGON_RESISTANCE, dragonResistanceWeight, loadout,
+                    remaining, defenseBoostLevel, maxDefenseBoostLevel);
+        }
+
+        return bound;
+    }
+
+    private double resistanceBoundFor(int resistance, int minRemainingResistance, int maxRemainingResistance,
+                                      String resistanceSkill, double weight, LoadoutStats loadout,
+                                      RemainingArmorBounds remaining, int defenseBoostLevel, int maxDefenseBoostLevel) {
+        int resistanceSkillLevel = loadout.getSkillLevel(resistanceSkill);
+        int maxResistanceSkillLevel = maxSkillLevel(loadout, remaining, resistanceSkill);
+        int minResistance = resistance + minRemainingResistance +
+                DefenseUtils.resistanceBonusAdd(defenseBoostLevel, resistanceSkillLevel);
+        int maxResistance = resistance + maxRemainingResistance +
+                DefenseUtils.resistanceBonusAdd(maxDefenseBoostLevel, maxResistanceSkillLevel);
+        minResistance = bucketFor(minResistance, resistanceBucketSize);
+        maxResistance = bucketFor(maxResistance, resistanceBucketSize);
+
+        // scoreElement is linear on either side of 0, so its maximum over a range is at one of the ends or at 0
+        double bound = Math.max(scoreElement(minResistance, weight), scoreElement(maxResistance, weight));
+        if (minResistance < 0 && maxResistance > 0) {
+            bound = Math.max(bound, scoreElement(0, weight));
+        }
+        return bound;
+    }
+
+    @Override
+    public boolean isAtLeastAsGoodAs(ThinArmorPiece armorPiece, ThinArmorPiece other) {
+        Objects.requireNonNull(armorPiece, "armorPiece must be non-null");
+        Objects.requireNonNull(other, "other must be non-null");
+
+        // Effective defense and resistances never decrease as a piece's defense, resistances, Defense Boost level or
+        // resistance skill levels increase, so each of those is compared in the direction of every term it feeds
+        int defenseBoostLevel = skillLevel(armorPiece, DEFENSE_BOOST);
+        int otherDefenseBoostLevel = skillLevel(other, DEFENSE_BOOST);
+        return isAtLeastAsGood(armorPiece.getDefense(), other.getDefense(), defenseWeight) &&
+                isAtLeastAsGood(defenseBoostLevel, otherDefenseBoostLevel, defenseWeight) &&
+                resistanceIsAtLeastAsGood(armorPiece.getFireResistance(), other.getFireResistance(), FIRE_RESISTANCE,
+                        fireResistanceWeight, armorPiece, other, defenseBoostLevel, otherDefenseBoostLevel) &&
+                resistanceIsAtLeastAsGood(armorPiece.getWaterResistance(), other.getWaterResistance(), WATER_RESISTANCE,
+                        waterResistanceWeight, armorPiece, other, defenseBoostLevel, otherDefenseBoostLevel) &&
+                resistanceIsAtLeastAsGood(armorPiece.getThunderResistance(), other.getThunderResistance(),
+                        THUNDER_RESISTANCE, thunderResistanceWeight, armorPiece, other, defenseBoostLevel,
+                        otherDefenseBoostLevel) &&
+                resistanceIsAtLeastAsGood(armorPiece.getIceResistance(), other.getIceResistance(), ICE_RESISTANCE,
+                        iceResistanceWeight, armorPiece, other, defenseBoostLevel, otherDefenseBoostLevel) &&
+                resistanceIsAtLeastAsGood(armorPiece.getDragonResistance(), other.getDragonResistance(),
+                        DRAGON_RESISTANCE, dragonResistanceWeight, armorPiece, other, defenseBoostLevel,
+                        otherDefenseBoostLevel);
+    }
+
+    private boolean resistanceIsAtLeastAsGood(int resistance, int otherResistance, String resistanceSkill,
+                                              double weight, ThinArmorPiece armorPiece, ThinArmorPiece other,
+                                              int defenseBoostLevel, int otherDefenseBoostLevel) {
+        // A negative multiplier makes scoreElement fall on one side of 0 and rise on the other, in which case every
+        // value that feeds the resistance has to be equal
+        double negativeWeight = (negativeResistanceWeightMultiplier != 1.0) ?
+                weight * negativeResistanceWeightMultiplier :
+                weight;
+        int resistanceSkillLevel = skillLevel(armorPiece, resistanceSkill);
+        int otherResistanceSkillLevel = skillLevel(other, resistanceSkill);
+        return isAtLeastAsGood(resistance, otherResistance, weight) &&
+                isAtLeastAsGood(resistance, otherResistance, negativeWeight) &&
+                isAtLeastAsGood(defenseBoostLevel, otherDefenseBoostLevel, weight) &&
+                isAtLeastAsGood(defenseBoostLevel, otherDefenseBoostLevel, negativeWeight) &&
+                isAtLeastAsGood(resistanceSkillLevel, otherResistanceSkillLevel, weight) &&
+                isAtLeastAsGood(resistanceSkillLevel, otherResistanceSkillLevel, negativeWeight) &&
+                isAtLeastAsGood(resistanceSkillLevel, otherResistanceSkillLevel, defenseWeight);
+    }
+
+    private int maxSkillLevel(LoadoutStats loadout, RemainingArmorBounds remaining, String skillName) {
+        return loadout.getSkillLevel(skillName) + remaining.getMaxSkillLevel(skillName);
+    }
+
     private int bucketFor(int value, int bucketSize) {
         if (bucketSize > 0) {
             return bucketSize * Math.floorDiv(value, bucketSize);
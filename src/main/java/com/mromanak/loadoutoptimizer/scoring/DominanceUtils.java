@@ -0,0 +1,30 @@
+package com.mromanak.loadoutoptimizer.scoring;
+
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPieceSkill;
+
+public abstract class DominanceUtils {
+
+    /**
+     * @return True if a score term with the given weight would be at least as high with {@code value} as with
+     * {@code otherValue}. Checking the same pair of values against weights of both signs requires them to be equal.
+     */
+    public static boolean isAtLeastAsGood(int value, int otherValue, double weight) {
+        if (weight > 0.0) {
+            return value >= otherValue;
+        } else if (weight < 0.0) {
+            return value <= otherValue;
+        }
+        return true;
+    }
+
+    public static int skillLevel(ThinArmorPiece armorPiece, String skillName) {
+        int skillLevel = 0;
+        for (ThinArmorPieceSkill skill : armorPiece.getSkills()) {
+            if (skill.getSkill().getName().equals(skillName)) {
+                skillLevel += skill.getSkillLevel();
+            }
+        }
+        return skillLevel;
+    }
+}
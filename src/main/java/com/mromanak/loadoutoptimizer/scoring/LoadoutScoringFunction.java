@@ -1,15 +1,56 @@
 package com.mromanak.loadoutoptimizer.scoring;
 
-import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutState;
+import com.mromanak.loadoutoptimizer.model.LoadoutStats;
+import com.mromanak.loadoutoptimizer.model.SkillIndex;
 import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
-import com.mromanak.loadoutoptimizer.model.jpa.ArmorPiece;
-
-import java.util.Objects;
-import java.util.function.Function;
 
 public interface LoadoutScoringFunction {
 
-    String keyFor(Loadout loadout);
+    String keyFor(LoadoutStats loadout);
+
+    /**
+     * @return The number of elements that {@link #writeKey(LoadoutStats, int[], int)} writes for any loadout
+     */
+    int keySize();
+
+    /**
+     * Writes the compact form of {@link #keyFor(LoadoutStats)} into {@code key}, starting at {@code offset}. Two loadouts
+     * must produce equal elements if and only if they would produce equal string keys.
+     */
+    void writeKey(LoadoutStats loadout, int[] key, int offset);
+
+    default int[] stateKeyFor(LoadoutStats loadout) {
+        int[] key = new int[keySize()];
+        writeKey(loadout, key, 0);
+        return key;
+    }
+
+    double scoreFor(LoadoutStats loadout);
+
+    /**
+     * @return A value that is at least the score of {@code loadout} plus any combination of the armor pieces described
+     * by {@code remaining}. The optimizer skips any partial loadout whose bound is lower than the best score it has
+     * already found, so a bound that is too low causes it to miss the best loadouts.
+     */
+    default double upperBound(LoadoutStats loadout, RemainingArmorBounds remaining) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return True if putting {@code armorPiece} into any loadout in place of {@code other}, a piece of the same armor
+     * type, can never lower the loadout's score. Armor pieces that fail this check for every other candidate are
+     * never removed from a search, so a function that cannot tell simply keeps every piece.
+     */
+    default boolean isAtLeastAsGoodAs(ThinArmorPiece armorPiece, ThinArmorPiece other) {
+        return armorPiece.equals(other);
+    }
 
-    double scoreFor(Loadout loadout);
+    /**
+     * @return A scoring function that gives the same results as this one, but that may read skill levels by their
+     * ordinals when it is given a {@link LoadoutState} that uses {@code skillIndex}
+     */
+    default LoadoutScoringFunction bind(SkillIndex skillIndex) {
+        return this;
+    }
 }
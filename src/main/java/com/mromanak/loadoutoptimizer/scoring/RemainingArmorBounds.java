@@ -0,0 +1,117 @@
+package com.mromanak.loadoutoptimizer.scoring;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPieceSkill;
+import lombok.Data;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The most that the armor types that have yet to be filled can add to a loadout. Every armor type may also be left
+ * empty, so each maximum is at least 0 and each minimum is at most 0.
+ */
+@Data
+public class RemainingArmorBounds {
+
+    private static final RemainingArmorBounds NONE = of(ImmutableList.of());
+
+    private final Map<String, Integer> maxSkillLevels;
+    private final int maxLevel1Slots;
+    private final int maxLevel2Slots;
+    private final int maxLevel3Slots;
+    private final int maxLevel4Slots;
+    private final int maxDefense;
+    private final int minFireResistance;
+    private final int maxFireResistance;
+    private final int minWaterResistance;
+    private final int maxWaterResistance;
+    private final int minThunderResistance;
+    private final int maxThunderResistance;
+    private final int minIceResistance;
+    private final int maxIceResistance;
+    private final int minDragonResistance;
+    private final int maxDragonResistance;
+    private final int maxArmorPieces;
+
+    private RemainingArmorBounds(Collection<? extends Collection<ThinArmorPiece>> armorTypes) {
+        Map<String, Integer> maxSkillLevelsTmp = new HashMap<>();
+        int[] maxima = new int[5];
+        int[] resistanceBounds = new int[10];
+        int maxArmorPiecesTmp = 0;
+        for (Collection<ThinArmorPiece> armorPieces : armorTypes) {
+            if (armorPieces.isEmpty()) {
+                continue;
+            }
+
+            Map<String, Integer> armorTypeSkillLevels = new HashMap<>();
+            int[] armorTypeMaxima = new int[5];
+            int[] armorTypeResistanceBounds = new int[10];
+            for (ThinArmorPiece armorPiece : armorPieces) {
+                for (ThinArmorPieceSkill skill : armorPiece.getSkills()) {
+                    armorTypeSkillLevels.merge(skill.getSkill().getName(), skill.getSkillLevel(), Math::max);
+                }
+                armorTypeMaxima[0] = Math.max(armorTypeMaxima[0], armorPiece.getLevel1Slots());
+                armorTypeMaxima[1] = Math.max(armorTypeMaxima[1], armorPiece.getLevel2Slots());
+                armorTypeMaxima[2] = Math.max(armorTypeMaxima[2], armorPiece.getLevel3Slots());
+                armorTypeMaxima[3] = Math.max(armorTypeMaxima[3], armorPiece.getLevel4Slots());
+                armorTypeMaxima[4] = Math.max(armorTypeMaxima[4], armorPiece.getDefense());
+                updateResistanceBounds(armorTypeResistanceBounds, 0, armorPiece.getFireResistance());
+                updateResistanceBounds(armorTypeResistanceBounds, 2, armorPiece.getWaterResistance());
+                updateResistanceBounds(armorTypeResistanceBounds, 4, armorPiece.getThunderResistance());
+                updateResistanceBounds(armorTypeResistanceBounds, 6, armorPiece.getIceResistance());
+                updateResistanceBounds(armorTypeResistanceBounds, 8, armorPiece.getDragonResistance());
+            }
+
+            armorTypeSkillLevels.forEach((skillName, level) -> maxSkillLevelsTmp.merge(skillName, level, Integer::sum));
+            for (int i = 0; i < maxima.length; i++) {
+                maxima[i] += armorTypeMaxima[i];
+            }
+            for (int i = 0; i < resistanceBounds.length; i++) {
+                resistanceBounds[i] += armorTypeResistanceBounds[i];
+            }
+            maxArmorPiecesTmp++;
+        }
+
+        maxSkillLevels = ImmutableMap.copyOf(maxSkillLevelsTmp);
+        maxLevel1Slots = maxima[0];
+        maxLevel2Slots = maxima[1];
+        maxLevel3Slots = maxima[2];
+        maxLevel4Slots = maxima[3];
+        maxDefense = maxima[4];
+        minFireResistance = resistanceBounds[0];
+        maxFireResistance = resistanceBounds[1];
+        minWaterResistance = resistanceBounds[2];
+        maxWaterResistance = resistanceBounds[3];
+        minThunderResistance = resistanceBounds[4];
+        maxThunderResistance = resistanceBounds[5];
+        minIceResistance = resistanceBounds[6];
+        maxIceResistance = resistanceBounds[7];
+        minDragonResistance = resistanceBounds[8];
+        maxDragonResistance = resistanceBounds[9];
+        maxArmorPieces = maxArmorPiecesTmp;
+    }
+
+    /**
+     * @param armorTypes The candidate armor pieces for each armor type that has yet to be filled
+     */
+    public static RemainingArmorBounds of(Collection<? extends Collection<ThinArmorPiece>> armorTypes) {
+        return new RemainingArmorBounds(armorTypes);
+    }
+
+    public static RemainingArmorBounds none() {
+        return NONE;
+    }
+
+    public int getMaxSkillLevel(String skillName) {
+        return maxSkillLevels.getOrDefault(skillName, 0);
+    }
+
+    private static void updateResistanceBounds(int[] resistanceBounds, int index, int resistance) {
+        resistanceBounds[index] = Math.min(resistanceBounds[index], resistance);
+        resistanceBounds[index + 1] = Math.max(resistanceBounds[index + 1], resistance);
+    }
+}
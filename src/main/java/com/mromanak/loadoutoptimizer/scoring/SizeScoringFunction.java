@@ -2,7 +2,8 @@ package com.mromanak.loadoutoptimizer.scoring;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
-import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutStats;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
 import lombok.Data;
 
 import java.util.Objects;
@@ -26,20 +27,51 @@ public class SizeScoringFunction implements LoadoutScoringFunction {
     }
 
     @Override
-    public String keyFor(Loadout loadout) {
+    public String keyFor(LoadoutStats loadout) {
         Objects.requireNonNull(loadout, "loadout must be non-null");
 
-        if (performanceMode == ScoringPerformanceMode.SPEED || loadout.getArmorPieces().isEmpty()) {
+        if (performanceMode == ScoringPerformanceMode.SPEED || loadout.getArmorPieceCount() == 0) {
             return EMPTY_KEY;
         }
-        return "SizeState=" + loadout.getArmorPieces().size();
+        return "SizeState=" + loadout.getArmorPieceCount();
     }
 
     @Override
-    public double scoreFor(Loadout loadout) {
+    public int keySize() {
+        return performanceMode == ScoringPerformanceMode.SPEED ? 0 : 1;
+    }
+
+    @Override
+    public void writeKey(LoadoutStats loadout, int[] key, int offset) {
+        Objects.requireNonNull(loadout, "loadout must be non-null");
+
+        if (performanceMode != ScoringPerformanceMode.SPEED) {
+            key[offset] = loadout.getArmorPieceCount();
+        }
+    }
+
+    @Override
+    public double scoreFor(LoadoutStats loadout) {
         Objects.requireNonNull(loadout, "loadout must be non-null");
 
-        return sizeWeight * loadout.getArmorPieces().size();
+        return sizeWeight * loadout.getArmorPieceCount();
+    }
+
+    @Override
+    public double upperBound(LoadoutStats loadout, RemainingArmorBounds remaining) {
+        Objects.requireNonNull(loadout, "loadout must be non-null");
+
+        int size = loadout.getArmorPieceCount();
+        return Math.max(sizeWeight * size, sizeWeight * (size + remaining.getMaxArmorPieces()));
+    }
+
+    @Override
+    public boolean isAtLeastAsGoodAs(ThinArmorPiece armorPiece, ThinArmorPiece other) {
+        Objects.requireNonNull(armorPiece, "armorPiece must be non-null");
+        Objects.requireNonNull(other, "other must be non-null");
+
+        // Swapping one piece for another never changes the size of a loadout
+        return true;
     }
 
     @JsonPOJOBuilder
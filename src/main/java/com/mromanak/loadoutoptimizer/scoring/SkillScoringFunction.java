@@ -6,7 +6,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
-import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutState;
+import com.mromanak.loadoutoptimizer.model.LoadoutStats;
+import com.mromanak.loadoutoptimizer.model.SkillIndex;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -15,6 +18,9 @@ import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static com.mromanak.loadoutoptimizer.scoring.DominanceUtils.isAtLeastAsGood;
+import static com.mromanak.loadoutoptimizer.scoring.DominanceUtils.skillLevel;
+
 @Data
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @JsonDeserialize(builder = SkillScoringFunction.Builder.class)
@@ -39,14 +45,14 @@ public class SkillScoringFunction implements LoadoutScoringFunction {
     }
 
     @Override
-    public String keyFor(Loadout loadout) {
+    public String keyFor(LoadoutStats loadout) {
         Objects.requireNonNull(loadout, "loadout must be non-null");
 
         SortedMap<String, Integer> keyElements = new TreeMap<>();
         for (SkillWeight skillWeight : skillWeights) {
             String skillName = skillWeight.getName();
             int skillLevel = Math.min(
-                    loadout.getSkills().getOrDefault(skillName, 0),
+                    loadout.getSkillLevel(skillName),
                     skillWeight.getMaximum()
             );
             if (skillLevel > 0) {
@@ -60,18 +66,76 @@ public class SkillScoringFunction implements LoadoutScoringFunction {
     }
 
     @Override
-    public double scoreFor(Loadout loadout) {
+    public int keySize() {
+        return performanceMode == ScoringPerformanceMode.SPEED ? 0 : skillWeights.size();
+    }
+
+    @Override
+    public void writeKey(LoadoutStats loadout, int[] key, int offset) {
+        Objects.requireNonNull(loadout, "loadout must be non-null");
+
+        if (performanceMode == ScoringPerformanceMode.SPEED) {
+            return;
+        }
+        for (SkillWeight skillWeight : skillWeights) {
+            key[offset++] = Math.min(
+                    loadout.getSkillLevel(skillWeight.getName()),
+                    skillWeight.getMaximum()
+            );
+        }
+    }
+
+    @Override
+    public double scoreFor(LoadoutStats loadout) {
         Objects.requireNonNull(loadout, "loadout must be non-null");
 
         double score = 0;
         for (SkillWeight skillWeight : skillWeights) {
             String skillName = skillWeight.getName();
-            int skillLevel = loadout.getSkills().getOrDefault(skillName, 0);
+            int skillLevel = loadout.getSkillLevel(skillName);
             score += skillWeight.apply(skillLevel);
         }
         return score;
     }
 
+    @Override
+    public double upperBound(LoadoutStats loadout, RemainingArmorBounds remaining) {
+        Objects.requireNonNull(loadout, "loadout must be non-null");
+
+        double bound = 0;
+        for (SkillWeight skillWeight : skillWeights) {
+            String skillName = skillWeight.getName();
+            int skillLevel = loadout.getSkillLevel(skillName);
+            int maxSkillLevel = skillLevel + remaining.getMaxSkillLevel(skillName);
+            bound += Math.max(skillWeight.apply(skillLevel), skillWeight.apply(maxSkillLevel));
+        }
+        return bound;
+    }
+
+    @Override
+    public boolean isAtLeastAsGoodAs(ThinArmorPiece armorPiece, ThinArmorPiece other) {
+        Objects.requireNonNull(armorPiece, "armorPiece must be non-null");
+        Objects.requireNonNull(other, "other must be non-null");
+
+        for (SkillWeight skillWeight : skillWeights) {
+            if (skillWeight.getMaximum() <= 0) {
+                continue;
+            }
+
+            String skillName = skillWeight.getName();
+            if (!isAtLeastAsGood(skillLevel(armorPiece, skillName), skillLevel(other, skillName), skillWeight.getWeight())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public LoadoutScoringFunction bind(SkillIndex skillIndex) {
+        Objects.requireNonNull(skillIndex, "skillIndex must be non-null");
+        return new BoundSkillScoringFunction(this, skillIndex);
+    }
+
     @JsonIgnore
     public Set<String> getSkills() {
         return skillWeights.stream().map(SkillWeight::getName).collect(Collectors.toSet());
@@ -101,6 +165,110 @@ public class SkillScoringFunction implements LoadoutScoringFunction {
         }
     }
 
+    // Reads skill levels by ordinal from states that use its SkillIndex, and by name from anything else
+    private static final class BoundSkillScoringFunction implements LoadoutScoringFunction {
+
+        private final SkillScoringFunction unbound;
+        private final SkillIndex skillIndex;
+        private final String[] names;
+        private final int[] ordinals;
+        private final int[] maximums;
+        private final double[] weights;
+
+        private BoundSkillScoringFunction(SkillScoringFunction unbound, SkillIndex skillIndex) {
+            this.unbound = unbound;
+            this.skillIndex = skillIndex;
+            List<SkillWeight> skillWeights = unbound.getSkillWeights();
+            names = new String[skillWeights.size()];
+            ordinals = new int[skillWeights.size()];
+            maximums = new int[skillWeights.size()];
+            weights = new double[skillWeights.size()];
+            for (int i = 0; i < skillWeights.size(); i++) {
+                SkillWeight skillWeight = skillWeights.get(i);
+                names[i] = skillWeight.getName();
+                ordinals[i] = skillIndex.ordinalOf(skillWeight.getName());
+                maximums[i] = skillWeight.getMaximum();
+                weights[i] = skillWeight.getWeight();
+            }
+        }
+
+        @Override
+        public String keyFor(LoadoutStats loadout) {
+            return unbound.keyFor(loadout);
+        }
+
+        @Override
+        public int keySize() {
+            return unbound.keySize();
+        }
+
+        @Override
+        public void writeKey(LoadoutStats loadout, int[] key, int offset) {
+            Objects.requireNonNull(loadout, "loadout must be non-null");
+
+            if (unbound.getPerformanceMode() == ScoringPerformanceMode.SPEED) {
+                return;
+            }
+            LoadoutState state = stateOrNull(loadout);
+            for (int i = 0; i < ordinals.length; i++) {
+                key[offset++] = Math.min(skillLevel(loadout, state, i), maximums[i]);
+            }
+        }
+
+        @Override
+        public double scoreFor(LoadoutStats loadout) {
+            Objects.requireNonNull(loadout, "loadout must be non-null");
+
+            LoadoutState state = stateOrNull(loadout);
+            double score = 0;
+            for (int i = 0; i < ordinals.length; i++) {
+                score += weights[i] * Math.min(skillLevel(loadout, state, i), maximums[i]);
+            }
+            return score;
+        }
+
+        @Override
+        public double upperBound(LoadoutStats loadout, RemainingArmorBounds remaining) {
+            Objects.requireNonNull(loadout, "loadout must be non-null");
+
+            LoadoutState state = stateOrNull(loadout);
+            double bound = 0;
+            for (int i = 0; i < ordinals.length; i++) {
+                int skillLevel = skillLevel(loadout, state, i);
+                int maxSkillLevel = skillLevel + remaining.getMaxSkillLevel(names[i]);
+                bound += Math.max(
+                        weights[i] * Math.min(skillLevel, maximums[i]),
+                        weights[i] * Math.min(maxSkillLevel, maximums[i])
+                );
+            }
+            return bound;
+        }
+
+        @Override
+        public boolean isAtLeastAsGoodAs(ThinArmorPiece armorPiece, ThinArmorPiece other) {
+            return unbound.isAtLeastAsGoodAs(armorPiece, other);
+        }
+
+        @Override
+        public LoadoutScoringFunction bind(SkillIndex skillIndex) {
+            return unbound.bind(skillIndex);
+        }
+
+        private LoadoutState stateOrNull(LoadoutStats loadout) {
+            if (loadout instanceof LoadoutState && ((LoadoutState) loadout).getSkillIndex() == skillIndex) {
+                return (LoadoutState) loadout;
+            }
+            return null;
+        }
+
+        private int skillLevel(LoadoutStats loadout, LoadoutState state, int i) {
+            if (state == null) {
+                return loadout.getSkillLevel(names[i]);
+            }
+            return (ordinals[i] < 0) ? 0 : state.getSkillLevel(ordinals[i]);
+        }
+    }
+
     public static final class Builder {
         private List<SkillWeight> skillWeights = new ArrayList<>();
         private ScoringPerformanceMode performanceMode = ScoringPerformanceMode.ACCURACY;
@@ -0,0 +1,179 @@
+package com.mromanak.loadoutoptimizer.service;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.SetMultimap;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPieceSkill;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinSetBonus;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinSetBonusSkill;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.Rank;
+import com.mromanak.loadoutoptimizer.model.jpa.SetBonusSkill;
+import com.mromanak.loadoutoptimizer.repository.ArmorPieceRepository;
+import com.mromanak.loadoutoptimizer.repository.SetBonusRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * An immutable, in-memory copy of the armor pieces and set bonuses that the optimizer reads, split up by rank, so that
+ * optimizing a loadout never has to go to the database. The copy is loaded at startup. After a write to the catalog
+ * commits, the next read loads a new copy and swaps it in; reads that are already running keep the copy they
+ * started with.
+ */
+@Service
+public class ArmorCatalog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArmorCatalog.class);
+
+    private final ArmorPieceRepository armorPieceRepository;
+    private final SetBonusRepository setBonusRepository;
+    private final CatalogVersion catalogVersion;
+    private final TransactionTemplate transactionTemplate;
+    private volatile Snapshot snapshot;
+
+    public ArmorCatalog(ArmorPieceRepository armorPieceRepository, SetBonusRepository setBonusRepository,
+            CatalogVersion catalogVersion, PlatformTransactionManager transactionManager) {
+        this.armorPieceRepository = armorPieceRepository;
+        this.setBonusRepository = setBonusRepository;
+        this.catalogVersion = catalogVersion;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // The snapshot is loaded in a transaction of its own, so that it never sees a caller's uncommitted changes
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        current();
+    }
+
+    /**
+     * @return Every armor piece of the given rank that has at least one of the given skills
+     */
+    public Set<ThinArmorPiece> getArmorPiecesWithSkills(Set<String> skillNames, Rank rank) {
+        Objects.requireNonNull(skillNames, "skillNames must be non-null");
+        Objects.requireNonNull(rank, "rank must be non-null");
+
+        SetMultimap<String, ThinArmorPiece> armorPiecesBySkillName = current().armorPiecesBySkillName.get(rank);
+        ImmutableSet.Builder<ThinArmorPiece> armorPieces = ImmutableSet.builder();
+        for(String skillName : skillNames) {
+            armorPieces.addAll(armorPiecesBySkillName.get(skillName));
+        }
+        return armorPieces.build();
+    }
+
+    /**
+     * @return The set bonuses that provide the given set bonus skill, each with only its armor pieces of the given
+     * rank, already grouped by armor type
+     */
+    public Set<ThinSetBonusSkill> getSetBonusSkills(String skillName, Rank rank) {
+        Objects.requireNonNull(skillName, "skillName must be non-null");
+        Objects.requireNonNull(rank, "rank must be non-null");
+        return current().setBonusSkillsBySkillName.get(rank).get(skillName);
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if(current != null && current.version == catalogVersion.get()) {
+            return current;
+        }
+
+        synchronized(this) {
+            current = snapshot;
+            if(current == null || current.version != catalogVersion.get()) {
+                current = transactionTemplate.execute(status -> loadSnapshot());
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    private Snapshot loadSnapshot() {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        // As with cached results, the version is read first, so that the snapshot is never newer than it claims
+        long version = catalogVersion.get();
+
+        int armorPieceCount = 0;
+        ListMultimap<String, ThinArmorPiece> armorPiecesBySetBonusId = MultimapBuilder.hashKeys().arrayListValues().build();
+        Map<Rank, ImmutableSetMultimap.Builder<String, ThinArmorPiece>> armorPiecesBySkillName = new EnumMap<>(Rank.class);
+        for(Rank rank : Rank.values()) {
+            armorPiecesBySkillName.put(rank, ImmutableSetMultimap.builder());
+        }
+        for(ArmorPiece armorPiece : armorPieceRepository.eagerFindAll()) {
+            ThinArmorPiece thinArmorPiece = new ThinArmorPiece(armorPiece);
+            armorPieceCount++;
+            if(armorPiece.getSetBonus() != null) {
+                armorPiecesBySetBonusId.put(armorPiece.getSetBonus().getId(), thinArmorPiece);
+            }
+            for(ThinArmorPieceSkill skill : thinArmorPiece.getSkills()) {
+                armorPiecesBySkillName.get(armorPiece.getSetType().getRank()).put(skill.getSkill().getName(), thinArmorPiece);
+            }
+        }
+
+        // Each set bonus is built once per rank and shared by all of its skills
+        Map<Rank, ImmutableSetMultimap.Builder<String, ThinSetBonusSkill>> setBonusSkillsBySkillName = new EnumMap<>(Rank.class);
+        Map<Rank, Map<String, ThinSetBonus>> setBonusesById = new EnumMap<>(Rank.class);
+        for(Rank rank : Rank.values()) {
+            setBonusSkillsBySkillName.put(rank, ImmutableSetMultimap.builder());
+            setBonusesById.put(rank, new HashMap<>());
+        }
+        int setBonusSkillCount = 0;
+        for(SetBonusSkill setBonusSkill : setBonusRepository.eagerFindAllSkills()) {
+            for(Rank rank : Rank.values()) {
+                ThinSetBonus setBonus = setBonusesById.get(rank).computeIfAbsent(setBonusSkill.getSetBonus().getId(),
+                        setBonusId -> new ThinSetBonus(setBonusSkill.getSetBonus(),
+                                armorPiecesBySetBonusId.get(setBonusId).
+                                        stream().
+                                        filter(armorPiece -> armorPiece.getSetType().getRank() == rank).
+                                        collect(toList())));
+                setBonusSkillsBySkillName.get(rank).put(setBonusSkill.getSkill().getName(),
+                        new ThinSetBonusSkill(setBonusSkill, setBonus));
+            }
+            setBonusSkillCount++;
+        }
+
+        LOGGER.info("Loaded {} armor pieces and {} set bonus skills into the armor catalog in {} ms",
+                armorPieceCount, setBonusSkillCount, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        return new Snapshot(version, build(armorPiecesBySkillName), build(setBonusSkillsBySkillName));
+    }
+
+    private static <V> Map<Rank, SetMultimap<String, V>> build(
+            Map<Rank, ImmutableSetMultimap.Builder<String, V>> builders) {
+        ImmutableMap.Builder<Rank, SetMultimap<String, V>> built = ImmutableMap.builder();
+        builders.forEach((rank, builder) -> built.put(rank, builder.build()));
+        return built.build();
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final Map<Rank, SetMultimap<String, ThinArmorPiece>> armorPiecesBySkillName;
+        private final Map<Rank, SetMultimap<String, ThinSetBonusSkill>> setBonusSkillsBySkillName;
+
+        private Snapshot(long version, Map<Rank, SetMultimap<String, ThinArmorPiece>> armorPiecesBySkillName,
+                Map<Rank, SetMultimap<String, ThinSetBonusSkill>> setBonusSkillsBySkillName) {
+            this.version = version;
+            this.armorPiecesBySkillName = armorPiecesBySkillName;
+            this.setBonusSkillsBySkillName = setBonusSkillsBySkillName;
+        }
+    }
+}
@@ -2,10 +2,7 @@ package com.mromanak.loadoutoptimizer.service;
 
 import com.google.common.collect.ImmutableSet;
 import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
-import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
 import com.mromanak.loadoutoptimizer.model.jpa.Rank;
-import com.mromanak.loadoutoptimizer.repository.ArmorPieceRepository;
-import com.mromanak.loadoutoptimizer.selection.ArmorSelector;
 import org.springframework.stereotype.Service;
 
 import java.util.Set;
@@ -16,18 +13,14 @@ import static java.util.stream.Collectors.toSet;
 @Service
 public class ArmorPieceService {
 
-    private final ArmorPieceRepository armorPieceRepository;
+    private final ArmorCatalog armorCatalog;
 
-    public ArmorPieceService(ArmorPieceRepository armorPieceRepository) {
-        this.armorPieceRepository = armorPieceRepository;
+    public ArmorPieceService(ArmorCatalog armorCatalog) {
+        this.armorCatalog = armorCatalog;
     }
 
     public Set<ThinArmorPiece> getArmorPiecesWithSkillsAndRank(Set<String> skillNames, Rank rank) {
-        return ImmutableSet.copyOf(armorPieceRepository.eagerFindBySkillNameIn(skillNames).
-            stream().
-            filter((ap) -> ap.getSetType().getRank() == rank).
-            map(ThinArmorPiece::new).
-            collect(toSet()));
+        return armorCatalog.getArmorPiecesWithSkills(skillNames, rank);
     }
 
     public Set<ThinArmorPiece> getArmorPiecesWithSkillsAndRank(Set<String> skillNames,
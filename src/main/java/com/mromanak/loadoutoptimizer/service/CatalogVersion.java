@@ -0,0 +1,40 @@
+package com.mromanak.loadoutoptimizer.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A counter that goes up whenever the armor, skill, set bonus or jewel data changes, so that anything computed from
+ * that data can tell whether it is stale. Read the version before reading the data: a result computed from newer
+ * data than its version says is only ever discarded early, never served stale.
+ */
+@Component
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long get() {
+        return version.get();
+    }
+
+    /**
+     * Bumps the version once the current transaction commits, or right away if there is no transaction. Bumping any
+     * earlier would let a request read the new version while the old data is still visible.
+     */
+    public void incrementAfterCommit() {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            version.incrementAndGet();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                version.incrementAndGet();
+            }
+        });
+    }
+}
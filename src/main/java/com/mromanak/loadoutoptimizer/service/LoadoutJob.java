@@ -0,0 +1,117 @@
+package com.mromanak.loadoutoptimizer.service;
+
+import com.mromanak.loadoutoptimizer.impl.SearchBudget;
+import com.mromanak.loadoutoptimizer.model.OptimizationResult;
+import com.mromanak.loadoutoptimizer.model.api.LoadoutJobState;
+import com.mromanak.loadoutoptimizer.model.api.LoadoutJobStatus;
+import com.mromanak.loadoutoptimizer.model.api.LoadoutRequest;
+import com.mromanak.loadoutoptimizer.model.api.SearchStatisticsResponse;
+
+import java.util.Objects;
+import java.util.concurrent.Future;
+
+/**
+ * An optimization that runs on the optimizer thread pool. The state only ever moves forward, from queued to running to
+ * one of the finished states, or straight from queued to cancelled.
+ */
+public class LoadoutJob {
+
+    private final String id;
+    private final LoadoutRequest request;
+    private LoadoutJobState state = LoadoutJobState.QUEUED;
+    private Future<?> future;
+    private SearchBudget budget;
+    private OptimizationResult result;
+    private String error;
+    private long finishedAtMillis;
+
+    LoadoutJob(String id, LoadoutRequest request) {
+        this.id = Objects.requireNonNull(id, "id must be non-null");
+        this.request = Objects.requireNonNull(request, "request must be non-null");
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public LoadoutRequest getRequest() {
+        return request;
+    }
+
+    public synchronized LoadoutJobState getState() {
+        return state;
+    }
+
+    /**
+     * @return The loadouts that the job found, or null if it has not found any yet
+     */
+    public synchronized OptimizationResult getResult() {
+        return result;
+    }
+
+    public synchronized LoadoutJobStatus toStatus() {
+        LoadoutJobStatus status = new LoadoutJobStatus();
+        status.setId(id);
+        status.setState(state);
+        if (result != null) {
+            status.setProgress(result.getProgress());
+            status.setComplete(result.isComplete());
+            if (request.isExplain()) {
+                status.setSearchStatistics(SearchStatisticsResponse.of(result.getStatistics()));
+            }
+        } else if (budget != null) {
+            status.setProgress(budget.getProgress());
+        }
+        status.setError(error);
+        return status;
+    }
+
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * @return False if the job was cancelled before it could start
+     */
+    synchronized boolean start(SearchBudget budget) {
+        if (state != LoadoutJobState.QUEUED) {
+            return false;
+        }
+        this.state = LoadoutJobState.RUNNING;
+        this.budget = budget;
+        return true;
+    }
+
+    synchronized void succeed(OptimizationResult result) {
+        this.result = result;
+        finish(budget.isCancelled() ? LoadoutJobState.CANCELLED : LoadoutJobState.SUCCEEDED);
+    }
+
+    synchronized void fail(Throwable t) {
+        this.error = t.getMessage();
+        finish(LoadoutJobState.FAILED);
+    }
+
+    /**
+     * A queued job is taken off of the queue. A running job stops searching and keeps the best loadouts it has found.
+     */
+    synchronized void cancel() {
+        if (state == LoadoutJobState.QUEUED) {
+            if (future != null) {
+                future.cancel(false);
+            }
+            finish(LoadoutJobState.CANCELLED);
+        } else if (state == LoadoutJobState.RUNNING) {
+            budget.cancel();
+        }
+    }
+
+    synchronized boolean isExpired(long nowMillis, long ttlMillis) {
+        return state.isFinished() && nowMillis - finishedAtMillis >= ttlMillis;
+    }
+
+    private void finish(LoadoutJobState state) {
+        this.state = state;
+        this.finishedAtMillis = System.currentTimeMillis();
+    }
+}
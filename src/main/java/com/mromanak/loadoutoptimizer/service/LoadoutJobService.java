@@ -0,0 +1,92 @@
+package com.mromanak.loadoutoptimizer.service;
+
+import com.mromanak.loadoutoptimizer.impl.SearchBudget;
+import com.mromanak.loadoutoptimizer.model.OptimizationResult;
+import com.mromanak.loadoutoptimizer.model.api.LoadoutRequest;
+import com.mromanak.loadoutoptimizer.model.exception.EntityNotFoundException;
+import com.mromanak.loadoutoptimizer.model.exception.OptimizerBusyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class LoadoutJobService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadoutJobService.class);
+
+    private final LoadoutOptimizerService loadoutOptimizerService;
+    private final ThreadPoolExecutor executor;
+    private final long ttlMillis;
+    private final Map<String, LoadoutJob> jobs = new ConcurrentHashMap<>();
+
+    public LoadoutJobService(LoadoutOptimizerService loadoutOptimizerService, ThreadPoolExecutor loadoutOptimizerExecutor,
+            @Value("${com.mromanak.optimizer.jobs.ttlSeconds:600}") long ttlSeconds) {
+        this.loadoutOptimizerService = loadoutOptimizerService;
+        this.executor = loadoutOptimizerExecutor;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    /**
+     * @throws OptimizerBusyException If every optimizer thread is busy and the queue is full
+     */
+    public LoadoutJob submit(LoadoutRequest loadoutRequest) {
+        Objects.requireNonNull(loadoutRequest, "loadoutRequest must be non-null");
+        removeExpiredJobs();
+
+        LoadoutJob job = new LoadoutJob(UUID.randomUUID().toString(), loadoutRequest);
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(executor.submit(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new OptimizerBusyException("Too many loadout optimization jobs are queued. Try again later.", e);
+        }
+        return job;
+    }
+
+    public LoadoutJob getJob(String jobId) {
+        LoadoutJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new EntityNotFoundException("No loadout job found with ID " + jobId);
+        }
+        return job;
+    }
+
+    public LoadoutJob cancel(String jobId) {
+        LoadoutJob job = getJob(jobId);
+        job.cancel();
+        // A cancelled job that never started holds no thread, but the executor only drops it from the queue lazily
+        executor.purge();
+        return job;
+    }
+
+    private void run(LoadoutJob job) {
+        // The budget starts when the job does, so that time spent in the queue does not count against it
+        SearchBudget budget = loadoutOptimizerService.searchBudgetFor(job.getRequest());
+        if (!job.start(budget)) {
+            return;
+        }
+
+        try {
+            OptimizationResult result = loadoutOptimizerService.optimize(job.getRequest(), budget);
+            job.succeed(result);
+        } catch (RuntimeException | Error e) {
+            LOGGER.warn("Loadout job {} failed", job.getId(), e);
+            job.fail(e);
+        }
+    }
+
+    private void removeExpiredJobs() {
+        long nowMillis = System.currentTimeMillis();
+        jobs.values().removeIf(job -> job.isExpired(nowMillis, ttlMillis));
+    }
+}
@@ -1,9 +1,25 @@
 package com.mromanak.loadoutoptimizer.service;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import com.mromanak.loadoutoptimizer.impl.DominanceFilter;
 import com.mromanak.loadoutoptimizer.impl.LoadoutOptimizer;
+import com.mromanak.loadoutoptimizer.impl.OptimizerOptions;
+import com.mromanak.loadoutoptimizer.impl.SearchBudget;
+import com.mromanak.loadoutoptimizer.impl.SearchStatistics;
+import com.mromanak.loadoutoptimizer.impl.SearchStatistics.Phase;
+import com.mromanak.loadoutoptimizer.impl.SetBonusRequirements;
+import com.mromanak.loadoutoptimizer.impl.SetBonusStrategy;
 import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.OptimizationResult;
 import com.mromanak.loadoutoptimizer.model.api.LoadoutRequest;
+import com.mromanak.loadoutoptimizer.model.exception.BadRepositoryApiRequestException;
 import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
 import com.mromanak.loadoutoptimizer.model.jpa.Rank;
 import com.mromanak.loadoutoptimizer.scoring.DecorationSlotScoringFunction;
@@ -12,22 +28,77 @@ import com.mromanak.loadoutoptimizer.scoring.ScoringPerformanceMode;
 import com.mromanak.loadoutoptimizer.scoring.SkillScoringFunction;
 import com.mromanak.loadoutoptimizer.scoring.SkillScoringFunction.SkillWeight;
 import com.mromanak.loadoutoptimizer.selection.ArmorSelector;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 @Service
 public class LoadoutOptimizerService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadoutOptimizerService.class);
+
+    // How often a request that is waiting on an equivalent search checks whether it has been cancelled
+    private static final long AWAIT_POLL_MILLIS = 100;
+
     private final ArmorPieceService armorPieceService;
     private final SetBonusService setBonusService;
+    private final int solutionCacheMaxEntries;
+    private final boolean sharedSolutionCache;
+    private final long maxTimeoutMillis;
+    private final int batchMaxRequests;
+    private final CatalogVersion catalogVersion;
+    private final OptimizerMetrics metrics;
+    private final ForkJoinPool searchPool;
+    private final Cache<ResultCacheKey, OptimizationResult> resultCache;
+    private final Map<ResultCacheKey, Flight> inFlight = new ConcurrentHashMap<>();
 
     @Autowired
-    public LoadoutOptimizerService(ArmorPieceService armorPieceService, SetBonusService setBonusService) {
+    public LoadoutOptimizerService(ArmorPieceService armorPieceService, SetBonusService setBonusService,
+            CatalogVersion catalogVersion, OptimizerMetrics metrics, ForkJoinPool loadoutSearchPool,
+            @Value("${com.mromanak.optimizer.solutionCacheMaxEntries:" + OptimizerOptions.DEFAULT_SOLUTION_CACHE_MAX_ENTRIES + "}") int solutionCacheMaxEntries,
+            @Value("${com.mromanak.optimizer.sharedSolutionCache:true}") boolean sharedSolutionCache,
+            @Value("${com.mromanak.optimizer.maxTimeoutMillis:0}") long maxTimeoutMillis,
+            @Value("${com.mromanak.optimizer.batchMaxRequests:100}") int batchMaxRequests,
+            @Value("${com.mromanak.optimizer.resultCache.maxEntries:1000}") long resultCacheMaxEntries,
+            @Value("${com.mromanak.optimizer.resultCache.ttlSeconds:3600}") long resultCacheTtlSeconds) {
         this.armorPieceService = armorPieceService;
         this.setBonusService = setBonusService;
+        this.solutionCacheMaxEntries = solutionCacheMaxEntries;
+        this.sharedSolutionCache = sharedSolutionCache;
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        this.batchMaxRequests = batchMaxRequests;
+        this.catalogVersion = catalogVersion;
+        this.metrics = metrics;
+        this.searchPool = loadoutSearchPool;
+        this.resultCache = CacheBuilder.newBuilder().
+                maximumSize(resultCacheMaxEntries).
+                expireAfterWrite(resultCacheTtlSeconds, TimeUnit.SECONDS).
+                recordStats().
+                build();
+        metrics.monitor(resultCache, "results");
     }
 
     public LoadoutRequest getSampleRequest() {
@@ -54,26 +125,441 @@ public class LoadoutOptimizerService {
                 build();
     }
 
-    public List<Loadout> optimize(LoadoutRequest loadoutRequest) {
+    public OptimizationResult optimize(LoadoutRequest loadoutRequest) {
+        // The budget starts before the armor pieces are fetched, so that it bounds the whole request
+        return optimize(loadoutRequest, searchBudgetFor(loadoutRequest));
+    }
+
+    /**
+     * Returns the cached result for an equivalent request if there is one, unless the request asks to have its search
+     * explained. Otherwise, if an equivalent request is
+     * already being searched and will stop no later than this one must, waits for and shares its result. Otherwise
+     * runs the search, and caches its result if it finished.
+     *
+     * @param budget Limits how long the search may run and lets other threads cancel it and watch its progress
+     */
+    public OptimizationResult optimize(LoadoutRequest loadoutRequest, SearchBudget budget) {
+        ResultCacheKey cacheKey = resultCacheKeyFor(loadoutRequest);
+        if(loadoutRequest.isExplain()) {
+            return optimizeWithoutCoalescing(cacheKey, loadoutRequest, budget);
+        }
+
+        OptimizationResult cachedResult = getCachedResult(cacheKey);
+        if(cachedResult != null) {
+            return cachedResult;
+        }
+
+        Flight newFlight = new Flight(budget);
+        Flight flight = inFlight.putIfAbsent(cacheKey, newFlight);
+        if(flight == null) {
+            try {
+                OptimizationResult result = optimizeWithoutCoalescing(cacheKey, loadoutRequest, budget);
+                newFlight.getResult().complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                newFlight.getResult().completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(cacheKey, newFlight);
+            }
+        }
+
+        // Waiting on a search that may run for longer than this request may would make this request late
+        if(flight.getBudget().getRemainingMillis() > budget.getRemainingMillis()) {
+            return optimizeWithoutCoalescing(cacheKey, loadoutRequest, budget);
+        }
+
+        LOGGER.debug("Waiting for an equivalent search that is already running");
+        OptimizationResult sharedResult = await(flight, budget);
+        if(sharedResult == null) {
+            // This request was cancelled before the search that it was waiting on finished, so it has found nothing
+            return new OptimizationResult(ImmutableList.of(), false, 0.0, budget.getStatistics());
+        } else if(sharedResult.isComplete() || budget.isCancelled() || budget.getRemainingMillis() < 1) {
+            return sharedResult;
+        }
+
+        // The shared search ran out of time or was cancelled, but this request may still do better on its own
+        return optimizeWithoutCoalescing(cacheKey, loadoutRequest, budget);
+    }
+
+    private OptimizationResult optimizeWithoutCoalescing(ResultCacheKey cacheKey, LoadoutRequest loadoutRequest,
+            SearchBudget budget) {
+        List<Loadout> loadouts = searchWithoutCache(loadoutRequest, budget).collect(toList());
+        return cacheIfComplete(cacheKey, resultOf(loadouts, budget));
+    }
+
+    /**
+     * @return The result of the flight, or null if {@code budget} was cancelled first. If the flight failed, throws
+     * what it threw, since an equivalent request would fail the same way.
+     */
+    private static OptimizationResult await(Flight flight, SearchBudget budget) {
+        while(true) {
+            if(budget.isCancelled()) {
+                return null;
+            }
+
+            try {
+                return flight.getResult().get(AWAIT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Check for cancellation, then keep waiting
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for an equivalent search", e);
+            } catch (ExecutionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new IllegalStateException("An equivalent search failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Runs the search, then returns a stream that builds each of the best loadouts as it is read. Once this method
+     * returns, {@code budget} reports whether the search finished and what it did. Serves cached results unless the
+     * request asks to have its search explained, but never caches its own, since that would mean building every
+     * loadout up front.
+     */
+    public Stream<Loadout> streamOptimizedLoadouts(LoadoutRequest loadoutRequest, SearchBudget budget) {
+        if(!loadoutRequest.isExplain()) {
+            OptimizationResult cachedResult = getCachedResult(resultCacheKeyFor(loadoutRequest));
+            if(cachedResult != null) {
+                return cachedResult.getLoadouts().stream();
+            }
+        }
+        return searchWithoutCache(loadoutRequest, budget);
+    }
+
+    /**
+     * @return The hit rate and other statistics of the cache of finished results
+     */
+    public CacheStats getResultCacheStats() {
+        return resultCache.stats();
+    }
+
+    private Stream<Loadout> searchWithoutCache(LoadoutRequest loadoutRequest, SearchBudget budget) {
+        Set<String> desiredSkills = loadoutRequest.getSkillScoringFunction().getSkills();
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Set<ThinArmorPiece> candidateArmorPieces = armorPieceService.getArmorPiecesWithSkillsAndRank(desiredSkills,
+                loadoutRequest.getRank(), loadoutRequest.getCompositeSelector());
+        long fetchNanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+        metrics.recordFetch(fetchNanos);
+        budget.getStatistics().addPhaseNanos(Phase.FETCH, fetchNanos);
+        return search(prepareSearch(loadoutRequest, candidateArmorPieces, budget.getStatistics()), budget);
+    }
+
+    /**
+     * Finds the best loadouts for each of several requests. The armor pieces that any of the requests may use are
+     * fetched once per rank, and requests that differ only in how many threads they may use or how long they may run
+     * are searched once, for as long as the most patient of them allows. Requests with cached results are not searched
+     * at all, unless one of them asks to have its search explained. The searches run in parallel.
+     *
+     * @return The results, in the same order as the requests
+     */
+    public List<OptimizationResult> optimizeAll(List<LoadoutRequest> loadoutRequests) {
+        Objects.requireNonNull(loadoutRequests, "loadoutRequests must be non-null");
+        if(loadoutRequests.size() > batchMaxRequests) {
+            throw new BadRepositoryApiRequestException("A batch may hold at most " + batchMaxRequests +
+                    " requests, but this one holds " + loadoutRequests.size());
+        }
+
+        Map<LoadoutSearchKey, List<LoadoutRequest>> requestGroups = loadoutRequests.stream().
+                collect(groupingBy(LoadoutSearchKey::of, LinkedHashMap::new, toList()));
+        Map<LoadoutSearchKey, OptimizationResult> results = new ConcurrentHashMap<>();
+        long version = catalogVersion.get();
+        requestGroups.entrySet().removeIf(entry -> {
+            if(entry.getValue().stream().anyMatch(LoadoutRequest::isExplain)) {
+                return false;
+            }
+
+            LoadoutSearchKey key = entry.getKey();
+            OptimizationResult cachedResult = getCachedResult(new ResultCacheKey(key, version));
+            if(cachedResult != null) {
+                results.put(key, cachedResult);
+            }
+            return cachedResult != null;
+        });
+
+        // As for a single request, each budget starts before the armor pieces are fetched
+        Map<LoadoutSearchKey, SearchBudget> budgets = new HashMap<>();
+        requestGroups.forEach((key, requests) -> budgets.put(key, searchBudgetFor(requests)));
+
+        Map<Rank, Set<String>> desiredSkillsByRank = new EnumMap<>(Rank.class);
+        for(LoadoutRequest loadoutRequest : Iterables.concat(requestGroups.values())) {
+            desiredSkillsByRank.computeIfAbsent(loadoutRequest.getRank(), rank -> new HashSet<>()).
+                    addAll(loadoutRequest.getSkillScoringFunction().getSkills());
+        }
+        Map<Rank, Set<ThinArmorPiece>> armorPiecesByRank = new EnumMap<>(Rank.class);
+        Map<Rank, Long> fetchNanosByRank = new EnumMap<>(Rank.class);
+        desiredSkillsByRank.forEach((rank, desiredSkills) -> {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            armorPiecesByRank.put(rank, armorPieceService.getArmorPiecesWithSkillsAndRank(desiredSkills, rank));
+            fetchNanosByRank.put(rank, stopwatch.elapsed(TimeUnit.NANOSECONDS));
+            metrics.recordFetch(fetchNanosByRank.get(rank));
+        });
+
+        // Everything that the searches read from the armor catalog is read here, on the calling thread
+        Map<LoadoutSearchKey, PreparedSearch> searches = new LinkedHashMap<>();
+        requestGroups.forEach((key, requests) -> {
+            LoadoutRequest loadoutRequest = requests.get(0);
+            Set<String> desiredSkills = loadoutRequest.getSkillScoringFunction().getSkills();
+            ArmorSelector selector = loadoutRequest.getCompositeSelector();
+            Set<ThinArmorPiece> candidateArmorPieces = armorPiecesByRank.get(loadoutRequest.getRank()).
+                    stream().
+                    filter(armorPiece -> hasAnySkill(armorPiece, desiredSkills)).
+                    filter(selector).
+                    collect(toSet());
+            // Each search is charged for the whole fetch that it shared
+            SearchStatistics statistics = budgets.get(key).getStatistics();
+            statistics.addPhaseNanos(Phase.FETCH, fetchNanosByRank.get(loadoutRequest.getRank()));
+            PreparedSearch search = prepareSearch(loadoutRequest, candidateArmorPieces, statistics);
+            // Each search gets a single thread, since the batch already keeps every processor busy
+            if(requestGroups.size() > 1) {
+                search = search.withParallelism(1);
+            }
+            searches.put(key, search);
+        });
+
+        if(searches.isEmpty()) {
+            return resultsInOrder(loadoutRequests, results);
+        }
+
+        try {
+            searchPool.submit(() -> searches.entrySet().
+                    parallelStream().
+                    forEach(entry -> {
+                        SearchBudget budget = budgets.get(entry.getKey());
+                        List<Loadout> loadouts = search(entry.getValue(), budget).collect(toList());
+                        OptimizationResult result = resultOf(loadouts, budget);
+                        results.put(entry.getKey(), cacheIfComplete(new ResultCacheKey(entry.getKey(), version), result));
+                    })).
+                    get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            budgets.values().forEach(SearchBudget::cancel);
+            throw new IllegalStateException("Interrupted while waiting for a batch of searches", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("A search in the batch failed", e.getCause());
+        }
+        LOGGER.debug("Ran {} searches for a batch of {} requests", searches.size(), loadoutRequests.size());
+        return resultsInOrder(loadoutRequests, results);
+    }
+
+    private static List<OptimizationResult> resultsInOrder(List<LoadoutRequest> loadoutRequests,
+            Map<LoadoutSearchKey, OptimizationResult> results) {
+        return loadoutRequests.stream().
+                map(loadoutRequest -> results.get(LoadoutSearchKey.of(loadoutRequest))).
+                collect(toList());
+    }
+
+    // The version is read before any armor pieces are, so that a result is never cached under a newer version than
+    // the data that it came from
+    private ResultCacheKey resultCacheKeyFor(LoadoutRequest loadoutRequest) {
+        return new ResultCacheKey(LoadoutSearchKey.of(loadoutRequest), catalogVersion.get());
+    }
+
+    private OptimizationResult getCachedResult(ResultCacheKey cacheKey) {
+        OptimizationResult cachedResult = resultCache.getIfPresent(cacheKey);
+        if(LOGGER.isDebugEnabled()) {
+            CacheStats stats = resultCache.stats();
+            LOGGER.debug("Result cache {}; {} hits and {} misses so far", (cachedResult == null) ? "missed" : "hit",
+                    stats.hitCount(), stats.missCount());
+        }
+        return cachedResult;
+    }
+
+    // Results of searches that ran out of time are left out, since a later search might do better
+    private OptimizationResult cacheIfComplete(ResultCacheKey cacheKey, OptimizationResult result) {
+        if(!result.isComplete()) {
+            return result;
+        }
+
+        OptimizationResult cachedResult = new OptimizationResult(ImmutableList.copyOf(result.getLoadouts()), true,
+                result.getProgress(), result.getStatistics());
+        resultCache.put(cacheKey, cachedResult);
+        return cachedResult;
+    }
+
+    private PreparedSearch prepareSearch(LoadoutRequest loadoutRequest, Set<ThinArmorPiece> candidateArmorPieces,
+            SearchStatistics statistics) {
         ArmorSelector selector = loadoutRequest.getCompositeSelector();
         LoadoutScoringFunction scoringFunction = loadoutRequest.getCompositeScoringFunction();
-        Set<String> desiredSkills = loadoutRequest.getSkillScoringFunction().getSkills();
 
         Rank rank = loadoutRequest.getRank();
-        Set<ThinArmorPiece> armorPieces = armorPieceService.getArmorPiecesWithSkillsAndRank(desiredSkills, rank, selector);
+        boolean countsSetBonuses = !loadoutRequest.getSetBonuses().isEmpty() &&
+                loadoutRequest.getSetBonusStrategy() == SetBonusStrategy.SEARCH_STATE;
+        SetBonusRequirements setBonusRequirements = null;
+        if(!loadoutRequest.getSetBonuses().isEmpty()) {
+            // A set bonus piece can complete a loadout even if it has none of the desired skills, so every one the
+            // selector allows is a candidate, whether the search picks them itself or extends the starting loadouts
+            Set<ThinArmorPiece> setBonusArmorPieces = setBonusService.
+                    getArmorPiecesForSetBonuses(loadoutRequest.getSetBonuses(), rank).
+                    stream().
+                    filter(selector).
+                    collect(toSet());
+            if(countsSetBonuses) {
+                setBonusRequirements = setBonusService.getSetBonusRequirementsFor(loadoutRequest.getSetBonuses(), rank);
+                if(!canMeet(setBonusRequirements, setBonusArmorPieces)) {
+                    throw noLoadoutGrants(loadoutRequest.getSetBonuses());
+                }
+            }
+            candidateArmorPieces = Sets.union(candidateArmorPieces, setBonusArmorPieces).immutableCopy();
+        }
 
-        List<Loadout> loadouts;
-        if(loadoutRequest.getSetBonuses().isEmpty()) {
-            loadouts = LoadoutOptimizer.findBestLoadouts(armorPieces, scoringFunction);
-        } else {
-            List<Loadout> startingLoadouts = setBonusService.generateStartingLoadoutsFor(loadoutRequest.getSetBonuses(), rank, selector);
+        Set<String> setBonusArmorPieceIds = setBonusService.getArmorPieceIdsForSetBonuses(loadoutRequest.getSetBonuses(), rank);
+        // The K best loadouts may hold a dominated piece, so a top-K search only removes pieces that K others dominate
+        DominanceFilter.Result filterResult = DominanceFilter.filter(candidateArmorPieces, scoringFunction,
+                setBonusArmorPieceIds, Math.max(loadoutRequest.getMaxResults(), 1));
+        LOGGER.debug("Removed {} of {} candidate armor pieces that could not improve on another candidate",
+                filterResult.getRemovedCount(), candidateArmorPieces.size());
+        metrics.recordCandidates(filterResult.getArmorPieces());
+        statistics.recordCandidates(candidateArmorPieces, filterResult.getArmorPieces());
+
+        List<Loadout> startingLoadouts = null;
+        if(!loadoutRequest.getSetBonuses().isEmpty() && !countsSetBonuses) {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            startingLoadouts = setBonusService.generateStartingLoadoutsFor(loadoutRequest.getSetBonuses(), rank, selector);
+            long startingLoadoutsNanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+            metrics.recordStartingLoadouts(startingLoadoutsNanos, startingLoadouts.size());
+            statistics.addPhaseNanos(Phase.STARTING_LOADOUTS, startingLoadoutsNanos);
+            statistics.recordStartingLoadoutCount(startingLoadouts.size());
             if (startingLoadouts.isEmpty()) {
-                String bonusNamesString = String.join(", ", loadoutRequest.getSetBonuses());
-                throw new IllegalArgumentException("Could not find a loadout with the given selection criteria that granted all of the following set bonus skills: " + bonusNamesString);
+                throw noLoadoutGrants(loadoutRequest.getSetBonuses());
             }
+        }
+
+        return new PreparedSearch(filterResult.getArmorPieces(), startingLoadouts, setBonusRequirements,
+                scoringFunction, optimizerOptionsFor(loadoutRequest));
+    }
 
-            loadouts = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces, scoringFunction);
+    // Checks each set bonus skill on its own, so a search may still find that no loadout grants them all at once
+    private static boolean canMeet(SetBonusRequirements setBonusRequirements, Set<ThinArmorPiece> setBonusArmorPieces) {
+        // Indexed by set bonus ordinal. A bit mask of the ordinals of the armor types that have any pieces.
+        int[] armorTypes = new int[setBonusRequirements.getSetBonusCount()];
+        for(ThinArmorPiece armorPiece : setBonusArmorPieces) {
+            int ordinal = setBonusRequirements.setBonusOrdinalOf(armorPiece);
+            if(ordinal >= 0) {
+                armorTypes[ordinal] |= 1 << armorPiece.getArmorType().ordinal();
+            }
+        }
+        int[] availablePieces = new int[armorTypes.length];
+        for(int i = 0; i < armorTypes.length; i++) {
+            availablePieces[i] = Integer.bitCount(armorTypes[i]);
+        }
+        return setBonusRequirements.canBeMetWith(new int[availablePieces.length], availablePieces);
+    }
+
+    private static IllegalArgumentException noLoadoutGrants(List<String> bonusNames) {
+        String bonusNamesString = String.join(", ", bonusNames);
+        return new IllegalArgumentException("Could not find a loadout with the given selection criteria that granted all of the following set bonus skills: " + bonusNamesString);
+    }
+
+    private Stream<Loadout> search(PreparedSearch search, SearchBudget budget) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Stream<Loadout> loadouts;
+        if(search.getSetBonusRequirements() != null) {
+            loadouts = LoadoutOptimizer.streamBestLoadoutsWithSetBonuses(search.getArmorPieces(),
+                    search.getSetBonusRequirements(), search.getScoringFunction(), search.getOptions(), budget);
+        } else if(search.getStartingLoadouts() == null) {
+            loadouts = LoadoutOptimizer.streamBestLoadouts(search.getArmorPieces(), search.getScoringFunction(),
+                    search.getOptions(), budget);
+        } else {
+            loadouts = LoadoutOptimizer.streamBestLoadoutsGiven(search.getStartingLoadouts(), search.getArmorPieces(),
+                    search.getScoringFunction(), search.getOptions(), budget);
+        }
+        long searchNanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+        metrics.recordSearch(search.getOptions().getEngine(), budget, searchNanos);
+        budget.getStatistics().addPhaseNanos(Phase.SEARCH, searchNanos);
+
+        if(!budget.isComplete()) {
+            LOGGER.info("Search ran out of time after covering {}% of the search space",
+                    String.format("%.1f", 100 * budget.getProgress()));
         }
         return loadouts;
     }
+
+    private static boolean hasAnySkill(ThinArmorPiece armorPiece, Set<String> skillNames) {
+        return armorPiece.getSkills().
+                stream().
+                anyMatch(skill -> skillNames.contains(skill.getSkill().getName()));
+    }
+
+    private static OptimizationResult resultOf(List<Loadout> loadouts, SearchBudget budget) {
+        double progress = budget.isComplete() ? 1.0 : budget.getProgress();
+        return new OptimizationResult(loadouts, budget.isComplete(), progress, budget.getStatistics());
+    }
+
+    /**
+     * @return A budget that starts now and lasts as long as the request allows
+     */
+    public SearchBudget searchBudgetFor(LoadoutRequest loadoutRequest) {
+        return searchBudgetFor(ImmutableList.of(loadoutRequest));
+    }
+
+    /**
+     * @return A budget that starts now and lasts as long as the most patient of the requests allows
+     */
+    private SearchBudget searchBudgetFor(List<LoadoutRequest> loadoutRequests) {
+        long timeoutMillis = 0;
+        for(LoadoutRequest loadoutRequest : loadoutRequests) {
+            long requestTimeoutMillis = loadoutRequest.getTimeoutMillis();
+            if(maxTimeoutMillis > 0 && (requestTimeoutMillis < 1 || requestTimeoutMillis > maxTimeoutMillis)) {
+                requestTimeoutMillis = maxTimeoutMillis;
+            }
+            if(requestTimeoutMillis < 1) {
+                return SearchBudget.unlimited();
+            }
+            timeoutMillis = Math.max(timeoutMillis, requestTimeoutMillis);
+        }
+        return SearchBudget.withTimeout(timeoutMillis);
+    }
+
+    private OptimizerOptions optimizerOptionsFor(LoadoutRequest loadoutRequest) {
+        // A request searches on a single thread unless it asks for more
+        int parallelism = Math.max(Math.min(loadoutRequest.getMaxParallelism(), searchPool.getParallelism()), 1);
+        return OptimizerOptions.builder().
+                withParallelism(parallelism).
+                withPool(searchPool).
+                withMaxResults(Math.max(loadoutRequest.getMaxResults(), 0)).
+                withEngine(loadoutRequest.getEngine()).
+                withSolutionCacheMaxEntries(solutionCacheMaxEntries).
+                withSharedSolutionCache(sharedSolutionCache).
+                build();
+    }
+
+    // A search that is running for one request, which equivalent requests may wait on rather than search themselves
+    @Data
+    private static class Flight {
+        private final SearchBudget budget;
+        private final CompletableFuture<OptimizationResult> result = new CompletableFuture<>();
+    }
+
+    @Data
+    private static class ResultCacheKey {
+        private final LoadoutSearchKey searchKey;
+        private final long catalogVersion;
+    }
+
+    // Everything that a search needs from the armor catalog, read up front. It holds only detached Thin* data, so the
+    // search itself needs no transaction or database connection.
+    @Data
+    private static class PreparedSearch {
+        private final Set<ThinArmorPiece> armorPieces;
+
+        // Null unless the request asked for set bonuses, with the starting loadouts strategy
+        private final List<Loadout> startingLoadouts;
+
+        // Null unless the request asked for set bonuses, with the search state strategy
+        private final SetBonusRequirements setBonusRequirements;
+
+        private final LoadoutScoringFunction scoringFunction;
+        private final OptimizerOptions options;
+
+        PreparedSearch withParallelism(int parallelism) {
+            OptimizerOptions newOptions = OptimizerOptions.builder(options).
+                    withParallelism(parallelism).
+                    build();
+            return new PreparedSearch(armorPieces, startingLoadouts, setBonusRequirements, scoringFunction,
+                    newOptions);
+        }
+    }
 }
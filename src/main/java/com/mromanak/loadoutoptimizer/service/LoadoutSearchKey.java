@@ -0,0 +1,90 @@
+package com.mromanak.loadoutoptimizer.service;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
+import com.mromanak.loadoutoptimizer.impl.OptimizerEngine;
+import com.mromanak.loadoutoptimizer.impl.SetBonusStrategy;
+import com.mromanak.loadoutoptimizer.model.api.LoadoutRequest;
+import com.mromanak.loadoutoptimizer.model.jpa.Rank;
+import com.mromanak.loadoutoptimizer.scoring.DecorationSlotScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.DefenseScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.ScoringPerformanceMode;
+import com.mromanak.loadoutoptimizer.scoring.SizeScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.SkillScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.SkillScoringFunction.SkillWeight;
+import com.mromanak.loadoutoptimizer.selection.ArmorNameSelector;
+import com.mromanak.loadoutoptimizer.selection.ArmorSetSelector;
+import com.mromanak.loadoutoptimizer.selection.ArmorTypeSelector;
+import com.mromanak.loadoutoptimizer.selection.SelectorMode;
+import lombok.Data;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.util.Comparator.comparing;
+
+/**
+ * The parts of a {@link LoadoutRequest} that decide which loadouts its search returns, in a canonical form. Requests
+ * with equal keys return the same loadouts, however many threads they may use, however long they may run and
+ * whatever order they list their skill weights, set bonuses or armor name patterns in.
+ */
+@Data
+class LoadoutSearchKey {
+
+    private static final Comparator<SkillWeight> SKILL_WEIGHT_ORDER = comparing(SkillWeight::getName).
+            thenComparingInt(SkillWeight::getMaximum).
+            thenComparingDouble(SkillWeight::getWeight);
+
+    private final Rank rank;
+    private final List<String> setBonuses;
+    private final SetBonusStrategy setBonusStrategy;
+    private final ArmorTypeSelector armorTypeSelector;
+    private final ArmorSetSelector armorSetSelector;
+
+    // Patterns do not compare by value, so the name selector is kept as the flags and source of each pattern
+    private final Set<String> armorNamePatterns;
+    private final SelectorMode armorNameSelectorMode;
+
+    private final List<SkillWeight> skillWeights;
+    private final ScoringPerformanceMode skillPerformanceMode;
+    private final DefenseScoringFunction defenseScoringFunction;
+    private final DecorationSlotScoringFunction decorationSlotScoringFunction;
+    private final SizeScoringFunction sizeScoringFunction;
+    private final int maxResults;
+    private final OptimizerEngine engine;
+
+    static LoadoutSearchKey of(LoadoutRequest loadoutRequest) {
+        Objects.requireNonNull(loadoutRequest, "loadoutRequest must be non-null");
+
+        ArmorNameSelector armorNameSelector = loadoutRequest.getArmorNameSelector();
+        Set<String> armorNamePatterns = null;
+        SelectorMode armorNameSelectorMode = null;
+        if(armorNameSelector != null) {
+            armorNamePatterns = armorNameSelector.getPatterns().
+                    stream().
+                    map(pattern -> pattern.flags() + "/" + pattern.pattern()).
+                    collect(ImmutableSortedSet.toImmutableSortedSet(Ordering.natural()));
+            armorNameSelectorMode = armorNameSelector.getMode();
+        }
+
+        SkillScoringFunction skillScoringFunction = loadoutRequest.getSkillScoringFunction();
+        return new LoadoutSearchKey(
+                loadoutRequest.getRank(),
+                Ordering.natural().sortedCopy(loadoutRequest.getSetBonuses()),
+                loadoutRequest.getSetBonusStrategy(),
+                loadoutRequest.getArmorTypeSelector(),
+                loadoutRequest.getArmorSetSelector(),
+                armorNamePatterns,
+                armorNameSelectorMode,
+                Ordering.from(SKILL_WEIGHT_ORDER).immutableSortedCopy(skillScoringFunction.getSkillWeights()),
+                skillScoringFunction.getPerformanceMode(),
+                loadoutRequest.getDefenseScoringFunction(),
+                loadoutRequest.getDecorationSlotScoringFunction(),
+                loadoutRequest.getSizeScoringFunction(),
+                Math.max(loadoutRequest.getMaxResults(), 0),
+                loadoutRequest.getEngine()
+        );
+    }
+}
@@ -0,0 +1,135 @@
+package com.mromanak.loadoutoptimizer.service;
+
+import com.google.common.cache.Cache;
+import com.mromanak.loadoutoptimizer.impl.OptimizerEngine;
+import com.mromanak.loadoutoptimizer.impl.SearchBudget;
+import com.mromanak.loadoutoptimizer.impl.SearchStatistics;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Where the time and work of each optimization request goes, from fetching the candidate armor pieces to mapping the
+ * best loadouts to responses. Published through Micrometer, and so through the actuator's metrics and Prometheus
+ * endpoints.
+ */
+@Component
+public class OptimizerMetrics {
+
+    private static final String PREFIX = "loadout.optimizer.";
+
+    private final MeterRegistry registry;
+    private final Timer fetchTimer;
+    private final Timer startingLoadoutsTimer;
+    private final Timer mappingTimer;
+    private final DistributionSummary startingLoadoutCounts;
+    private final Map<ArmorType, DistributionSummary> candidateCounts = new EnumMap<>(ArmorType.class);
+    private final Counter nodesExpanded;
+    private final Counter nodesPruned;
+    private final Counter memoHits;
+    private final Counter memoMisses;
+    private final DistributionSummary memoEntries;
+
+    @Autowired
+    public OptimizerMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.fetchTimer = Timer.builder(PREFIX + "fetch").
+                description("Time spent fetching the candidate armor pieces for a request or batch").
+                register(registry);
+        this.startingLoadoutsTimer = Timer.builder(PREFIX + "starting.loadouts").
+                description("Time spent generating the starting loadouts that grant a request's set bonuses").
+                register(registry);
+        this.mappingTimer = Timer.builder(PREFIX + "mapping").
+                description("Time spent mapping the best loadouts of a request to responses").
+                register(registry);
+        this.startingLoadoutCounts = DistributionSummary.builder(PREFIX + "starting.loadouts.count").
+                description("Starting loadouts searched from per request with set bonuses").
+                register(registry);
+        for(ArmorType armorType : ArmorType.values()) {
+            candidateCounts.put(armorType, DistributionSummary.builder(PREFIX + "candidates").
+                    description("Candidate armor pieces per request, after dominated pieces are removed").
+                    tag("armorType", armorType.name()).
+                    register(registry));
+        }
+        this.nodesExpanded = Counter.builder(PREFIX + "nodes.expanded").
+                description("Search nodes that were branched on").
+                register(registry);
+        this.nodesPruned = Counter.builder(PREFIX + "nodes.pruned").
+                description("Search nodes that were skipped because they could not beat the best loadouts found").
+                register(registry);
+        this.memoHits = Counter.builder(PREFIX + "memo.hits").
+                description("Search nodes answered from a solution cache").
+                register(registry);
+        this.memoMisses = Counter.builder(PREFIX + "memo.misses").
+                description("Search nodes that missed a solution cache").
+                register(registry);
+        this.memoEntries = DistributionSummary.builder(PREFIX + "memo.entries").
+                description("Solution cache entries held when a search finished").
+                register(registry);
+    }
+
+    public void recordFetch(long nanos) {
+        fetchTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStartingLoadouts(long nanos, int count) {
+        startingLoadoutsTimer.record(nanos, TimeUnit.NANOSECONDS);
+        startingLoadoutCounts.record(count);
+    }
+
+    public <T> T timeMapping(Supplier<T> map) {
+        return mappingTimer.record(map);
+    }
+
+    /**
+     * Records how long a search took and the work that it did. The search must be the only one to have used
+     * {@code budget}.
+     */
+    public void recordSearch(OptimizerEngine engine, SearchBudget budget, long nanos) {
+        Timer.builder(PREFIX + "search").
+                description("Time spent searching for the best loadouts of a request").
+                tag("engine", engine.name()).
+                tag("complete", String.valueOf(budget.isComplete())).
+                register(registry).
+                record(nanos, TimeUnit.NANOSECONDS);
+
+        SearchStatistics statistics = budget.getStatistics();
+        nodesExpanded.increment(statistics.getNodesExpanded());
+        nodesPruned.increment(statistics.getNodesPruned());
+        memoHits.increment(statistics.getMemoHits());
+        memoMisses.increment(statistics.getMemoMisses());
+        if(engine == OptimizerEngine.RECURSIVE) {
+            memoEntries.record(statistics.getMemoEntries());
+        }
+    }
+
+    public void recordCandidates(Collection<ThinArmorPiece> armorPieces) {
+        Map<ArmorType, Integer> counts = new EnumMap<>(ArmorType.class);
+        for(ArmorType armorType : ArmorType.values()) {
+            counts.put(armorType, 0);
+        }
+        for(ThinArmorPiece armorPiece : armorPieces) {
+            counts.merge(armorPiece.getArmorType(), 1, Integer::sum);
+        }
+        counts.forEach((armorType, count) -> candidateCounts.get(armorType).record(count));
+    }
+
+    /**
+     * Publishes the hit rate, size and evictions of a cache, which must have been built to record its stats
+     */
+    public void monitor(Cache<?, ?> cache, String name) {
+        GuavaCacheMetrics.monitor(registry, cache, PREFIX + name);
+    }
+}
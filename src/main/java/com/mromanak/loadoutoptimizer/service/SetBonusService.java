@@ -1,159 +1,253 @@
 package com.mromanak.loadoutoptimizer.service;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.mromanak.loadoutoptimizer.impl.SetBonusRequirements;
 import com.mromanak.loadoutoptimizer.model.Loadout;
 import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
 import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinSetBonusSkill;
 import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
 import com.mromanak.loadoutoptimizer.model.jpa.Rank;
-import com.mromanak.loadoutoptimizer.model.jpa.SetBonusSkill;
-import com.mromanak.loadoutoptimizer.repository.SetBonusRepository;
 import com.mromanak.loadoutoptimizer.selection.ArmorSelector;
+import lombok.Data;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.function.Consumer;
 
-import static com.mromanak.loadoutoptimizer.model.jpa.ArmorType.hasNextArmorType;
-import static com.mromanak.loadoutoptimizer.model.jpa.ArmorType.nextArmorType;
-import static java.util.Collections.emptyList;
 import static java.util.stream.Collectors.*;
 
 @Service
 public class SetBonusService {
 
-    private final SetBonusRepository setBonusRepository;
+    private static final ArmorType[] ARMOR_TYPES = ArmorType.values();
 
-    public SetBonusService(SetBonusRepository setBonusRepository) {
-        this.setBonusRepository = setBonusRepository;
+    private final ArmorCatalog armorCatalog;
+
+    public SetBonusService(ArmorCatalog armorCatalog) {
+        this.armorCatalog = armorCatalog;
     }
 
     public Set<ThinSetBonusSkill> getSetBonusSkillsForRank(String skillName, Rank rank) {
+        return armorCatalog.getSetBonusSkills(skillName, rank);
+    }
 
-        return ImmutableSet.copyOf(setBonusRepository.eagerFindBySkillName(skillName).stream().
-            map((SetBonusSkill sbsk) -> {
-                sbsk.getSetBonus().getArmorPieces().
-                    removeIf((ap) -> ap.getSetType().getRank() != rank);
-                return new ThinSetBonusSkill(sbsk);
-            }).
-            collect(toSet())
-        );
+    public Set<String> getArmorPieceIdsForSetBonuses(List<String> bonusNames, Rank rank) {
+        return ImmutableSet.copyOf(getArmorPiecesForSetBonuses(bonusNames, rank).stream().
+            map(ThinArmorPiece::getId).
+            collect(toSet()));
     }
 
+    /**
+     * @return Every piece of every set bonus that provides any of the given set bonus skills
+     */
+    public Set<ThinArmorPiece> getArmorPiecesForSetBonuses(List<String> bonusNames, Rank rank) {
+        Objects.requireNonNull(bonusNames, "bonusNames must be non-null");
+        Objects.requireNonNull(rank, "rank must be non-null");
+
+        Set<String> allBonusNames = new HashSet<>(bonusNames);
+        if (bonusNames.stream().anyMatch(bn -> StringUtils.endsWith(bn, " Secret"))) {
+            allBonusNames.add("Inheritance");
+        }
+        return ImmutableSet.copyOf(allBonusNames.stream().
+            flatMap(bonusName -> getSetBonusSkillsForRank(bonusName, rank).stream()).
+            flatMap(setBonusSkill -> setBonusSkill.getSetBonus().getArmorPieces().stream()).
+            collect(toSet()));
+    }
+
+    /**
+     * @return Every loadout that combines exactly the required pieces of one set bonus for each of the given set bonus
+     * skills, with no two pieces of the same armor type, and no loadout twice. The optimizer fills the remaining armor
+     * types itself, so larger combinations would only repeat its work.
+     */
     public List<Loadout> generateStartingLoadoutsFor(List<String> bonusNames, Rank rank, ArmorSelector armorSelector) {
         Objects.requireNonNull(bonusNames, "bonusNames must be non-null");
         Objects.requireNonNull(rank, "rank must be non-null");
 
-        // TODO Detect when one set bonus can provide more than one requested set bonus skill
-        List<Loadout> mergedLoadouts;
+        // TODO Detect when one set bonus can provide more than one requested set bonus skill. This only applies to the
+        // Starting Loadouts strategy: the Search State strategy counts the pieces of each set bonus once, however many
+        // of the requested skills it provides.
         if (bonusNames.isEmpty()) {
             throw new IllegalArgumentException("bonusNames must be non-empty");
-        } else if (bonusNames.size() == 1) {
-            mergedLoadouts = generateStartingLoadoutsFor(bonusNames.get(0), rank, armorSelector);
         } else if (bonusNames.size() > 5) {
             throw new IllegalArgumentException("bonusNames must have at most 5 elements");
-        } else {
-            List<List<Loadout>> unmergedLoadouts = bonusNames.stream().
-                    map(bonusName -> generateStartingLoadoutsFor(bonusName, rank, armorSelector)).
-                    collect(toList());
-
-            Optional<List<Loadout>> mergedLoadoutsOpt = unmergedLoadouts.stream().
-                    reduce((List<Loadout> loadouts1, List<Loadout> loadouts2) -> {
-                        if (loadouts1.isEmpty() || loadouts2.isEmpty()) {
-                            return new ArrayList<>();
-                        }
-
-                        List<Loadout> mergedLoadoutsTmp = new ArrayList<>(loadouts1.size() * loadouts2.size());
-                        for (Loadout loadout1 : loadouts1) {
-                            for (Loadout loadout2 : loadouts2) {
-                                Optional<Loadout> mergedLoadout = loadout1.mergeWith(loadout2);
-                                mergedLoadout.ifPresent(mergedLoadoutsTmp::add);
-                            }
-                        }
-                        return mergedLoadoutsTmp;
-                    });
-
-            mergedLoadouts = mergedLoadoutsOpt.orElse(new ArrayList<>());
         }
 
+        List<Loadout> startingLoadouts = new ArrayList<>();
+        Set<String> fingerprints = new HashSet<>();
+        generateStartingLoadoutsFor(bonusNames, rank, armorSelector, fingerprints, startingLoadouts::add);
+
         // Account for the fact that Inheritance has the combined effect of all Secret set bonus skills
         if (bonusNames.stream().anyMatch(bn -> StringUtils.endsWith(bn, " Secret"))) {
             List<String> nonSecretBonusNames = bonusNames.stream().
                     filter(bn -> !StringUtils.endsWith(bn, " Secret")).
                     collect(toList());
             nonSecretBonusNames.add("Inheritance");
-            mergedLoadouts.addAll(generateStartingLoadoutsFor(nonSecretBonusNames, rank, armorSelector));
+            generateStartingLoadoutsFor(nonSecretBonusNames, rank, armorSelector, fingerprints, startingLoadouts::add);
         }
 
-        return mergedLoadouts;
+        return startingLoadouts;
     }
 
-    private List<Loadout> generateStartingLoadoutsFor(String bonusName, Rank rank, ArmorSelector armorSelector) {
+    /**
+     * @return The set bonus skills that every loadout must grant, for a search that counts set bonus pieces as it goes
+     * rather than starting from each combination of them. A Secret set bonus skill is also granted by Inheritance.
+     */
+    public SetBonusRequirements getSetBonusRequirementsFor(List<String> bonusNames, Rank rank) {
+        Objects.requireNonNull(bonusNames, "bonusNames must be non-null");
+        Objects.requireNonNull(rank, "rank must be non-null");
+
+        if (bonusNames.isEmpty()) {
+            throw new IllegalArgumentException("bonusNames must be non-empty");
+        } else if (bonusNames.size() > 5) {
+            throw new IllegalArgumentException("bonusNames must have at most 5 elements");
+        }
+
+        SetBonusRequirements.Builder builder = SetBonusRequirements.builder();
+        for (String bonusName : bonusNames) {
+            Set<ThinSetBonusSkill> setBonusSkills = getSetBonusSkillsForRank(bonusName, rank);
+            if (setBonusSkills.isEmpty()) {
+                throw new IllegalArgumentException("Could not find a set bonus that provides the set bonus skill " + bonusName);
+            }
+
+            List<ThinSetBonusSkill> alternatives = new ArrayList<>(setBonusSkills);
+            if (StringUtils.endsWith(bonusName, " Secret")) {
+                alternatives.addAll(getSetBonusSkillsForRank("Inheritance", rank));
+            }
+            builder.withRequirement(alternatives);
+        }
+        return builder.build();
+    }
+
+    private void generateStartingLoadoutsFor(List<String> bonusNames, Rank rank, ArmorSelector armorSelector,
+                                             Set<String> fingerprints, Consumer<Loadout> consumer) {
+        List<List<SetBonusOption>> options = bonusNames.stream().
+                map(bonusName -> getSetBonusOptionsFor(bonusName, rank, armorSelector)).
+                collect(toList());
+        new StartingLoadoutGenerator(options, fingerprints, consumer).generate();
+    }
+
+    private List<SetBonusOption> getSetBonusOptionsFor(String bonusName, Rank rank, ArmorSelector armorSelector) {
         Set<ThinSetBonusSkill> setBonusSkills = getSetBonusSkillsForRank(bonusName, rank);
         if(setBonusSkills.isEmpty()) {
             throw new IllegalArgumentException("Could not find a set bonus that provides the set bonus skill " + bonusName);
         }
 
-        List<Loadout> loadouts = new ArrayList<>();
+        List<SetBonusOption> options = new ArrayList<>();
         for(ThinSetBonusSkill setBonusSkill : setBonusSkills) {
-            Set<ThinArmorPiece> armorPieces = setBonusSkill.getSetBonus().getArmorPieces().stream().
-                    filter(armorSelector).
-                    collect(toSet());
-            int minimumPieces = setBonusSkill.getRequiredPieces();
-            long distinctArmorTypes = armorPieces.stream().
-                    map(ThinArmorPiece::getArmorType).
-                    distinct().
-                    count();
-
-            if (distinctArmorTypes >= minimumPieces) {
-                loadouts.addAll(generateCombinations(armorPieces, minimumPieces));
+            SetBonusOption option = new SetBonusOption(setBonusSkill, armorSelector);
+            if (Integer.bitCount(option.getArmorTypes()) >= option.getRequiredPieces()) {
+                options.add(option);
             }
         }
-        return loadouts;
+        return options;
     }
 
-    private List<Loadout> generateCombinations(Set<ThinArmorPiece> armorPieces, int minimumPieces) {
-        Map<ArmorType, List<ThinArmorPiece>> armorPiecesMap = armorPieces.stream().
-                collect(toMap(
-                        ThinArmorPiece::getArmorType,
-                        ImmutableList::of,
-                        (l1, l2) -> ImmutableList.<ThinArmorPiece>builder().addAll(l1).addAll(l2).build()
-                ));
-
-        return generateCombinations(Loadout.empty(), armorPiecesMap, nextArmorType(null)).stream().
-                filter(l -> l.getArmorPieces().size() >= minimumPieces).
-                collect(toList());
+    // The pieces of one set bonus that the selector allows, grouped by armor type, and how many of them grant the
+    // requested skill
+    @Data
+    private static class SetBonusOption {
+        private final int requiredPieces;
+
+        // Indexed by armor type ordinal
+        private final ThinArmorPiece[][] armorPieces = new ThinArmorPiece[ARMOR_TYPES.length][];
+
+        // A bit mask of the ordinals of the armor types that have any pieces
+        private final int armorTypes;
+
+        SetBonusOption(ThinSetBonusSkill setBonusSkill, ArmorSelector armorSelector) {
+            this.requiredPieces = setBonusSkill.getRequiredPieces();
+            int armorTypesTmp = 0;
+            for (ArmorType armorType : ARMOR_TYPES) {
+                ThinArmorPiece[] pieces = setBonusSkill.getSetBonus().getArmorPieces(armorType).stream().
+                        filter(armorSelector).
+                        toArray(ThinArmorPiece[]::new);
+                armorPieces[armorType.ordinal()] = pieces;
+                if (pieces.length > 0) {
+                    armorTypesTmp |= 1 << armorType.ordinal();
+                }
+            }
+            this.armorTypes = armorTypesTmp;
+        }
     }
 
-    private List<Loadout> generateCombinations(Loadout currentLoadout, Map<ArmorType, List<ThinArmorPiece>> armorPiecesMap,
-                                               ArmorType armorType)
-    {
-        List<ThinArmorPiece> currentArmorPieces = armorPiecesMap.getOrDefault(armorType, emptyList());
-        if(hasNextArmorType(armorType)) {
-            if(currentArmorPieces.isEmpty()) {
-                return generateCombinations(currentLoadout, armorPiecesMap, nextArmorType(armorType));
-            }
+    /**
+     * Walks the combinations of set bonus pieces depth first, one requested set bonus skill after another, and builds
+     * a loadout only for each combination that grants all of them. The armor types that earlier skills have filled
+     * are kept in a bit mask, so that a combination that would need two pieces of the same type is never started, and
+     * a set bonus is given up on as soon as too few of its armor types are left free to reach its required pieces.
+     * Each set bonus stops at exactly its required pieces. Different skills, or Inheritance in place of the Secret
+     * skills, can still reach the same combination, so each one is fingerprinted by the ids of its pieces in armor type
+     * order and built only the first time.
+     */
+    private static class StartingLoadoutGenerator {
+
+        private final List<List<SetBonusOption>> optionsBySkill;
+        private final Set<String> fingerprints;
+        private final Consumer<Loadout> consumer;
+
+        // Indexed by armor type ordinal. The pieces chosen so far, or null for the armor types that are still free.
+        private final ThinArmorPiece[] chosenArmorPieces = new ThinArmorPiece[ARMOR_TYPES.length];
+
+        StartingLoadoutGenerator(List<List<SetBonusOption>> optionsBySkill, Set<String> fingerprints,
+                                 Consumer<Loadout> consumer) {
+            this.optionsBySkill = optionsBySkill;
+            this.fingerprints = fingerprints;
+            this.consumer = consumer;
+        }
 
-            List<Loadout> loadoutsWithNextPiece = generateCombinations(currentLoadout, armorPiecesMap, nextArmorType(armorType));
-            List<Loadout> loadoutsToReturn = new ArrayList<>(loadoutsWithNextPiece);
-            for (Loadout loadoutWithNextPiece : loadoutsWithNextPiece) {
-                for (ThinArmorPiece armorPiece : currentArmorPieces) {
-                    loadoutsToReturn.add(Loadout.builder(loadoutWithNextPiece).
-                            withArmorPiece(armorPiece).
-                            build());
+        void generate() {
+            generate(0, 0);
+        }
+
+        /**
+         * @param usedArmorTypes A bit mask of the ordinals of the armor types that earlier skills have filled
+         */
+        private void generate(int skillIndex, int usedArmorTypes) {
+            if (skillIndex == optionsBySkill.size()) {
+                List<ThinArmorPiece> armorPieces = new ArrayList<>(Integer.bitCount(usedArmorTypes));
+                StringBuilder fingerprint = new StringBuilder();
+                for (ThinArmorPiece armorPiece : chosenArmorPieces) {
+                    if (armorPiece != null) {
+                        armorPieces.add(armorPiece);
+                        fingerprint.append(armorPiece.getId());
+                    }
+                    fingerprint.append('|');
+                }
+                if (!fingerprints.add(fingerprint.toString())) {
+                    return;
                 }
+                consumer.accept(Loadout.builder().withArmorPieces(armorPieces).build());
+                return;
+            }
+
+            for (SetBonusOption option : optionsBySkill.get(skillIndex)) {
+                choose(skillIndex, option, 0, usedArmorTypes, 0);
+            }
+        }
+
+        // Decides whether to add a piece of the set bonus for the armor type with the given ordinal, and which one
+        private void choose(int skillIndex, SetBonusOption option, int ordinal, int usedArmorTypes, int chosenCount) {
+            if (chosenCount == option.getRequiredPieces()) {
+                generate(skillIndex + 1, usedArmorTypes);
+                return;
+            }
+
+            // Once ordinal is past the last armor type, none are left free, so this also ends the walk
+            int freeArmorTypes = option.getArmorTypes() & ~usedArmorTypes & (-1 << ordinal);
+            if (chosenCount + Integer.bitCount(freeArmorTypes) < option.getRequiredPieces()) {
+                return;
+            }
+
+            choose(skillIndex, option, ordinal + 1, usedArmorTypes, chosenCount);
+            if ((freeArmorTypes & (1 << ordinal)) == 0) {
+                return;
             }
-            return loadoutsToReturn;
-        } else {
-            List<Loadout> loadoutsToReturn = new ArrayList<>();
-            loadoutsToReturn.add(currentLoadout);
-            for (ThinArmorPiece armorPiece : currentArmorPieces) {
-                loadoutsToReturn.add(Loadout.builder().
-                        withArmorPiece(armorPiece).
-                        build());
+            for (ThinArmorPiece armorPiece : option.getArmorPieces()[ordinal]) {
+                chosenArmorPieces[ordinal] = armorPiece;
+                choose(skillIndex, option, ordinal + 1, usedArmorTypes | (1 << ordinal), chosenCount + 1);
             }
-            return loadoutsToReturn;
+            chosenArmorPieces[ordinal] = null;
         }
     }
 }
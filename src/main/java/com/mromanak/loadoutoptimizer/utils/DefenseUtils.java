@@ -0,0 +1,112 @@
+package com.mromanak.loadoutoptimizer.utils;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+public abstract class DefenseUtils {
+
+    public static final String DEFENSE_BOOST = "Defense Boost";
+    public static final String FIRE_RESISTANCE = "Fire Resistance";
+    public static final String WATER_RESISTANCE = "Water Resistance";
+    public static final String THUNDER_RESISTANCE = "Thunder Resistance";
+    public static final String ICE_RESISTANCE = "Ice Resistance";
+    public static final String DRAGON_RESISTANCE = "Dragon Resistance";
+
+    public static final List<String> ELEMENTAL_RESISTANCE_SKILLS = ImmutableList.of(
+            FIRE_RESISTANCE,
+            WATER_RESISTANCE,
+            THUNDER_RESISTANCE,
+            ICE_RESISTANCE,
+            DRAGON_RESISTANCE
+    );
+
+    // All of the bonuses below are non-decreasing in every skill level, which the scoring functions rely on when
+    // computing upper bounds
+
+    public static int effectiveDefense(int defense, int defenseBoostLevel) {
+        int defenseTotal = (int) Math.floor((double) defense * defenseBonusMultiplier(defenseBoostLevel));
+        defenseTotal += defenseBonusAdd(defenseBoostLevel);
+        return defenseTotal;
+    }
+
+    public static double defenseBonusMultiplier(int defenseBoostLevel) {
+        if (defenseBoostLevel < 3) {
+            return 1.0;
+        }
+
+        switch (defenseBoostLevel) {
+            case 3:
+            case 4:
+                return 1.05;
+            case 5:
+            case 6:
+                return 1.08;
+            case 7:
+            default:
+                return 1.1;
+        }
+    }
+
+    public static int defenseBonusAdd(int defenseBoostLevel) {
+        int bonusAdd = 0;
+        if (defenseBoostLevel >= 1) {
+            switch (defenseBoostLevel) {
+                case 1:
+                    bonusAdd += 5;
+                    break;
+                case 2:
+                case 3:
+                    bonusAdd += 10;
+                    break;
+                case 4:
+                case 5:
+                    bonusAdd += 20;
+                    break;
+                case 6:
+                case 7:
+                default:
+                    bonusAdd += 35;
+                    break;
+            }
+        }
+        return bonusAdd;
+    }
+
+    public static int resistanceSkillDefenseBonusAdd(int resistanceSkillLevel) {
+        return (resistanceSkillLevel >= 3) ? 10 : 0;
+    }
+
+    public static int resistanceBonusAdd(int defenseBoostLevel, int resistanceSkillLevel) {
+        int bonusAdd = 0;
+        if (defenseBoostLevel > 3) {
+            switch (defenseBoostLevel) {
+                case 4:
+                case 5:
+                    bonusAdd += 3;
+                    break;
+                case 6:
+                case 7:
+                default:
+                    bonusAdd += 5;
+                    break;
+            }
+        }
+        if (resistanceSkillLevel > 0) {
+            switch (resistanceSkillLevel) {
+                case 1:
+                    bonusAdd += 6;
+                    break;
+                case 2:
+                    bonusAdd += 12;
+                    break;
+                case 3:
+                default:
+                    bonusAdd += 20;
+                    break;
+            }
+        }
+
+        return bonusAdd;
+    }
+}
@@ -0,0 +1,106 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorPieceSkill;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import com.mromanak.loadoutoptimizer.model.jpa.SetType;
+import com.mromanak.loadoutoptimizer.model.jpa.Skill;
+import com.mromanak.loadoutoptimizer.scoring.LoadoutScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.SkillScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.SkillScoringFunction.SkillWeight;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class DominanceFilterTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private ThinArmorPiece sampleArmorPieceWith(String setName, int attackBoostLevel) {
+        ArmorPiece armorPiece = new ArmorPiece();
+        armorPiece.setSetName(setName);
+        armorPiece.setArmorType(ArmorType.HEAD);
+        armorPiece.setSetType(SetType.NONE);
+        Skill skill = new Skill();
+        skill.setName("Attack Boost");
+        armorPiece.setSkills(ImmutableList.of(new ArmorPieceSkill(armorPiece, skill, attackBoostLevel)));
+        return new ThinArmorPiece(armorPiece);
+    }
+
+    // Each piece is dominated by every piece with a higher level
+    private List<ThinArmorPiece> sampleArmorPieces() {
+        return ImmutableList.of(
+                sampleArmorPieceWith("Alpha", 3),
+                sampleArmorPieceWith("Beta", 2),
+                sampleArmorPieceWith("Gamma", 1)
+        );
+    }
+
+    private LoadoutScoringFunction sampleScoringFunction() {
+        return SkillScoringFunction.builder().
+                withSkillWeight(new SkillWeight("Attack Boost", 7, 1)).
+                build();
+    }
+
+    @Test
+    public void filterShouldThrowExceptionIfMinDominatorsIsLessThanOne() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("minDominators must be at least 1");
+        DominanceFilter.filter(sampleArmorPieces(), sampleScoringFunction(), ImmutableSet.of(), 0);
+    }
+
+    @Test
+    public void filterShouldRemovePiecesThatAnyOtherPieceDominates() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+
+        DominanceFilter.Result result = DominanceFilter.filter(armorPieces, sampleScoringFunction(), ImmutableSet.of());
+
+        assertThat(result.getArmorPieces(), is(ImmutableSet.of(armorPieces.get(0))));
+        assertThat(result.getRemovedCount(), is(2));
+    }
+
+    @Test
+    public void filterShouldKeepProtectedPieces() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+
+        DominanceFilter.Result result = DominanceFilter.filter(armorPieces, sampleScoringFunction(),
+                ImmutableSet.of(armorPieces.get(2).getId()));
+
+        assertThat(result.getArmorPieces(), is(ImmutableSet.of(armorPieces.get(0), armorPieces.get(2))));
+    }
+
+    @Test
+    public void filterShouldOnlyRemovePiecesThatAtLeastMinDominatorsOtherPiecesDominate() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+
+        DominanceFilter.Result result = DominanceFilter.filter(armorPieces, sampleScoringFunction(), ImmutableSet.of(),
+                2);
+
+        assertThat(result.getArmorPieces(), is(ImmutableSet.of(armorPieces.get(0), armorPieces.get(1))));
+        assertThat(result.getRemovedCount(), is(1));
+    }
+
+    @Test
+    public void filteringWithMaxResultsDominatorsShouldNotChangeTheTopLoadouts() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        LoadoutScoringFunction scoringFunction = sampleScoringFunction();
+        OptimizerOptions options = OptimizerOptions.builder().withMaxResults(3).build();
+
+        DominanceFilter.Result result = DominanceFilter.filter(armorPieces, scoringFunction, ImmutableSet.of(), 3);
+        List<Loadout> loadouts = LoadoutOptimizer.findBestLoadouts(result.getArmorPieces(), scoringFunction, options);
+
+        assertThat(loadouts.stream().map(Loadout::getScore).collect(Collectors.toList()),
+                is(ImmutableList.of(3.0, 2.0, 1.0)));
+    }
+}
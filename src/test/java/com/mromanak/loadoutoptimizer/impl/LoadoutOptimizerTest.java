@@ -0,0 +1,752 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutStats;
+import com.mromanak.loadoutoptimizer.model.SkillIndex;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinSetBonus;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinSetBonusSkill;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorPieceSkill;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import com.mromanak.loadoutoptimizer.model.jpa.SetBonus;
+import com.mromanak.loadoutoptimizer.model.jpa.SetBonusSkill;
+import com.mromanak.loadoutoptimizer.model.jpa.SetType;
+import com.mromanak.loadoutoptimizer.model.jpa.Skill;
+import com.mromanak.loadoutoptimizer.scoring.CompositeScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.DecorationSlotScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.DefenseScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.LoadoutScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.RemainingArmorBounds;
+import com.mromanak.loadoutoptimizer.scoring.SizeScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.SkillScoringFunction;
+import com.mromanak.loadoutoptimizer.scoring.SkillScoringFunction.SkillWeight;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LoadoutOptimizerTest {
+
+    private static final String ATTACK_BOOST = "Attack Boost";
+    private static final String CRITICAL_EYE = "Critical Eye";
+    private static final String WEAKNESS_EXPLOIT = "Weakness Exploit";
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void stopPool() {
+        pool.shutdownNow();
+    }
+
+    // Three pieces of each armor type, whose skills, slots and defense vary. The head and leg pieces each have a twin
+    // with the same stats, so that the best loadouts always tie.
+    private List<ThinArmorPiece> sampleArmorPieces() {
+        List<ThinArmorPiece> armorPieces = new ArrayList<>();
+        for (ArmorType armorType : ArmorType.values()) {
+            int t = armorType.ordinal();
+            for (int i = 0; i < 3; i++) {
+                Map<String, Integer> skillToLevelMap = ImmutableMap.of(
+                        ATTACK_BOOST, (i + t) % 3,
+                        CRITICAL_EYE, (2 * i + t) % 2,
+                        WEAKNESS_EXPLOIT, (i * t) % 2
+                );
+                int defense = 10 + 2 * ((3 * i + t) % 4);
+                armorPieces.add(sampleArmorPieceWith("Sample " + i, armorType, skillToLevelMap, i % 2, (i + t) % 2,
+                        defense));
+                if (armorType == ArmorType.HEAD || armorType == ArmorType.LEGS) {
+                    armorPieces.add(sampleArmorPieceWith("Twin " + i, armorType, skillToLevelMap, i % 2, (i + t) % 2,
+                            defense));
+                }
+            }
+        }
+        return armorPieces;
+    }
+
+    private List<Loadout> sampleStartingLoadouts() {
+        return ImmutableList.of(
+                Loadout.builder().
+                        withArmorPiece(sampleArmorPieceWith("Seed A", ArmorType.HEAD, ImmutableMap.of(CRITICAL_EYE, 2), 0, 1, 12)).
+                        withArmorPiece(sampleArmorPieceWith("Seed A", ArmorType.BODY, ImmutableMap.of(ATTACK_BOOST, 1), 1, 0, 12)).
+                        build(),
+                Loadout.builder().
+                        withArmorPiece(sampleArmorPieceWith("Seed B", ArmorType.ARMS, ImmutableMap.of(ATTACK_BOOST, 2), 0, 0, 14)).
+                        build(),
+                Loadout.builder().
+                        withArmorPiece(sampleArmorPieceWith("Seed C", ArmorType.WAIST, ImmutableMap.of(WEAKNESS_EXPLOIT, 1), 1, 1, 10)).
+                        withArmorPiece(sampleArmorPieceWith("Seed C", ArmorType.LEGS, ImmutableMap.of(CRITICAL_EYE, 1), 0, 1, 10)).
+                        build()
+        );
+    }
+
+    // The pieces of a set bonus that needs two of them. They are worse than most of the sample pieces, so that requiring
+    // the set bonus changes the best loadouts.
+    private List<ThinArmorPiece> sampleSetBonusArmorPieces() {
+        return ImmutableList.of(
+                sampleArmorPieceWith("Gamma", ArmorType.HEAD, ImmutableMap.of(ATTACK_BOOST, 1), 0, 0, 10),
+                sampleArmorPieceWith("Gamma", ArmorType.BODY, ImmutableMap.of(CRITICAL_EYE, 1), 1, 0, 10),
+                sampleArmorPieceWith("Gamma", ArmorType.ARMS, ImmutableMap.of(), 0, 1, 10)
+        );
+    }
+
+    private SetBonusRequirements sampleSetBonusRequirements(List<ThinArmorPiece> setBonusArmorPieces) {
+        SetBonus setBonus = new SetBonus();
+        setBonus.setName("Gamma Set Bonus");
+        Skill skill = new Skill();
+        skill.setName("Master's Touch");
+        ThinSetBonusSkill setBonusSkill = new ThinSetBonusSkill(new SetBonusSkill(setBonus, skill, 2, 1),
+                new ThinSetBonus(setBonus, setBonusArmorPieces));
+        return SetBonusRequirements.builder().
+                withRequirement(ImmutableList.of(setBonusSkill)).
+                build();
+    }
+
+    // Every pair of the set bonus's pieces, which is how the starting loadouts strategy meets the same requirements
+    private List<Loadout> sampleSetBonusStartingLoadouts(List<ThinArmorPiece> setBonusArmorPieces) {
+        List<Loadout> startingLoadouts = new ArrayList<>();
+        for (int i = 0; i < setBonusArmorPieces.size(); i++) {
+            for (int j = i + 1; j < setBonusArmorPieces.size(); j++) {
+                startingLoadouts.add(Loadout.builder().
+                        withArmorPiece(setBonusArmorPieces.get(i)).
+                        withArmorPiece(setBonusArmorPieces.get(j)).
+                        build());
+            }
+        }
+        return startingLoadouts;
+    }
+
+    private ThinArmorPiece sampleArmorPieceWith(String setName, ArmorType armorType,
+                                                Map<String, Integer> skillToLevelMap, int level1Slots,
+                                                int level2Slots, int defense) {
+        ArmorPiece armorPiece = new ArmorPiece();
+        armorPiece.setSetName(setName);
+        armorPiece.setArmorType(armorType);
+        armorPiece.setSetType(SetType.NONE);
+        armorPiece.setName(setName + " " + armorType.getName());
+        armorPiece.setLevel1Slots(level1Slots);
+        armorPiece.setLevel2Slots(level2Slots);
+        armorPiece.setDefense(defense);
+        List<ArmorPieceSkill> skills = skillToLevelMap.entrySet().stream().
+                filter(entry -> entry.getValue() > 0).
+                map((Map.Entry<String, Integer> entry) -> {
+                    Skill skill = new Skill();
+                    skill.setName(entry.getKey());
+                    return new ArmorPieceSkill(armorPiece, skill, entry.getValue());
+                }).
+                collect(Collectors.toList());
+        armorPiece.setSkills(skills);
+        return new ThinArmorPiece(armorPiece);
+    }
+
+    // The weights are all powers of two, so that every engine adds the same scores up exactly
+    private LoadoutScoringFunction sampleScoringFunction() {
+        return CompositeScoringFunction.builder().
+                withScoringFunction(SkillScoringFunction.builder().
+                        withSkillWeight(new SkillWeight(ATTACK_BOOST, 4, 1)).
+                        withSkillWeight(new SkillWeight(CRITICAL_EYE, 3, 1)).
+                        withSkillWeight(new SkillWeight(WEAKNESS_EXPLOIT, 2, 2)).
+                        build()).
+                withScoringFunction(DecorationSlotScoringFunction.builder().
+                        withLevel1SlotWeight(0.25).
+                        withLevel2SlotWeight(0.5).
+                        build()).
+                withScoringFunction(DefenseScoringFunction.builder().
+                        withDefenseWeight(0.125).
+                        withDefenseBucketSize(8).
+                        build()).
+                build();
+    }
+
+    // Penalizes one of the skills and every piece, so that adding nothing is sometimes best
+    private LoadoutScoringFunction samplePenalizingScoringFunction() {
+        return CompositeScoringFunction.builder().
+                withScoringFunction(SkillScoringFunction.builder().
+                        withSkillWeight(new SkillWeight(ATTACK_BOOST, 3, 2)).
+                        withSkillWeight(new SkillWeight(CRITICAL_EYE, 2, 1)).
+                        withSkillWeight(new SkillWeight(WEAKNESS_EXPLOIT, 3, -1)).
+                        build()).
+                withScoringFunction(DefenseScoringFunction.builder().
+                        withDefenseWeight(-0.0625).
+                        build()).
+                withScoringFunction(SizeScoringFunction.builder().
+                        withSizeWeight(-0.5).
+                        build()).
+                build();
+    }
+
+    private OptimizerOptions.Builder sampleOptions() {
+        return OptimizerOptions.builder().
+                withPool(pool);
+    }
+
+    /**
+     * Scores every loadout that the optimizer could return, by adding nothing or one of the pieces of each armor type
+     * that {@code startingLoadout} leaves empty. The empty loadout itself is never a result.
+     */
+    private List<Loadout> allLoadoutsGiven(Loadout startingLoadout, Collection<ThinArmorPiece> armorPieces,
+                                           LoadoutScoringFunction scoringFunction) {
+        Map<ArmorType, List<ThinArmorPiece>> armorPiecesByType = new EnumMap<>(ArmorType.class);
+        for (ThinArmorPiece armorPiece : armorPieces) {
+            if (!startingLoadout.getArmorPieces().containsKey(armorPiece.getArmorType())) {
+                armorPiecesByType.computeIfAbsent(armorPiece.getArmorType(), k -> new ArrayList<>()).add(armorPiece);
+            }
+        }
+
+        List<Loadout> loadouts = ImmutableList.of(startingLoadout);
+        for (List<ThinArmorPiece> choices : armorPiecesByType.values()) {
+            List<Loadout> extended = new ArrayList<>(loadouts);
+            for (Loadout loadout : loadouts) {
+                for (ThinArmorPiece armorPiece : choices) {
+                    extended.add(Loadout.builder(loadout).withArmorPiece(armorPiece).build());
+                }
+            }
+            loadouts = extended;
+        }
+        return loadouts.stream().
+                filter(loadout -> !loadout.getArmorPieces().isEmpty()).
+                map(loadout -> Loadout.builder(loadout).withScore(scoringFunction.scoreFor(loadout)).build()).
+                collect(Collectors.toList());
+    }
+
+    private List<Loadout> allLoadoutsGiven(List<Loadout> startingLoadouts, Collection<ThinArmorPiece> armorPieces,
+                                           LoadoutScoringFunction scoringFunction) {
+        return startingLoadouts.stream().
+                flatMap(startingLoadout -> allLoadoutsGiven(startingLoadout, armorPieces, scoringFunction).stream()).
+                distinct().
+                collect(Collectors.toList());
+    }
+
+    private List<Loadout> allLoadoutsWithSetBonus(Collection<ThinArmorPiece> armorPieces,
+                                                  List<ThinArmorPiece> setBonusArmorPieces,
+                                                  LoadoutScoringFunction scoringFunction) {
+        List<ThinArmorPiece> candidateArmorPieces = ImmutableList.<ThinArmorPiece>builder().
+                addAll(armorPieces).
+                addAll(setBonusArmorPieces).
+                build();
+        return allLoadoutsGiven(Loadout.empty(), candidateArmorPieces, scoringFunction).stream().
+                filter(loadout -> loadout.getArmorPieces().values().stream().
+                        filter(setBonusArmorPieces::contains).
+                        count() >= 2).
+                collect(Collectors.toList());
+    }
+
+    // What a search for maxResults loadouts must return, given every loadout that it could return. The top loadouts
+    // may tie at the cut-off, so only their scores are certain.
+    private List<String> expected(List<Loadout> allLoadouts, int maxResults) {
+        if (maxResults == 0) {
+            return tiedBest(allLoadouts);
+        }
+        return summarize(allLoadouts.stream().
+                sorted(Comparator.comparingDouble(Loadout::getScore).reversed()).
+                limit(maxResults).
+                collect(Collectors.toList()), maxResults);
+    }
+
+    private List<String> summarize(List<Loadout> loadouts, int maxResults) {
+        if (maxResults == 0) {
+            return describe(loadouts);
+        }
+        return topScores(loadouts, loadouts.size() + 1).stream().
+                map(String::valueOf).
+                collect(Collectors.toList());
+    }
+
+    private List<String> tiedBest(List<Loadout> loadouts) {
+        double bestScore = loadouts.stream().mapToDouble(Loadout::getScore).max().orElse(0);
+        return describe(loadouts.stream().
+                filter(loadout -> loadout.getScore() == bestScore).
+                collect(Collectors.toList()));
+    }
+
+    private List<Double> topScores(List<Loadout> loadouts, int k) {
+        return loadouts.stream().
+                map(Loadout::getScore).
+                sorted(Comparator.reverseOrder()).
+                limit(k).
+                collect(Collectors.toList());
+    }
+
+    // Each loadout as its score and the ids of its armor pieces, sorted so that the order of the results doesn't matter
+    private List<String> describe(List<Loadout> loadouts) {
+        return loadouts.stream().
+                map(loadout -> loadout.getScore() + " " + loadout.getArmorPieces().values().stream().
+                        map(ThinArmorPiece::getId).
+                        collect(Collectors.joining(","))).
+                sorted().
+                collect(Collectors.toList());
+    }
+
+    @Test
+    public void parallelSearchShouldFindTheSameTiedLoadoutsAsSequentialSearch() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        LoadoutScoringFunction scoringFunction = sampleScoringFunction();
+
+        List<Loadout> sequential = LoadoutOptimizer.findBestLoadouts(armorPieces, scoringFunction,
+                sampleOptions().withParallelism(1).build());
+        List<Loadout> parallel = LoadoutOptimizer.findBestLoadouts(armorPieces, scoringFunction,
+                sampleOptions().withParallelism(4).build());
+
+        assertThat(sequential.size() > 1, is(true));
+        assertThat(describe(parallel), is(describe(sequential)));
+        assertThat(describe(parallel), is(tiedBest(allLoadoutsGiven(Loadout.empty(), armorPieces, scoringFunction))));
+    }
+
+    @Test
+    public void parallelSearchShouldFindTheSameTopLoadoutsAsSequentialSearch() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        LoadoutScoringFunction scoringFunction = sampleScoringFunction();
+
+        List<Loadout> sequential = LoadoutOptimizer.findBestLoadouts(armorPieces, scoringFunction,
+                sampleOptions().withParallelism(1).withMaxResults(7).build());
+        List<Loadout> parallel = LoadoutOptimizer.findBestLoadouts(armorPieces, scoringFunction,
+                sampleOptions().withParallelism(4).withMaxResults(7).build());
+
+        assertThat(topScores(parallel, 7), is(topScores(sequential, 7)));
+        assertThat(topScores(parallel, 7), is(topScores(allLoadoutsGiven(Loadout.empty(), armorPieces, scoringFunction), 7)));
+    }
+
+    @Test
+    public void parallelSearchShouldFindTheSameLoadoutsAsSequentialSearchGivenStartingLoadouts() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        List<Loadout> startingLoadouts = sampleStartingLoadouts();
+        LoadoutScoringFunction scoringFunction = sampleScoringFunction();
+        List<Loadout> allLoadouts = allLoadoutsGiven(startingLoadouts, armorPieces, scoringFunction);
+
+        List<Loadout> sequential = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces,
+                scoringFunction, sampleOptions().withParallelism(1).build());
+        List<Loadout> parallel = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces,
+                scoringFunction, sampleOptions().withParallelism(4).build());
+        assertThat(describe(parallel), is(describe(sequential)));
+        assertThat(describe(parallel), is(tiedBest(allLoadouts)));
+
+        List<Loadout> sequentialTopK = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces,
+                scoringFunction, sampleOptions().withParallelism(1).withMaxResults(7).build());
+        List<Loadout> parallelTopK = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces,
+                scoringFunction, sampleOptions().withParallelism(4).withMaxResults(7).build());
+        assertThat(topScores(parallelTopK, 7), is(topScores(sequentialTopK, 7)));
+        assertThat(topScores(parallelTopK, 7), is(topScores(allLoadouts, 7)));
+    }
+
+    @Test
+    public void parallelSearchShouldUseNoMoreThreadsThanItsParallelism() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        for (int parallelism : new int[]{2, 3}) {
+            TrackingScoringFunction scoringFunction = new TrackingScoringFunction(sampleScoringFunction());
+
+            List<Loadout> parallel = LoadoutOptimizer.findBestLoadouts(armorPieces, scoringFunction,
+                    sampleOptions().withParallelism(parallelism).build());
+
+            assertThat(describe(parallel), is(tiedBest(allLoadoutsGiven(Loadout.empty(), armorPieces,
+                    scoringFunction))));
+            assertThat(scoringFunction.getThreadCount() <= parallelism, is(true));
+        }
+    }
+
+    @Test
+    public void parallelSearchShouldUseNoMoreThreadsThanItsParallelismGivenStartingLoadouts() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        List<Loadout> startingLoadouts = ImmutableList.<Loadout>builder().
+                addAll(sampleStartingLoadouts()).
+                addAll(sampleSetBonusStartingLoadouts(sampleSetBonusArmorPieces())).
+                build();
+        for (int parallelism : new int[]{2, 3}) {
+            TrackingScoringFunction scoringFunction = new TrackingScoringFunction(sampleScoringFunction());
+
+            List<Loadout> parallel = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces,
+                    scoringFunction, sampleOptions().withParallelism(parallelism).build());
+
+            assertThat(describe(parallel), is(tiedBest(allLoadoutsGiven(startingLoadouts, armorPieces,
+                    scoringFunction))));
+            assertThat(scoringFunction.getThreadCount() <= parallelism, is(true));
+        }
+    }
+
+    @Test
+    public void streamBestLoadoutsGivenShouldOnlyBuildEachLoadoutWhenTheStreamReachesIt() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        List<Loadout> startingLoadouts = sampleStartingLoadouts();
+        for (boolean sharedSolutionCache : new boolean[]{true, false}) {
+            for (int maxResults : new int[]{0, 7}) {
+                TrackingScoringFunction scoringFunction = new TrackingScoringFunction(sampleScoringFunction());
+                OptimizerOptions options = sampleOptions().
+                        withSharedSolutionCache(sharedSolutionCache).
+                        withMaxResults(maxResults).
+                        build();
+
+                Stream<Loadout> loadouts = LoadoutOptimizer.streamBestLoadoutsGiven(startingLoadouts, armorPieces,
+                        scoringFunction, options, SearchBudget.unlimited());
+                assertThat(scoringFunction.getUnboundScoreCount(), is(0));
+
+                assertThat(loadouts.limit(1).count(), is(1L));
+                assertThat(scoringFunction.getUnboundScoreCount(), is(1));
+            }
+        }
+    }
+
+    @Test
+    public void pruningShouldNotChangeTheTiedLoadouts() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        List<Loadout> startingLoadouts = sampleStartingLoadouts();
+        for (LoadoutScoringFunction scoringFunction : ImmutableList.of(sampleScoringFunction(), samplePenalizingScoringFunction())) {
+            LoadoutScoringFunction unprunedScoringFunction = new UnboundedScoringFunction(scoringFunction);
+            for (OptimizerEngine engine : OptimizerEngine.values()) {
+                OptimizerOptions options = sampleOptions().withEngine(engine).build();
+
+                List<Loadout> pruned = LoadoutOptimizer.findBestLoadouts(armorPieces, scoringFunction, options);
+                List<Loadout> unpruned = LoadoutOptimizer.findBestLoadouts(armorPieces, unprunedScoringFunction,
+                        options);
+                assertThat(describe(pruned), is(describe(unpruned)));
+                assertThat(describe(pruned), is(tiedBest(allLoadoutsGiven(Loadout.empty(), armorPieces, scoringFunction))));
+
+                List<Loadout> prunedGiven = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces,
+                        scoringFunction, options);
+                List<Loadout> unprunedGiven = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces,
+                        unprunedScoringFunction, options);
+                assertThat(describe(prunedGiven), is(describe(unprunedGiven)));
+                assertThat(describe(prunedGiven), is(tiedBest(allLoadoutsGiven(startingLoadouts, armorPieces, scoringFunction))));
+            }
+        }
+    }
+
+    @Test
+    public void pruningShouldNotChangeTheTopLoadouts() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        List<Loadout> startingLoadouts = sampleStartingLoadouts();
+        for (LoadoutScoringFunction scoringFunction : ImmutableList.of(sampleScoringFunction(), samplePenalizingScoringFunction())) {
+            LoadoutScoringFunction unprunedScoringFunction = new UnboundedScoringFunction(scoringFunction);
+            for (OptimizerEngine engine : OptimizerEngine.values()) {
+                OptimizerOptions options = sampleOptions().withEngine(engine).withMaxResults(7).build();
+
+                List<Loadout> pruned = LoadoutOptimizer.findBestLoadouts(armorPieces, scoringFunction, options);
+                List<Loadout> unpruned = LoadoutOptimizer.findBestLoadouts(armorPieces, unprunedScoringFunction,
+                        options);
+                assertThat(topScores(pruned, 7), is(topScores(unpruned, 7)));
+                assertThat(topScores(pruned, 7), is(topScores(allLoadoutsGiven(Loadout.empty(), armorPieces, scoringFunction), 7)));
+
+                List<Loadout> prunedGiven = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces,
+                        scoringFunction, options);
+                List<Loadout> unprunedGiven = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces,
+                        unprunedScoringFunction, options);
+                assertThat(topScores(prunedGiven, 7), is(topScores(unprunedGiven, 7)));
+                assertThat(topScores(prunedGiven, 7), is(topScores(allLoadoutsGiven(startingLoadouts, armorPieces, scoringFunction), 7)));
+            }
+        }
+    }
+
+    @Test
+    public void topKSearchShouldReturnMaxResultsLoadoutsEvenIfTheEmptyLoadoutScoresBest() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        LoadoutScoringFunction scoringFunction = SizeScoringFunction.builder().
+                withSizeWeight(-1).
+                build();
+        for (OptimizerEngine engine : OptimizerEngine.values()) {
+            for (int parallelism : new int[]{1, 4}) {
+                OptimizerOptions options = sampleOptions().
+                        withEngine(engine).
+                        withParallelism(parallelism).
+                        withMaxResults(3).
+                        build();
+
+                List<Loadout> loadouts = LoadoutOptimizer.findBestLoadouts(armorPieces, scoringFunction, options);
+
+                assertThat(topScores(loadouts, 10), is(ImmutableList.of(-1.0, -1.0, -1.0)));
+            }
+        }
+    }
+
+    @Test
+    public void iterativeEngineShouldFindTheSameLoadoutsAsRecursiveEngine() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        List<Loadout> startingLoadouts = sampleStartingLoadouts();
+        List<ThinArmorPiece> setBonusArmorPieces = sampleSetBonusArmorPieces();
+        SetBonusRequirements setBonusRequirements = sampleSetBonusRequirements(setBonusArmorPieces);
+        List<ThinArmorPiece> candidateArmorPieces = ImmutableList.<ThinArmorPiece>builder().
+                addAll(armorPieces).
+                addAll(setBonusArmorPieces).
+                build();
+        for (LoadoutScoringFunction scoringFunction : ImmutableList.of(sampleScoringFunction(), samplePenalizingScoringFunction())) {
+            for (int maxResults : new int[]{0, 7}) {
+                OptimizerOptions recursive = sampleOptions().
+                        withEngine(OptimizerEngine.RECURSIVE).
+                        withMaxResults(maxResults).
+                        build();
+                OptimizerOptions iterative = sampleOptions().
+                        withEngine(OptimizerEngine.ITERATIVE).
+                        withMaxResults(maxResults).
+                        build();
+
+                List<String> fromScratch = summarize(LoadoutOptimizer.findBestLoadouts(armorPieces, scoringFunction,
+                        iterative), maxResults);
+                assertThat(fromScratch, is(summarize(LoadoutOptimizer.findBestLoadouts(armorPieces, scoringFunction,
+                        recursive), maxResults)));
+                assertThat(fromScratch, is(expected(allLoadoutsGiven(Loadout.empty(), armorPieces, scoringFunction),
+                        maxResults)));
+
+                List<String> given = summarize(LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces,
+                        scoringFunction, iterative), maxResults);
+                assertThat(given, is(summarize(LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts, armorPieces,
+                        scoringFunction, recursive), maxResults)));
+                assertThat(given, is(expected(allLoadoutsGiven(startingLoadouts, armorPieces, scoringFunction),
+                        maxResults)));
+
+                List<String> withSetBonuses = summarize(LoadoutOptimizer.streamBestLoadoutsWithSetBonuses(
+                        candidateArmorPieces, setBonusRequirements, scoringFunction, iterative,
+                        SearchBudget.unlimited()).collect(Collectors.toList()), maxResults);
+                assertThat(withSetBonuses, is(summarize(LoadoutOptimizer.streamBestLoadoutsWithSetBonuses(
+                        candidateArmorPieces, setBonusRequirements, scoringFunction, recursive,
+                        SearchBudget.unlimited()).collect(Collectors.toList()), maxResults)));
+                assertThat(withSetBonuses, is(expected(allLoadoutsWithSetBonus(armorPieces, setBonusArmorPieces,
+                        scoringFunction), maxResults)));
+                // Otherwise the fixture would not show that the set bonus is required
+                assertThat(withSetBonuses.equals(fromScratch), is(false));
+            }
+        }
+    }
+
+    @Test
+    public void countingSetBonusPiecesShouldFindTheSameLoadoutsAsStartingLoadouts() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        List<ThinArmorPiece> setBonusArmorPieces = sampleSetBonusArmorPieces();
+        SetBonusRequirements setBonusRequirements = sampleSetBonusRequirements(setBonusArmorPieces);
+        List<Loadout> startingLoadouts = sampleSetBonusStartingLoadouts(setBonusArmorPieces);
+        List<ThinArmorPiece> candidateArmorPieces = ImmutableList.<ThinArmorPiece>builder().
+                addAll(armorPieces).
+                addAll(setBonusArmorPieces).
+                build();
+        for (LoadoutScoringFunction scoringFunction : ImmutableList.of(sampleScoringFunction(), samplePenalizingScoringFunction())) {
+            for (OptimizerEngine engine : OptimizerEngine.values()) {
+                for (int maxResults : new int[]{0, 7}) {
+                    OptimizerOptions options = sampleOptions().
+                            withEngine(engine).
+                            withMaxResults(maxResults).
+                            build();
+
+                    List<Loadout> searchState = LoadoutOptimizer.streamBestLoadoutsWithSetBonuses(candidateArmorPieces,
+                            setBonusRequirements, scoringFunction, options, SearchBudget.unlimited()).
+                            collect(Collectors.toList());
+                    List<Loadout> fromStartingLoadouts = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts,
+                            candidateArmorPieces, scoringFunction, options);
+
+                    assertThat(summarize(searchState, maxResults), is(summarize(fromStartingLoadouts, maxResults)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void startingLoadoutsShouldOnlyAddASetBonusPieceBeyondTheRequiredPiecesIfItIsACandidate() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        // Set bonus pieces with none of the desired skills, but more slots and defense than the other pieces
+        List<ThinArmorPiece> setBonusArmorPieces = ImmutableList.of(
+                sampleArmorPieceWith("Gamma", ArmorType.ARMS, ImmutableMap.of(), 0, 20, 40),
+                sampleArmorPieceWith("Gamma", ArmorType.WAIST, ImmutableMap.of(), 0, 20, 40),
+                sampleArmorPieceWith("Gamma", ArmorType.LEGS, ImmutableMap.of(), 0, 20, 40)
+        );
+        List<Loadout> startingLoadouts = sampleSetBonusStartingLoadouts(setBonusArmorPieces);
+        List<ThinArmorPiece> candidateArmorPieces = ImmutableList.<ThinArmorPiece>builder().
+                addAll(armorPieces).
+                addAll(setBonusArmorPieces).
+                build();
+        LoadoutScoringFunction scoringFunction = sampleScoringFunction();
+        List<String> expected = expected(allLoadoutsWithSetBonus(armorPieces, setBonusArmorPieces, scoringFunction), 0);
+        for (OptimizerEngine engine : OptimizerEngine.values()) {
+            OptimizerOptions options = sampleOptions().
+                    withEngine(engine).
+                    build();
+
+            // Each starting loadout holds exactly the required pieces, so only a candidate can be a third one
+            List<Loadout> withoutSetBonusCandidates = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts,
+                    armorPieces, scoringFunction, options);
+            assertThat(withoutSetBonusCandidates.stream().
+                    anyMatch(loadout -> setBonusArmorPieceCount(loadout, setBonusArmorPieces) > 2), is(false));
+            assertThat(describe(withoutSetBonusCandidates), is(not(expected)));
+
+            List<Loadout> withSetBonusCandidates = LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts,
+                    candidateArmorPieces, scoringFunction, options);
+            assertThat(withSetBonusCandidates.stream().
+                    allMatch(loadout -> setBonusArmorPieceCount(loadout, setBonusArmorPieces) > 2), is(true));
+            assertThat(describe(withSetBonusCandidates), is(expected));
+        }
+    }
+
+    private long setBonusArmorPieceCount(Loadout loadout, List<ThinArmorPiece> setBonusArmorPieces) {
+        return loadout.getArmorPieces().values().stream().
+                filter(setBonusArmorPieces::contains).
+                count();
+    }
+
+    @Test
+    public void sharedSolutionCacheShouldFindTheSameLoadoutsAsSeparateSearches() {
+        List<ThinArmorPiece> armorPieces = sampleArmorPieces();
+        List<ThinArmorPiece> setBonusArmorPieces = sampleSetBonusArmorPieces();
+        List<ThinArmorPiece> candidateArmorPieces = ImmutableList.<ThinArmorPiece>builder().
+                addAll(armorPieces).
+                addAll(setBonusArmorPieces).
+                build();
+        for (List<Loadout> startingLoadouts : ImmutableList.of(sampleStartingLoadouts(), sampleSetBonusStartingLoadouts(setBonusArmorPieces))) {
+            for (LoadoutScoringFunction scoringFunction : ImmutableList.of(sampleScoringFunction(), samplePenalizingScoringFunction())) {
+                for (OptimizerEngine engine : OptimizerEngine.values()) {
+                    for (int maxResults : new int[]{0, 7}) {
+                        OptimizerOptions separate = sampleOptions().
+                                withEngine(engine).
+                                withMaxResults(maxResults).
+                                withSharedSolutionCache(false).
+                                build();
+                        List<String> expected = summarize(LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts,
+                                candidateArmorPieces, scoringFunction, separate), maxResults);
+                        assertThat(expected, is(expected(allLoadoutsGiven(startingLoadouts, candidateArmorPieces,
+                                scoringFunction), maxResults)));
+
+                        for (int parallelism : new int[]{1, 4}) {
+                            OptimizerOptions shared = OptimizerOptions.builder(separate).
+                                    withSharedSolutionCache(true).
+                                    withParallelism(parallelism).
+                                    build();
+                            assertThat(summarize(LoadoutOptimizer.findBestLoadoutsGiven(startingLoadouts,
+                                    candidateArmorPieces, scoringFunction, shared), maxResults), is(expected));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Scores loadouts like the function that it wraps, but never lets the optimizer prune
+    private static class UnboundedScoringFunction implements LoadoutScoringFunction {
+
+        private final LoadoutScoringFunction scoringFunction;
+
+        UnboundedScoringFunction(LoadoutScoringFunction scoringFunction) {
+            this.scoringFunction = scoringFunction;
+        }
+
+        @Override
+        public String keyFor(LoadoutStats loadout) {
+            return scoringFunction.keyFor(loadout);
+        }
+
+        @Override
+        public int keySize() {
+            return scoringFunction.keySize();
+        }
+
+        @Override
+        public void writeKey(LoadoutStats loadout, int[] key, int offset) {
+            scoringFunction.writeKey(loadout, key, offset);
+        }
+
+        @Override
+        public double scoreFor(LoadoutStats loadout) {
+            return scoringFunction.scoreFor(loadout);
+        }
+
+        @Override
+        public double upperBound(LoadoutStats loadout, RemainingArmorBounds remaining) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public boolean isAtLeastAsGoodAs(ThinArmorPiece armorPiece, ThinArmorPiece other) {
+            return scoringFunction.isAtLeastAsGoodAs(armorPiece, other);
+        }
+
+        @Override
+        public LoadoutScoringFunction bind(SkillIndex skillIndex) {
+            return new UnboundedScoringFunction(scoringFunction.bind(skillIndex));
+        }
+    }
+
+    // Records every thread that scores a loadout with a bound copy of this function, which only the search itself does.
+    // Each of those scores takes a while, so that a search that is not capped spreads over the whole pool. Also counts
+    // the loadouts that the function itself scores, which only building the results does.
+    private static class TrackingScoringFunction implements LoadoutScoringFunction {
+
+        private final LoadoutScoringFunction scoringFunction;
+        private final Set<Thread> threads;
+        private final boolean bound;
+        private final AtomicInteger unboundScoreCount = new AtomicInteger();
+
+        TrackingScoringFunction(LoadoutScoringFunction scoringFunction) {
+            this(scoringFunction, ConcurrentHashMap.newKeySet(), false);
+        }
+
+        private TrackingScoringFunction(LoadoutScoringFunction scoringFunction, Set<Thread> threads,
+                                              boolean bound) {
+            this.scoringFunction = scoringFunction;
+            this.threads = threads;
+            this.bound = bound;
+        }
+
+        int getThreadCount() {
+            return threads.size();
+        }
+
+        int getUnboundScoreCount() {
+            return unboundScoreCount.get();
+        }
+
+        @Override
+        public String keyFor(LoadoutStats loadout) {
+            return scoringFunction.keyFor(loadout);
+        }
+
+        @Override
+        public int keySize() {
+            return scoringFunction.keySize();
+        }
+
+        @Override
+        public void writeKey(LoadoutStats loadout, int[] key, int offset) {
+            scoringFunction.writeKey(loadout, key, offset);
+        }
+
+        @Override
+        public double scoreFor(LoadoutStats loadout) {
+            if (bound) {
+                threads.add(Thread.currentThread());
+                LockSupport.parkNanos(100_000);
+            } else {
+                unboundScoreCount.incrementAndGet();
+            }
+            return scoringFunction.scoreFor(loadout);
+        }
+
+        @Override
+        public double upperBound(LoadoutStats loadout, RemainingArmorBounds remaining) {
+            return scoringFunction.upperBound(loadout, remaining);
+        }
+
+        @Override
+        public boolean isAtLeastAsGoodAs(ThinArmorPiece armorPiece, ThinArmorPiece other) {
+            return scoringFunction.isAtLeastAsGoodAs(armorPiece, other);
+        }
+
+        @Override
+        public LoadoutScoringFunction bind(SkillIndex skillIndex) {
+            return new TrackingScoringFunction(scoringFunction.bind(skillIndex), threads, true);
+        }
+    }
+}
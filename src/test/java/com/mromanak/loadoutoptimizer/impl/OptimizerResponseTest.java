@@ -0,0 +1,136 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import com.mromanak.loadoutoptimizer.model.jpa.SetType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.List;
+import java.util.function.BinaryOperator;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class OptimizerResponseTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private ThinArmorPiece sampleArmorPieceWith(String setName, ArmorType armorType) {
+        ArmorPiece armorPiece = new ArmorPiece();
+        armorPiece.setSetName(setName);
+        armorPiece.setArmorType(armorType);
+        armorPiece.setSetType(SetType.NONE);
+        return new ThinArmorPiece(armorPiece);
+    }
+
+    private final ThinArmorPiece head1 = sampleArmorPieceWith("Alpha", ArmorType.HEAD);
+    private final ThinArmorPiece head2 = sampleArmorPieceWith("Beta", ArmorType.HEAD);
+    private final ThinArmorPiece body1 = sampleArmorPieceWith("Alpha", ArmorType.BODY);
+    private final ThinArmorPiece body2 = sampleArmorPieceWith("Beta", ArmorType.BODY);
+
+    @Test
+    public void topKMergerShouldThrowExceptionIfMaxResultsIsLessThanOne() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("maxResults must be at least 1");
+        OptimizerResponse.topKMerger(0);
+    }
+
+    @Test
+    public void topKMergerShouldTreatTheEmptyResponseAsItsIdentity() {
+        OptimizerResponse response = OptimizerResponse.of(
+                ImmutableList.of(ImmutableList.of(head1), ImmutableList.of(head2)),
+                ImmutableList.of(2.0, 1.0)
+        );
+        BinaryOperator<OptimizerResponse> merger = OptimizerResponse.topKMerger(3);
+
+        assertThat(merger.apply(response, OptimizerResponse.empty()), is(response));
+        assertThat(merger.apply(OptimizerResponse.empty(), response), is(response));
+    }
+
+    @Test
+    public void topKMergerShouldKeepTheBestElementsFromBestToWorst() {
+        OptimizerResponse r1 = OptimizerResponse.of(
+                ImmutableList.of(ImmutableList.of(head1), ImmutableList.of(head2)),
+                ImmutableList.of(4.0, 1.0)
+        );
+        OptimizerResponse r2 = OptimizerResponse.of(
+                ImmutableList.of(ImmutableList.of(body1), ImmutableList.of(body2)),
+                ImmutableList.of(3.0, 2.0)
+        );
+
+        OptimizerResponse merged = OptimizerResponse.topKMerger(3).apply(r1, r2);
+
+        assertThat(merged.getArmorPiecesToAdd(), is(ImmutableList.<List<ThinArmorPiece>>of(
+                ImmutableList.of(head1),
+                ImmutableList.of(body1),
+                ImmutableList.of(body2)
+        )));
+        assertThat(merged.getScores(), is(ImmutableList.of(4.0, 3.0, 2.0)));
+        assertThat(merged.getScore(), is(4.0));
+    }
+
+    @Test
+    public void topKMergerShouldKeepEveryElementIfThereAreFewerThanMaxResults() {
+        OptimizerResponse r1 = OptimizerResponse.of(
+                ImmutableList.of(ImmutableList.of(head1)),
+                ImmutableList.of(1.0)
+        );
+        OptimizerResponse r2 = OptimizerResponse.of(
+                ImmutableList.of(ImmutableList.of(body1), ImmutableList.of(head2, body2)),
+                ImmutableList.of(3.0, 2.0)
+        );
+
+        OptimizerResponse merged = OptimizerResponse.topKMerger(10).apply(r1, r2);
+
+        assertThat(merged.getArmorPiecesToAdd(), is(ImmutableList.<List<ThinArmorPiece>>of(
+                ImmutableList.of(body1),
+                ImmutableList.of(head2, body2),
+                ImmutableList.of(head1)
+        )));
+        assertThat(merged.getScores(), is(ImmutableList.of(3.0, 2.0, 1.0)));
+    }
+
+    @Test
+    public void topKMergerShouldBreakTiesAtTheCutOffByPreferringFewerArmorPieces() {
+        OptimizerResponse r1 = OptimizerResponse.of(
+                ImmutableList.of(ImmutableList.of(head1, body1), ImmutableList.of(head2)),
+                ImmutableList.of(2.0, 1.0)
+        );
+        OptimizerResponse r2 = OptimizerResponse.of(
+                ImmutableList.of(ImmutableList.of(head2, body2), ImmutableList.of(body1)),
+                ImmutableList.of(1.0, 1.0)
+        );
+
+        OptimizerResponse merged = OptimizerResponse.topKMerger(3).apply(r1, r2);
+
+        assertThat(merged.getScores(), is(ImmutableList.of(2.0, 1.0, 1.0)));
+        assertThat(merged.getArmorPiecesToAdd().get(0), is(ImmutableList.of(head1, body1)));
+        assertThat(merged.getArmorPiecesToAdd().subList(1, 3).contains(ImmutableList.of(head2)), is(true));
+        assertThat(merged.getArmorPiecesToAdd().subList(1, 3).contains(ImmutableList.of(body1)), is(true));
+    }
+
+    @Test
+    public void topKMergerShouldKeepAResponseThatAddsNothing() {
+        OptimizerResponse r1 = OptimizerResponse.of(
+                ImmutableList.of(ImmutableList.of()),
+                ImmutableList.of(5.0)
+        );
+        OptimizerResponse r2 = OptimizerResponse.of(
+                ImmutableList.of(ImmutableList.of(head1)),
+                ImmutableList.of(3.0)
+        );
+
+        OptimizerResponse merged = OptimizerResponse.topKMerger(2).apply(r1, r2);
+
+        assertThat(merged.getArmorPiecesToAdd(), is(ImmutableList.<List<ThinArmorPiece>>of(
+                ImmutableList.of(),
+                ImmutableList.of(head1)
+        )));
+        assertThat(merged.getScores(), is(ImmutableList.of(5.0, 3.0)));
+    }
+}
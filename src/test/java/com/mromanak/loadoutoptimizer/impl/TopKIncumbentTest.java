@@ -0,0 +1,101 @@
+package com.mromanak.loadoutoptimizer.impl;
+
+import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import com.mromanak.loadoutoptimizer.model.jpa.SetType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TopKIncumbentTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private Loadout sampleLoadoutWith(String setName) {
+        ArmorPiece armorPiece = new ArmorPiece();
+        armorPiece.setSetName(setName);
+        armorPiece.setArmorType(ArmorType.HEAD);
+        armorPiece.setSetType(SetType.NONE);
+        return Loadout.builder().
+                withArmorPiece(new ThinArmorPiece(armorPiece)).
+                build();
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfMaxResultsIsLessThanOne() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("maxResults must be at least 1");
+        new TopKIncumbent(0);
+    }
+
+    @Test
+    public void getShouldBeTheLowestOfTheBestScoresOnceMaxResultsLoadoutsHaveBeenOffered() {
+        TopKIncumbent incumbent = new TopKIncumbent(2);
+
+        incumbent.offer(sampleLoadoutWith("Alpha"), 1.0);
+        assertThat(incumbent.get(), is(Double.NEGATIVE_INFINITY));
+
+        incumbent.offer(sampleLoadoutWith("Beta"), 3.0);
+        assertThat(incumbent.get(), is(1.0));
+
+        incumbent.offer(sampleLoadoutWith("Gamma"), 2.0);
+        assertThat(incumbent.get(), is(2.0));
+
+        incumbent.offer(sampleLoadoutWith("Delta"), 0.5);
+        assertThat(incumbent.get(), is(2.0));
+    }
+
+    @Test
+    public void getShouldNotRiseWhileThereAreFewerLoadoutsThanMaxResults() {
+        TopKIncumbent incumbent = new TopKIncumbent(5);
+
+        incumbent.offer(sampleLoadoutWith("Alpha"), 1.0);
+        incumbent.offer(sampleLoadoutWith("Beta"), 3.0);
+        incumbent.offer(sampleLoadoutWith("Gamma"), 2.0);
+
+        assertThat(incumbent.get(), is(Double.NEGATIVE_INFINITY));
+        assertThat(incumbent.cannotBeReachedWith(-1000.0), is(false));
+    }
+
+    @Test
+    public void offerShouldCountALoadoutOnceNoMatterHowOftenItIsOffered() {
+        TopKIncumbent incumbent = new TopKIncumbent(2);
+
+        incumbent.offer(sampleLoadoutWith("Alpha"), 3.0);
+        incumbent.offer(sampleLoadoutWith("Alpha"), 3.0);
+        assertThat(incumbent.get(), is(Double.NEGATIVE_INFINITY));
+
+        incumbent.offer(sampleLoadoutWith("Beta"), 1.0);
+        assertThat(incumbent.get(), is(1.0));
+    }
+
+    @Test
+    public void offerShouldIgnoreTheEmptyLoadout() {
+        TopKIncumbent incumbent = new TopKIncumbent(1);
+
+        incumbent.offer(Loadout.empty(), 10.0);
+        assertThat(incumbent.get(), is(Double.NEGATIVE_INFINITY));
+
+        incumbent.offer(sampleLoadoutWith("Alpha"), 1.0);
+        assertThat(incumbent.get(), is(1.0));
+    }
+
+    @Test
+    public void cannotBeReachedWithShouldKeepLoadoutsThatTieAtTheCutOff() {
+        TopKIncumbent incumbent = new TopKIncumbent(2);
+
+        incumbent.offer(sampleLoadoutWith("Alpha"), 3.0);
+        incumbent.offer(sampleLoadoutWith("Beta"), 2.0);
+        incumbent.offer(sampleLoadoutWith("Gamma"), 2.0);
+
+        assertThat(incumbent.get(), is(2.0));
+        assertThat(incumbent.cannotBeReachedWith(2.0), is(false));
+        assertThat(incumbent.cannotBeReachedWith(1.5), is(true));
+    }
+}
@@ -1,7 +1,10 @@
 package com.mromanak.loadoutoptimizer.scoring;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
 import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutState;
+import com.mromanak.loadoutoptimizer.model.SkillIndex;
 import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
 import com.mromanak.loadoutoptimizer.model.jpa.ArmorPiece;
 import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
@@ -10,6 +13,10 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
@@ -36,16 +43,21 @@ public class DecorationSlotScoringFunctionTest {
     }
 
     private Loadout sampleLoadoutWith(int level1Slots, int level2Slots, int level3Slots, int level4Slots) {
+        return Loadout.builder().
+                withArmorPiece(sampleArmorPieceWith(ArmorType.HEAD, level1Slots, level2Slots, level3Slots,
+                        level4Slots)).
+                build();
+    }
+
+    private ThinArmorPiece sampleArmorPieceWith(ArmorType armorType, int level1Slots, int level2Slots,
+                                                int level3Slots, int level4Slots) {
         ArmorPiece armorPiece = new ArmorPiece();
-        armorPiece.setArmorType(ArmorType.HEAD);
+        armorPiece.setArmorType(armorType);
         armorPiece.setLevel1Slots(level1Slots);
         armorPiece.setLevel2Slots(level2Slots);
         armorPiece.setLevel3Slots(level3Slots);
         armorPiece.setLevel4Slots(level4Slots);
-        ThinArmorPiece thinArmorPiece = new ThinArmorPiece(armorPiece);
-        return Loadout.builder().
-                withArmorPiece(thinArmorPiece).
-                build();
+        return new ThinArmorPiece(armorPiece);
     }
 
     @Test
@@ -107,6 +119,24 @@ public class DecorationSlotScoringFunctionTest {
         assertThat(scoringFunction.scoreFor(loadout), is(2.0 + 3));
     }
 
+    @Test
+    public void stateKeyForShouldOnlyIncludeSlotsThatHaveWeights() {
+        Loadout loadout = sampleLoadoutWith(
+                1,
+                3,
+                2,
+                1
+        );
+
+        LoadoutScoringFunction scoringFunction = DecorationSlotScoringFunction.builder().
+                withLevel2SlotWeight(2).
+                withLevel3SlotWeight(3).
+                build();
+
+        assertThat(scoringFunction.keySize(), is(2));
+        assertThat(scoringFunction.stateKeyFor(loadout), is(new int[]{3, 2}));
+    }
+
     @Test
     public void serializationAndDeserializationShouldNotChangeTheObject() throws IOException {
         LoadoutScoringFunction original = DecorationSlotScoringFunction.builder().
@@ -122,4 +152,69 @@ public class DecorationSlotScoringFunctionTest {
 
         assertThat(original, is(equalTo(clone)));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void upperBoundShouldBeAtLeastTheScoreOfEveryCompletion() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 200; trial++) {
+            List<List<ThinArmorPiece>> armorTypes = new ArrayList<>();
+            for (ArmorType armorType : ArmorType.values()) {
+                List<ThinArmorPiece> armorPieces = new ArrayList<>();
+                for (int i = random.nextInt(3); i > 0; i--) {
+                    armorPieces.add(sampleArmorPieceWith(armorType, random.nextInt(3), random.nextInt(3),
+                            random.nextInt(3), random.nextInt(3)));
+                }
+                armorTypes.add(armorPieces);
+            }
+
+            LoadoutScoringFunction scoringFunction = DecorationSlotScoringFunction.builder().
+                    withLevel1SlotWeight(pick(random, -1, 0, 0.25, 1)).
+                    withLevel2SlotWeight(pick(random, -1, 0, 0.5, 2)).
+                    withLevel3SlotWeight(pick(random, -1, 0, 0.5, 3)).
+                    withLevel4SlotWeight(pick(random, -1, 0, 1, 4)).
+                    build();
+            assertUpperBoundIsAtLeastEveryScore(scoringFunction, armorTypes);
+        }
+    }
+
+    // Checks the bound at every depth of a search over armorTypes, in the order given, against the score of every
+    // loadout that the search could still reach from there
+    private void assertUpperBoundIsAtLeastEveryScore(LoadoutScoringFunction scoringFunction,
+                                                     List<List<ThinArmorPiece>> armorTypes) {
+        SkillIndex skillIndex = SkillIndex.of(armorTypes.stream().flatMap(List::stream).collect(Collectors.toList()));
+        LoadoutScoringFunction boundScoringFunction = scoringFunction.bind(skillIndex);
+        for (int depth = 0; depth <= armorTypes.size(); depth++) {
+            List<List<ThinArmorPiece>> remainingArmorTypes = armorTypes.subList(depth, armorTypes.size());
+            RemainingArmorBounds remaining = RemainingArmorBounds.of(remainingArmorTypes);
+            for (Loadout loadout : completionsOf(Loadout.empty(), armorTypes.subList(0, depth))) {
+                double upperBound = scoringFunction.upperBound(loadout, remaining);
+                double stateUpperBound = boundScoringFunction.upperBound(LoadoutState.of(loadout, skillIndex),
+                        remaining);
+                for (Loadout completion : completionsOf(loadout, remainingArmorTypes)) {
+                    double score = scoringFunction.scoreFor(completion);
+                    assertThat("upper bound at depth " + depth, upperBound >= score - 1e-9, is(true));
+                    assertThat("state upper bound at depth " + depth, stateUpperBound >= score - 1e-9, is(true));
+                }
+            }
+        }
+    }
+
+    // Every loadout made by adding nothing or one of the pieces of each of armorTypes to loadout
+    private List<Loadout> completionsOf(Loadout loadout, List<List<ThinArmorPiece>> armorTypes) {
+        List<Loadout> completions = ImmutableList.of(loadout);
+        for (List<ThinArmorPiece> armorPieces : armorTypes) {
+            List<Loadout> extended = new ArrayList<>(completions);
+            for (Loadout completion : completions) {
+                for (ThinArmorPiece armorPiece : armorPieces) {
+                    extended.add(Loadout.builder(completion).withArmorPiece(armorPiece).build());
+                }
+            }
+            completions = extended;
+        }
+        return completions;
+    }
+
+    private static double pick(Random random, double... values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -1,8 +1,11 @@
 package com.mromanak.loadoutoptimizer.scoring;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutState;
+import com.mromanak.loadoutoptimizer.model.SkillIndex;
 import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
 import com.mromanak.loadoutoptimizer.model.jpa.ArmorPiece;
 import com.mromanak.loadoutoptimizer.model.jpa.ArmorPieceSkill;
@@ -13,8 +16,11 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.*;
@@ -48,8 +54,23 @@ public class DefenseScoringFunctionTest {
 
     private Loadout sampleLoadoutWith(int defense, int fireRes, int waterRes, int thunderRes, int iceRes, int dragonRes,
                                       Map<String, Integer> skillToLevelMap) {
+        return Loadout.builder().
+                withArmorPiece(sampleArmorPieceWith(defense, fireRes, waterRes, thunderRes, iceRes, dragonRes,
+                        skillToLevelMap)).
+                build();
+    }
+
+    private ThinArmorPiece sampleArmorPieceWith(int defense, int fireRes, int waterRes, int thunderRes, int iceRes,
+                                                int dragonRes, Map<String, Integer> skillToLevelMap) {
+        return sampleArmorPieceWith(ArmorType.HEAD, defense, fireRes, waterRes, thunderRes, iceRes, dragonRes,
+                skillToLevelMap);
+    }
+
+    private ThinArmorPiece sampleArmorPieceWith(ArmorType armorType, int defense, int fireRes, int waterRes,
+                                                int thunderRes, int iceRes, int dragonRes,
+                                                Map<String, Integer> skillToLevelMap) {
         ArmorPiece armorPiece = new ArmorPiece();
-        armorPiece.setArmorType(ArmorType.HEAD);
+        armorPiece.setArmorType(armorType);
         armorPiece.setDefense(defense);
         armorPiece.setFireResistance(fireRes);
         armorPiece.setWaterResistance(waterRes);
@@ -64,10 +85,7 @@ public class DefenseScoringFunctionTest {
                 }).
                 collect(Collectors.toList());
         armorPiece.setSkills(skills);
-        ThinArmorPiece thinArmorPiece = new ThinArmorPiece(armorPiece);
-        return Loadout.builder().
-                withArmorPiece(thinArmorPiece).
-                build();
+        return new ThinArmorPiece(armorPiece);
     }
 
     @Test
@@ -230,6 +248,95 @@ public class DefenseScoringFunctionTest {
         assertThat(scoringFunction.scoreFor(loadout), is(200.0 + 3 + 5 + 7 + 11 + 13));
     }
 
+    @Test
+    public void stateKeyForShouldOnlyIncludeBucketedValuesThatHaveWeights() {
+        Loadout loadout = sampleLoadoutWith(
+                107,
+                3,
+                -4,
+                1,
+                1,
+                1
+        );
+
+        LoadoutScoringFunction scoringFunction = DefenseScoringFunction.builder().
+                withDefenseWeight(1).
+                withDefenseBucketSize(10).
+                withWaterResistanceWeight(1).
+                withResistanceBucketSize(5).
+                build();
+
+        assertThat(scoringFunction.keySize(), is(2));
+        assertThat(scoringFunction.stateKeyFor(loadout), is(new int[]{100, -5}));
+    }
+
+    @Test
+    public void scoreForShouldBeTheSameForLoadoutAndLoadoutState() {
+        Loadout loadout = sampleLoadoutWith(
+                100,
+                -2,
+                1,
+                3,
+                0,
+                -1,
+                ImmutableMap.of("Defense Boost", 5, "Fire Resistance", 3, "Earplugs", 1)
+        );
+        LoadoutState state = LoadoutState.of(loadout, SkillIndex.of(loadout.getArmorPieces().values()));
+
+        LoadoutScoringFunction scoringFunction = DefenseScoringFunction.builder().
+                withDefenseWeight(2).
+                withFireResistanceWeight(3).
+                withWaterResistanceWeight(5).
+                withThunderResistanceWeight(7).
+                withIceResistanceWeight(11).
+                withDragonResistanceWeight(13).
+                withNegativeResistanceWeightMultiplier(2).
+                build();
+
+        assertThat(scoringFunction.scoreFor(state), is(scoringFunction.scoreFor(loadout)));
+        assertThat(scoringFunction.stateKeyFor(state), is(scoringFunction.stateKeyFor(loadout)));
+
+        state.remove(ArmorType.HEAD);
+        assertThat(scoringFunction.scoreFor(state), is(scoringFunction.scoreFor(Loadout.empty())));
+    }
+
+    @Test
+    public void isAtLeastAsGoodAsShouldCompareStatsInTheDirectionOfTheirWeights() {
+        ThinArmorPiece better = sampleArmorPieceWith(100, 3, 0, 0, 0, 0, ImmutableMap.of("Defense Boost", 1));
+        ThinArmorPiece worse = sampleArmorPieceWith(90, 1, 5, 0, 0, 0, ImmutableMap.of());
+
+        LoadoutScoringFunction scoringFunction = DefenseScoringFunction.builder().
+                withDefenseWeight(1).
+                withFireResistanceWeight(1).
+                build();
+
+        assertThat(scoringFunction.isAtLeastAsGoodAs(better, worse), is(true));
+        assertThat(scoringFunction.isAtLeastAsGoodAs(worse, better), is(false));
+
+        LoadoutScoringFunction negativeScoringFunction = DefenseScoringFunction.builder().
+                withDefenseWeight(-1).
+                withFireResistanceWeight(-1).
+                build();
+
+        assertThat(negativeScoringFunction.isAtLeastAsGoodAs(better, worse), is(false));
+        assertThat(negativeScoringFunction.isAtLeastAsGoodAs(worse, better), is(true));
+    }
+
+    @Test
+    public void isAtLeastAsGoodAsShouldRequireEqualResistancesIfNegativeResistanceMultiplierIsNegative() {
+        ThinArmorPiece higher = sampleArmorPieceWith(50, 3, 0, 0, 0, 0, ImmutableMap.of());
+        ThinArmorPiece lower = sampleArmorPieceWith(50, 1, 0, 0, 0, 0, ImmutableMap.of());
+
+        LoadoutScoringFunction scoringFunction = DefenseScoringFunction.builder().
+                withFireResistanceWeight(1).
+                withNegativeResistanceWeightMultiplier(-1).
+                build();
+
+        assertThat(scoringFunction.isAtLeastAsGoodAs(higher, lower), is(false));
+        assertThat(scoringFunction.isAtLeastAsGoodAs(lower, higher), is(false));
+        assertThat(scoringFunction.isAtLeastAsGoodAs(higher, higher), is(true));
+    }
+
     @Test
     public void serializationAndDeserializationShouldNotChangeTheObject() throws IOException {
         LoadoutScoringFunction original = DefenseScoringFunction.builder().
@@ -247,4 +354,92 @@ public class DefenseScoringFunctionTest {
 
         assertThat(original, is(equalTo(clone)));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void upperBoundShouldBeAtLeastTheScoreOfEveryCompletion() {
+        Random random = new Random(5);
+        List<String> skillNames = ImmutableList.of("Defense Boost", "Fire Resistance", "Ice Resistance");
+        for (int trial = 0; trial < 400; trial++) {
+            // Resistances may be negative, and Defense Boost and the resistance skills raise defense and resistances
+            // once they reach a high enough level
+            List<List<ThinArmorPiece>> armorTypes = new ArrayList<>();
+            for (ArmorType armorType : ArmorType.values()) {
+                List<ThinArmorPiece> armorPieces = new ArrayList<>();
+                for (int i = random.nextInt(3); i > 0; i--) {
+                    Map<String, Integer> skillToLevelMap = new HashMap<>();
+                    for (String skillName : skillNames) {
+                        int skillLevel = random.nextInt(4);
+                        if (skillLevel > 0) {
+                            skillToLevelMap.put(skillName, skillLevel);
+                        }
+                    }
+                    armorPieces.add(sampleArmorPieceWith(
+                            armorType,
+                            random.nextInt(40),
+                            random.nextInt(9) - 4,
+                            random.nextInt(9) - 4,
+                            random.nextInt(9) - 4,
+                            random.nextInt(9) - 4,
+                            random.nextInt(9) - 4,
+                            skillToLevelMap
+                    ));
+                }
+                armorTypes.add(armorPieces);
+            }
+
+            LoadoutScoringFunction scoringFunction = DefenseScoringFunction.builder().
+                    withDefenseWeight(pick(random, -1, 0, 0.5, 1, 3)).
+                    withDefenseBucketSize(random.nextInt(30)).
+                    withFireResistanceWeight(pick(random, -1, 0, 0.5, 1, 3)).
+                    withWaterResistanceWeight(pick(random, -1, 0, 0.5, 1, 3)).
+                    withThunderResistanceWeight(pick(random, -1, 0, 0.5, 1, 3)).
+                    withIceResistanceWeight(pick(random, -1, 0, 0.5, 1, 3)).
+                    withDragonResistanceWeight(pick(random, -1, 0, 0.5, 1, 3)).
+                    withResistanceBucketSize(random.nextInt(4)).
+                    withNegativeResistanceWeightMultiplier(pick(random, 1, 0.5, 2, -1)).
+                    build();
+            assertUpperBoundIsAtLeastEveryScore(scoringFunction, armorTypes);
+        }
+    }
+
+    // Checks the bound at every depth of a search over armorTypes, in the order given, against the score of every
+    // loadout that the search could still reach from there
+    private void assertUpperBoundIsAtLeastEveryScore(LoadoutScoringFunction scoringFunction,
+                                                     List<List<ThinArmorPiece>> armorTypes) {
+        SkillIndex skillIndex = SkillIndex.of(armorTypes.stream().flatMap(List::stream).collect(Collectors.toList()));
+        LoadoutScoringFunction boundScoringFunction = scoringFunction.bind(skillIndex);
+        for (int depth = 0; depth <= armorTypes.size(); depth++) {
+            List<List<ThinArmorPiece>> remainingArmorTypes = armorTypes.subList(depth, armorTypes.size());
+            RemainingArmorBounds remaining = RemainingArmorBounds.of(remainingArmorTypes);
+            for (Loadout loadout : completionsOf(Loadout.empty(), armorTypes.subList(0, depth))) {
+                double upperBound = scoringFunction.upperBound(loadout, remaining);
+                double stateUpperBound = boundScoringFunction.upperBound(LoadoutState.of(loadout, skillIndex),
+                        remaining);
+                for (Loadout completion : completionsOf(loadout, remainingArmorTypes)) {
+                    double score = scoringFunction.scoreFor(completion);
+                    assertThat("upper bound at depth " + depth, upperBound >= score - 1e-9, is(true));
+                    assertThat("state upper bound at depth " + depth, stateUpperBound >= score - 1e-9, is(true));
+                }
+            }
+        }
+    }
+
+    // Every loadout made by adding nothing or one of the pieces of each of armorTypes to loadout
+    private List<Loadout> completionsOf(Loadout loadout, List<List<ThinArmorPiece>> armorTypes) {
+        List<Loadout> completions = ImmutableList.of(loadout);
+        for (List<ThinArmorPiece> armorPieces : armorTypes) {
+            List<Loadout> extended = new ArrayList<>(completions);
+            for (Loadout completion : completions) {
+                for (ThinArmorPiece armorPiece : armorPieces) {
+                    extended.add(Loadout.builder(completion).withArmorPiece(armorPiece).build());
+                }
+            }
+            completions = extended;
+        }
+        return completions;
+    }
+
+    private static double pick(Random random, double... values) {
+        return values[random.nextInt(values.length)];
+    }
+}
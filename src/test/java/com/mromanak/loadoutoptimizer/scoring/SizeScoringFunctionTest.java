@@ -0,0 +1,102 @@
+package com.mromanak.loadoutoptimizer.scoring;
+
+import com.google.common.collect.ImmutableList;
+import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutState;
+import com.mromanak.loadoutoptimizer.model.SkillIndex;
+import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorPiece;
+import com.mromanak.loadoutoptimizer.model.jpa.ArmorType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SizeScoringFunctionTest {
+
+    private ThinArmorPiece sampleArmorPieceWith(ArmorType armorType) {
+        ArmorPiece armorPiece = new ArmorPiece();
+        armorPiece.setArmorType(armorType);
+        return new ThinArmorPiece(armorPiece);
+    }
+
+    @Test
+    public void scoreForShouldBeCalculatedCorrectly() {
+        Loadout loadout = Loadout.builder().
+                withArmorPiece(sampleArmorPieceWith(ArmorType.HEAD)).
+                withArmorPiece(sampleArmorPieceWith(ArmorType.LEGS)).
+                build();
+
+        LoadoutScoringFunction scoringFunction = SizeScoringFunction.builder().
+                withSizeWeight(-1.5).
+                build();
+
+        assertThat(scoringFunction.scoreFor(loadout), is(-3.0));
+    }
+
+    @Test
+    public void upperBoundShouldBeAtLeastTheScoreOfEveryCompletion() {
+        Random random = new Random(11);
+        for (int trial = 0; trial < 50; trial++) {
+            List<List<ThinArmorPiece>> armorTypes = new ArrayList<>();
+            for (ArmorType armorType : ArmorType.values()) {
+                List<ThinArmorPiece> armorPieces = new ArrayList<>();
+                for (int i = random.nextInt(3); i > 0; i--) {
+                    armorPieces.add(sampleArmorPieceWith(armorType));
+                }
+                armorTypes.add(armorPieces);
+            }
+
+            LoadoutScoringFunction scoringFunction = SizeScoringFunction.builder().
+                    withSizeWeight(pick(random, -1, 0, 0.5, 2)).
+                    build();
+            assertUpperBoundIsAtLeastEveryScore(scoringFunction, armorTypes);
+        }
+    }
+
+    // Checks the bound at every depth of a search over armorTypes, in the order given, against the score of every
+    // loadout that the search could still reach from there
+    private void assertUpperBoundIsAtLeastEveryScore(LoadoutScoringFunction scoringFunction,
+                                                     List<List<ThinArmorPiece>> armorTypes) {
+        SkillIndex skillIndex = SkillIndex.of(armorTypes.stream().flatMap(List::stream).collect(Collectors.toList()));
+        LoadoutScoringFunction boundScoringFunction = scoringFunction.bind(skillIndex);
+        for (int depth = 0; depth <= armorTypes.size(); depth++) {
+            List<List<ThinArmorPiece>> remainingArmorTypes = armorTypes.subList(depth, armorTypes.size());
+            RemainingArmorBounds remaining = RemainingArmorBounds.of(remainingArmorTypes);
+            for (Loadout loadout : completionsOf(Loadout.empty(), armorTypes.subList(0, depth))) {
+                double upperBound = scoringFunction.upperBound(loadout, remaining);
+                double stateUpperBound = boundScoringFunction.upperBound(LoadoutState.of(loadout, skillIndex),
+                        remaining);
+                for (Loadout completion : completionsOf(loadout, remainingArmorTypes)) {
+                    double score = scoringFunction.scoreFor(completion);
+                    assertThat("upper bound at depth " + depth, upperBound >= score - 1e-9, is(true));
+                    assertThat("state upper bound at depth " + depth, stateUpperBound >= score - 1e-9, is(true));
+                }
+            }
+        }
+    }
+
+    // Every loadout made by adding nothing or one of the pieces of each of armorTypes to loadout
+    private List<Loadout> completionsOf(Loadout loadout, List<List<ThinArmorPiece>> armorTypes) {
+        List<Loadout> completions = ImmutableList.of(loadout);
+        for (List<ThinArmorPiece> armorPieces : armorTypes) {
+            List<Loadout> extended = new ArrayList<>(completions);
+            for (Loadout completion : completions) {
+                for (ThinArmorPiece armorPiece : armorPieces) {
+                    extended.add(Loadout.builder(completion).withArmorPiece(armorPiece).build());
+                }
+            }
+            completions = extended;
+        }
+        return completions;
+    }
+
+    private static double pick(Random random, double... values) {
+        return values[random.nextInt(values.length)];
+    }
+}
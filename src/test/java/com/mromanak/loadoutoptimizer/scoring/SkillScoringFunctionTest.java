@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.mromanak.loadoutoptimizer.model.Loadout;
+import com.mromanak.loadoutoptimizer.model.LoadoutState;
+import com.mromanak.loadoutoptimizer.model.SkillIndex;
 import com.mromanak.loadoutoptimizer.model.dto.optimizer.ThinArmorPiece;
 import com.mromanak.loadoutoptimizer.model.jpa.ArmorPiece;
 import com.mromanak.loadoutoptimizer.model.jpa.ArmorPieceSkill;
@@ -15,8 +17,11 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -53,8 +58,18 @@ public class SkillScoringFunctionTest {
     }
 
     private Loadout sampleLoadoutWith(Map<String, Integer> skillToLevelMap) {
+        return Loadout.builder().
+                withArmorPiece(sampleArmorPieceWith(skillToLevelMap)).
+                build();
+    }
+
+    private ThinArmorPiece sampleArmorPieceWith(Map<String, Integer> skillToLevelMap) {
+        return sampleArmorPieceWith(ArmorType.HEAD, skillToLevelMap);
+    }
+
+    private ThinArmorPiece sampleArmorPieceWith(ArmorType armorType, Map<String, Integer> skillToLevelMap) {
         ArmorPiece armorPiece = new ArmorPiece();
-        armorPiece.setArmorType(ArmorType.HEAD);
+        armorPiece.setArmorType(armorType);
         List<ArmorPieceSkill> skills = skillToLevelMap.entrySet().stream().
                 map((Map.Entry<String, Integer> entry) -> {
                     Skill skill = new Skill();
@@ -63,10 +78,7 @@ public class SkillScoringFunctionTest {
                 }).
                 collect(Collectors.toList());
         armorPiece.setSkills(skills);
-        ThinArmorPiece thinArmorPiece = new ThinArmorPiece(armorPiece);
-        return Loadout.builder().
-                withArmorPiece(thinArmorPiece).
-                build();
+        return new ThinArmorPiece(armorPiece);
     }
 
     @Test
@@ -144,6 +156,77 @@ public class SkillScoringFunctionTest {
         assertThat(scoringFunction.scoreFor(loadout), is(5.0));
     }
 
+    @Test
+    public void stateKeyForShouldMatchKeyFor() {
+        Loadout loadout = sampleLoadoutWith(ImmutableMap.of(
+                "Earplugs", 6,
+                "Health Boost", 2
+        ));
+
+        List<SkillWeight> skillWeights = ImmutableList.of(
+                new SkillWeight("Earplugs", 5, 3),
+                new SkillWeight("Attack Boost", 7, 1),
+                new SkillWeight("Health Boost", 3, 1)
+        );
+        LoadoutScoringFunction scoringFunction = SkillScoringFunction.builder().
+                withSkillWeights(skillWeights).
+                build();
+
+        assertThat(scoringFunction.keySize(), is(3));
+        assertThat(scoringFunction.stateKeyFor(loadout), is(new int[]{5, 0, 2}));
+    }
+
+    @Test
+    public void stateKeyForShouldBeEmptyIfPerformanceModeIsSpeed() {
+        Loadout loadout = sampleLoadoutWith(ImmutableMap.of(
+                "Earplugs", 1
+        ));
+
+        LoadoutScoringFunction scoringFunction = SkillScoringFunction.builder().
+                withSkillWeight(new SkillWeight("Earplugs", 5, 3)).
+                withPerformanceMode(ScoringPerformanceMode.SPEED).
+                build();
+
+        assertThat(scoringFunction.keySize(), is(0));
+        assertThat(scoringFunction.stateKeyFor(loadout), is(new int[0]));
+    }
+
+    @Test
+    public void boundScoringFunctionShouldMatchUnboundScoringFunction() {
+        Loadout loadout = sampleLoadoutWith(ImmutableMap.of("Earplugs", 7, "Windproof", 2, "Tremor Resistance", 1));
+        SkillIndex skillIndex = SkillIndex.of(loadout.getArmorPieces().values());
+        LoadoutState state = LoadoutState.of(loadout, skillIndex);
+
+        LoadoutScoringFunction scoringFunction = SkillScoringFunction.builder().
+                withSkillWeights(ImmutableList.of(
+                        new SkillWeight("Earplugs", 5, 3),
+                        new SkillWeight("Windproof", 5, 2),
+                        new SkillWeight("Attack Boost", 7, 1)
+                )).
+                build();
+        LoadoutScoringFunction boundScoringFunction = scoringFunction.bind(skillIndex);
+
+        assertThat(boundScoringFunction.scoreFor(state), is(scoringFunction.scoreFor(loadout)));
+        assertThat(boundScoringFunction.scoreFor(loadout), is(scoringFunction.scoreFor(loadout)));
+        assertThat(boundScoringFunction.stateKeyFor(state), is(scoringFunction.stateKeyFor(loadout)));
+    }
+
+    @Test
+    public void isAtLeastAsGoodAsShouldOnlyCompareSkillsThatHaveWeights() {
+        ThinArmorPiece armorPiece1 = sampleArmorPieceWith(ImmutableMap.of("Earplugs", 2, "Windproof", 1));
+        ThinArmorPiece armorPiece2 = sampleArmorPieceWith(ImmutableMap.of("Earplugs", 1, "Tremor Resistance", 3));
+
+        LoadoutScoringFunction scoringFunction = SkillScoringFunction.builder().
+                withSkillWeights(ImmutableList.of(
+                        new SkillWeight("Earplugs", 5, 1),
+                        new SkillWeight("Windproof", 5, 1)
+                )).
+                build();
+
+        assertThat(scoringFunction.isAtLeastAsGoodAs(armorPiece1, armorPiece2), is(true));
+        assertThat(scoringFunction.isAtLeastAsGoodAs(armorPiece2, armorPiece1), is(false));
+    }
+
     @Test
     public void serializationAndDeserializationShouldNotChangeTheObject() throws IOException {
         List<SkillWeight> skillWeights = ImmutableList.of(
@@ -165,4 +248,76 @@ public class SkillScoringFunctionTest {
     public void youShouldWriteTestsForEmptySkillWeights() {
         assertThat("You didn't write shit", is(equalTo("You wrote tests for the case where skillWeights is empty")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void upperBoundShouldBeAtLeastTheScoreOfEveryCompletion() {
+        Random random = new Random(3);
+        List<String> skillNames = ImmutableList.of("Earplugs", "Windproof", "Attack Boost");
+        for (int trial = 0; trial < 200; trial++) {
+            List<List<ThinArmorPiece>> armorTypes = new ArrayList<>();
+            for (ArmorType armorType : ArmorType.values()) {
+                List<ThinArmorPiece> armorPieces = new ArrayList<>();
+                for (int i = random.nextInt(3); i > 0; i--) {
+                    Map<String, Integer> skillToLevelMap = new HashMap<>();
+                    for (String skillName : skillNames) {
+                        int skillLevel = random.nextInt(4);
+                        if (skillLevel > 0) {
+                            skillToLevelMap.put(skillName, skillLevel);
+                        }
+                    }
+                    armorPieces.add(sampleArmorPieceWith(armorType, skillToLevelMap));
+                }
+                armorTypes.add(armorPieces);
+            }
+
+            // Includes a skill that no piece has, and weights that penalize a skill
+            SkillScoringFunction.Builder builder = SkillScoringFunction.builder();
+            for (String skillName : ImmutableList.of("Earplugs", "Windproof", "Attack Boost", "Critical Eye")) {
+                builder.withSkillWeight(new SkillWeight(skillName, 1 + random.nextInt(6),
+                        pick(random, -1, 0, 0.5, 1, 2)));
+            }
+            assertUpperBoundIsAtLeastEveryScore(builder.build(), armorTypes);
+        }
+    }
+
+    // Checks the bound at every depth of a search over armorTypes, in the order given, against the score of every
+    // loadout that the search could still reach from there
+    private void assertUpperBoundIsAtLeastEveryScore(LoadoutScoringFunction scoringFunction,
+                                                     List<List<ThinArmorPiece>> armorTypes) {
+        SkillIndex skillIndex = SkillIndex.of(armorTypes.stream().flatMap(List::stream).collect(Collectors.toList()));
+        LoadoutScoringFunction boundScoringFunction = scoringFunction.bind(skillIndex);
+        for (int depth = 0; depth <= armorTypes.size(); depth++) {
+            List<List<ThinArmorPiece>> remainingArmorTypes = armorTypes.subList(depth, armorTypes.size());
+            RemainingArmorBounds remaining = RemainingArmorBounds.of(remainingArmorTypes);
+            for (Loadout loadout : completionsOf(Loadout.empty(), armorTypes.subList(0, depth))) {
+                double upperBound = scoringFunction.upperBound(loadout, remaining);
+                double stateUpperBound = boundScoringFunction.upperBound(LoadoutState.of(loadout, skillIndex),
+                        remaining);
+                for (Loadout completion : completionsOf(loadout, remainingArmorTypes)) {
+                    double score = scoringFunction.scoreFor(completion);
+                    assertThat("upper bound at depth " + depth, upperBound >= score - 1e-9, is(true));
+                    assertThat("state upper bound at depth " + depth, stateUpperBound >= score - 1e-9, is(true));
+                }
+            }
+        }
+    }
+
+    // Every loadout made by adding nothing or one of the pieces of each of armorTypes to loadout
+    private List<Loadout> completionsOf(Loadout loadout, List<List<ThinArmorPiece>> armorTypes) {
+        List<Loadout> completions = ImmutableList.of(loadout);
+        for (List<ThinArmorPiece> armorPieces : armorTypes) {
+            List<Loadout> extended = new ArrayList<>(completions);
+            for (Loadout completion : completions) {
+                for (ThinArmorPiece armorPiece : armorPieces) {
+                    extended.add(Loadout.builder(completion).withArmorPiece(armorPiece).build());
+                }
+            }
+            completions = extended;
+        }
+        return completions;
+    }
+
+    private static double pick(Random random, double... values) {
+        return values[random.nextInt(values.length)];
+    }
+}